@@ -0,0 +1,132 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationCalculation;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.CalculationSummary;
+import com.github.amortization.EffectiveRateSolver;
+import com.github.amortization.MonthlyCalendarFiller;
+import com.github.amortization.Payment;
+import com.github.amortization.PaymentDate;
+import com.github.amortization.PaymentSchedule;
+
+/**
+ * Benchmarks of the amortization plan calculation hot paths.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmortizationCalculationBenchmark {
+    @Param({"12", "60", "360"})
+    private int duration;
+
+    @Param({"false", "true"})
+    private boolean gracePeriod;
+
+    @Param({"true", "false"})
+    private boolean roundValues;
+
+    private CalculationInputParameters parameters;
+    private List<PaymentDate> dates;
+    private AmortizationCalculation calculation;
+    private EffectiveRateSolver solver;
+    private double[] cashFlows;
+
+    @Setup
+    public void setUp() {
+        parameters = Loans.create(duration, gracePeriod);
+        dates = new MonthlyCalendarFiller().createDateList(parameters);
+        calculation = new AmortizationCalculation(dates, parameters, roundValues);
+        calculation.calc();
+        PaymentSchedule schedule = calculation.getSchedule();
+        cashFlows = new double[schedule.size()];
+        for (int index = 0; index < cashFlows.length; index += 1) {
+            cashFlows[index] = schedule.getTotalPayment(index);
+        }
+        solver = new EffectiveRateSolver();
+    }
+
+    /**
+     * Construction and calculation of the whole plan.
+     * @return total payment
+     */
+    @Benchmark
+    public Payment calc() {
+        AmortizationCalculation newCalculation = new AmortizationCalculation(dates, parameters, roundValues);
+        newCalculation.calc();
+        return newCalculation.getTotal();
+    }
+
+    /**
+     * Construction and calculation of the plan totals without payment schedule.
+     * @return summary of the plan
+     */
+    @Benchmark
+    public CalculationSummary calcSummary() {
+        AmortizationCalculation newCalculation = new AmortizationCalculation(dates, parameters, roundValues);
+        return newCalculation.calcSummary();
+    }
+
+    /**
+     * Calculation of the plan totals, reusing the calculation, every call has its own cash flow buffer.
+     * @return summary of the plan
+     */
+    @Benchmark
+    public CalculationSummary calcSummaryReused() {
+        return calculation.calcSummary();
+    }
+
+    /**
+     * Effective rate of the calculated plan.
+     * @return effective rate
+     */
+    @Benchmark
+    public double calcEffectRate() {
+        return solver.solve(cashFlows, cashFlows.length, parameters.getRate() / 100.00);
+    }
+
+    /**
+     * Annuity sum.
+     * @return annuity sum
+     */
+    @Benchmark
+    public double calcAnnuitySums() {
+        return calculation.calcAnnuitySums(parameters.getAmount(), duration);
+    }
+}
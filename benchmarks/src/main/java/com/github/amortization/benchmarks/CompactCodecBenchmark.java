@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationCalculation;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.CompactDecoder;
+import com.github.amortization.CompactEncoder;
+import com.github.amortization.MonthlyCalendarFiller;
+import com.github.amortization.Payment;
+
+/**
+ * Payments of the plan with the total encoded and decoded by CompactEncoder and CompactDecoder against Java
+ * serialization. Sizes of both encodings are printed by the setup.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactCodecBenchmark {
+    @Param({"60", "360"})
+    private int duration;
+
+    private ArrayList<Payment> payments;
+    private ByteBuffer buffer;
+    private CompactEncoder encoder;
+    private ByteBuffer encoded;
+    private CompactDecoder decoder;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        CalculationInputParameters parameters = Loans.create(duration, false);
+        AmortizationCalculation calculation = new AmortizationCalculation(
+                new MonthlyCalendarFiller().createDateList(parameters), parameters);
+        calculation.calc();
+        payments = new ArrayList<Payment>(calculation.getPayments());
+        payments.add(calculation.getTotal());
+        buffer = ByteBuffer.allocate(1 << 20);
+        encoder = new CompactEncoder(buffer);
+        encoder.writePayments(payments);
+        encoded = ByteBuffer.allocate(buffer.position());
+        buffer.flip();
+        encoded.put(buffer);
+        encoded.flip();
+        decoder = new CompactDecoder(encoded);
+        serialized = serialize();
+        System.out.println("compact: " + encoded.limit() + " bytes, serialized: " + serialized.length + " bytes");
+    }
+
+    /**
+     * Payments encoded by CompactEncoder.
+     * @return number of bytes
+     */
+    @Benchmark
+    public int compactEncode() {
+        buffer.clear();
+        encoder.writePayments(payments);
+        return buffer.position();
+    }
+
+    /**
+     * Payments decoded by CompactDecoder.
+     * @return payments
+     */
+    @Benchmark
+    public List<Payment> compactDecode() {
+        encoded.rewind();
+        return decoder.readPayments();
+    }
+
+    /**
+     * Payments written by ObjectOutputStream.
+     * @return number of bytes
+     * @throws IOException never
+     */
+    @Benchmark
+    public int serializationEncode() throws IOException {
+        return serialize().length;
+    }
+
+    /**
+     * Payments read by ObjectInputStream.
+     * @return payments
+     * @throws IOException never
+     * @throws ClassNotFoundException never
+     */
+    @Benchmark
+    public Object serializationDecode() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return input.readObject();
+        }
+    }
+
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(payments);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationEngine;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.EffectiveRateCache;
+import com.github.amortization.PaymentCalendarCache;
+
+/**
+ * Loans of one product with different amounts: effective rate solved from the nominal rate against the rate of
+ * the previous loan kept in EffectiveRateCache. Calendars are cached in both cases.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EffectiveRateCacheBenchmark {
+    private static final int LOANS = 64;
+
+    @Param({"24", "360"})
+    private int duration;
+
+    private CalculationInputParameters[] loans;
+    private AmortizationEngine coldEngine;
+    private AmortizationEngine warmEngine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        loans = new CalculationInputParameters[LOANS];
+        for (int index = 0; index < LOANS; index += 1) {
+            loans[index] = Loans.create(duration, false);
+            loans[index].setAmount(5000.00 + index * 1537.00);
+        }
+        coldEngine = new AmortizationEngine(true, new PaymentCalendarCache());
+        warmEngine = new AmortizationEngine(true, new PaymentCalendarCache(), new EffectiveRateCache());
+    }
+
+    private CalculationInputParameters nextLoan() {
+        next = next + 1 == LOANS ? 0 : next + 1;
+        return loans[next];
+    }
+
+    /**
+     * Effective rate solved from the nominal rate.
+     * @return effective rate
+     */
+    @Benchmark
+    public double nominalRateStart() {
+        return coldEngine.calculate(nextLoan()).getSummary().getInterestRate();
+    }
+
+    /**
+     * Effective rate solved from the rate of the previous loan.
+     * @return effective rate
+     */
+    @Benchmark
+    public double cachedRateStart() {
+        return warmEngine.calculate(nextLoan()).getSummary().getInterestRate();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.Calendar;
+
+import com.github.amortization.CalculationInputParameters;
+
+/**
+ * Input parameters of loans used by benchmarks.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class Loans {
+    private Loans() {
+    }
+
+    /**
+     * Create loan parameters.
+     * @param duration - number of installments
+     * @param gracePeriod - whether the first quarter of installments is a grace period
+     * @return loan parameters
+     */
+    static CalculationInputParameters create(int duration, boolean gracePeriod) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2020, Calendar.JANUARY, 10);
+        CalculationInputParameters parameters = new CalculationInputParameters();
+        parameters.setAmount(100000.00);
+        parameters.setRate(18.00);
+        parameters.setMonthlyRate(1.50);
+        parameters.setOpeningRate(2.00);
+        parameters.setDuration(duration);
+        parameters.setRepaymentDay(15);
+        parameters.setStartDate(calendar.getTime());
+        if (gracePeriod) {
+            parameters.setEndGracePeriod((long) duration / 4);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.MonthlyCalendarFiller;
+import com.github.amortization.PaymentDate;
+
+/**
+ * Benchmark of payment calendar generation.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonthlyCalendarFillerBenchmark {
+    @Param({"12", "60", "360"})
+    private int duration;
+
+    private CalculationInputParameters parameters;
+
+    @Setup
+    public void setUp() {
+        parameters = Loans.create(duration, false);
+    }
+
+    @Benchmark
+    public List<PaymentDate> createDateList() {
+        return new MonthlyCalendarFiller().createDateList(parameters);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationCalculation;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.EffectiveRateSolver;
+import com.github.amortization.MonthlyCalendarFiller;
+import com.github.amortization.NpvKernel;
+import com.github.amortization.PaymentSchedule;
+
+/**
+ * Net present value of plan cash flows: the Vector API kernel against the scalar kernel. Both forks add the
+ * jdk.incubator.vector module, the scalar one disables the vector kernel by the system property.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NpvKernelBenchmark {
+    private static final String VECTOR_MODULE = "--add-modules=jdk.incubator.vector";
+    private static final String SCALAR = "-Damortization.vector=false";
+
+    @Param({"60", "360"})
+    private int duration;
+
+    private double[] cashFlows;
+    private int size;
+    private double rate;
+    private final double[] result = new double[2];
+    private final double[] rates = new double[8];
+    private final double[] values = new double[8];
+    private final double[] derivatives = new double[8];
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+
+    @Setup
+    public void setUp() {
+        CalculationInputParameters parameters = Loans.create(duration, false);
+        AmortizationCalculation calculation = new AmortizationCalculation(
+                new MonthlyCalendarFiller().createDateList(parameters), parameters);
+        calculation.calc();
+        PaymentSchedule schedule = calculation.getSchedule();
+        size = schedule.size();
+        cashFlows = new double[size];
+        for (int index = 0; index < size; index += 1) {
+            cashFlows[index] = schedule.getTotalPayment(index);
+        }
+        rate = calculation.getTotal().getInterestRate() / 100.00;
+        for (int index = 0; index < rates.length; index += 1) {
+            rates[index] = rate + (index - 4) * .01;
+        }
+        if (System.getProperty("amortization.vector") == null && !NpvKernel.isVectorized()) {
+            throw new IllegalStateException("Vector API kernel is not available");
+        }
+    }
+
+    private double evaluateOne() {
+        NpvKernel.evaluate(cashFlows, size, rate, result);
+        return result[NpvKernel.VALUE] + result[NpvKernel.DERIVATIVE];
+    }
+
+    private double evaluateRates() {
+        NpvKernel.evaluate(cashFlows, size, rates, rates.length, values, derivatives);
+        return values[0] + derivatives[rates.length - 1];
+    }
+
+    /**
+     * Net present value and derivative by the vector kernel.
+     * @return sum of the results
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+    public double evaluateVector() {
+        return evaluateOne();
+    }
+
+    /**
+     * Net present value and derivative by the scalar kernel.
+     * @return sum of the results
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR_MODULE, SCALAR})
+    public double evaluateScalar() {
+        return evaluateOne();
+    }
+
+    /**
+     * Net present values and derivatives of eight rates by the vector kernel.
+     * @return sum of the results
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+    public double evaluateRatesVector() {
+        return evaluateRates();
+    }
+
+    /**
+     * Net present values and derivatives of eight rates by the scalar kernel.
+     * @return sum of the results
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR_MODULE, SCALAR})
+    public double evaluateRatesScalar() {
+        return evaluateRates();
+    }
+
+    /**
+     * Effective rate of the plan by the vector kernel.
+     * @return effective rate
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+    public double solveVector() {
+        return solver.solve(cashFlows, size, .18);
+    }
+
+    /**
+     * Effective rate of the plan by the scalar kernel.
+     * @return effective rate
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR_MODULE, SCALAR})
+    public double solveScalar() {
+        return solver.solve(cashFlows, size, .18);
+    }
+}
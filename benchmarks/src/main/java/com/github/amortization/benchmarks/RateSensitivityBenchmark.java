@@ -0,0 +1,114 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationCalculation;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.MonthlyCalendarFiller;
+import com.github.amortization.PaymentDate;
+import com.github.amortization.RateSensitivity;
+
+/**
+ * Plans of one loan for a grid of nominal rates: RateSensitivity against one AmortizationCalculation per rate.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateSensitivityBenchmark {
+    @Param({"60", "360"})
+    private int duration;
+
+    @Param({"100"})
+    private int rateCount;
+
+    private CalculationInputParameters parameters;
+    private List<PaymentDate> dates;
+    private double[] rates;
+    private CalculationInputParameters[] rateParameters;
+
+    @Setup
+    public void setUp() {
+        parameters = Loans.create(duration, false);
+        dates = new MonthlyCalendarFiller().createDateList(parameters);
+        rates = new double[rateCount];
+        rateParameters = new CalculationInputParameters[rateCount];
+        for (int index = 0; index < rateCount; index += 1) {
+            rates[index] = 5.00 + index * .25;
+            rateParameters[index] = Loans.create(duration, false);
+            rateParameters[index].setRate(rates[index]);
+        }
+    }
+
+    /**
+     * Totals of all rates calculated together.
+     * @return effective rate of the last rate
+     */
+    @Benchmark
+    public double sensitivity() {
+        RateSensitivity sensitivity = new RateSensitivity(dates, parameters, rates);
+        sensitivity.calc();
+        return sensitivity.getInterestRate(rateCount - 1);
+    }
+
+    /**
+     * Totals and payment schedules of all rates calculated together.
+     * @return effective rate of the last rate
+     */
+    @Benchmark
+    public double sensitivityWithSchedules() {
+        RateSensitivity sensitivity = new RateSensitivity(dates, parameters, rates);
+        sensitivity.setKeepSchedules(true);
+        sensitivity.calc();
+        return sensitivity.getInterestRate(rateCount - 1);
+    }
+
+    /**
+     * Full plan calculated for every rate.
+     * @return effective rate of the last rate
+     */
+    @Benchmark
+    public double calcEveryRate() {
+        double effectiveRate = .00;
+        for (CalculationInputParameters rateParameter : rateParameters) {
+            AmortizationCalculation calculation = new AmortizationCalculation(dates, rateParameter);
+            calculation.calc();
+            effectiveRate = calculation.getTotal().getInterestRate();
+        }
+        return effectiveRate;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationEngine;
+import com.github.amortization.CalculationResult;
+import com.github.amortization.Payment;
+import com.github.amortization.ScheduleFileReader;
+import com.github.amortization.ScheduleFileWriter;
+
+/**
+ * Scanning of archived schedules: memory mapped binary schedule file against Java serialization of payments.
+ * Every benchmark sums the interest of all installments.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleFileBenchmark {
+    @Param({"1000"})
+    private int loans;
+
+    private List<CalculationResult> results;
+    private Path path;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        AmortizationEngine engine = new AmortizationEngine();
+        results = new ArrayList<CalculationResult>(loans);
+        for (int index = 0; index < loans; index += 1) {
+            results.add(engine.calculate(Loans.create(12 + index % 349, index % 2 == 0)));
+        }
+        path = Files.createTempFile("schedules", ".bin");
+        writeFile();
+        List<List<Payment>> payments = new ArrayList<List<Payment>>(loans);
+        for (CalculationResult result : results) {
+            payments.add(new ArrayList<Payment>(result.getPayments()));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(payments);
+        }
+        serialized = bytes.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Writing of the schedules to the binary file.
+     * @return number of written schedules
+     */
+    @Benchmark
+    public long writeFile() throws IOException {
+        try (ScheduleFileWriter writer = new ScheduleFileWriter(path)) {
+            for (int index = 0; index < results.size(); index += 1) {
+                writer.write(index, results.get(index));
+            }
+            return writer.getCount();
+        }
+    }
+
+    /**
+     * Scanning of the memory mapped binary file.
+     * @return sum of interest payments
+     */
+    @Benchmark
+    public double scanFile() throws IOException {
+        double sum = .00;
+        try (ScheduleFileReader reader = new ScheduleFileReader(path)) {
+            while (reader.next()) {
+                for (int index = 1; index < reader.size(); index += 1) {
+                    sum += reader.getRow(index).getInterestPayment();
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Deserialization of the payment lists.
+     * @return sum of interest payments
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public double readSerialized() throws IOException, ClassNotFoundException {
+        double sum = .00;
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            for (List<Payment> payments : (List<List<Payment>>) input.readObject()) {
+                for (int index = 1; index < payments.size(); index += 1) {
+                    sum += payments.get(index).getInterestPayment();
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.amortization.AmortizationCalculation;
+import com.github.amortization.AmortizationEngine;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.CalculationResult;
+import com.github.amortization.MonthlyCalendarFiller;
+import com.github.amortization.PaymentDate;
+import com.github.amortization.ScheduleChange;
+import com.github.amortization.ScheduleRecalculation;
+
+/**
+ * Rate reset at two thirds of the plan: ScheduleRecalculation against the calculation of the whole plan.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleRecalculationBenchmark {
+    @Param({"60", "360"})
+    private int duration;
+
+    private CalculationInputParameters parameters;
+    private List<PaymentDate> dates;
+    private CalculationResult base;
+    private ScheduleRecalculation recalculation;
+    private ScheduleChange change;
+
+    @Setup
+    public void setUp() {
+        parameters = Loans.create(duration, false);
+        dates = new MonthlyCalendarFiller().createDateList(parameters);
+        base = new AmortizationEngine().calculate(dates, parameters);
+        recalculation = new ScheduleRecalculation(base, true);
+        change = new ScheduleChange(duration * 2 / 3);
+        change.setRate(parameters.getRate() - 1.00);
+    }
+
+    /**
+     * Only payments after the change calculated with running sums and cash flow runs prepared once.
+     * @return effective rate
+     */
+    @Benchmark
+    public double recalc() {
+        return recalculation.recalc(dates, change).getSummary().getInterestRate();
+    }
+
+    /**
+     * Only payments after the change calculated, running sums and cash flow runs prepared for every change.
+     * @return effective rate
+     */
+    @Benchmark
+    public double recalcWithPreparation() {
+        return new ScheduleRecalculation(base, true).recalc(dates, change).getSummary().getInterestRate();
+    }
+
+    /**
+     * Whole plan of the same length calculated from scratch.
+     * @return effective rate
+     */
+    @Benchmark
+    public double calcWholePlan() {
+        AmortizationCalculation calculation = new AmortizationCalculation(dates, parameters);
+        calculation.calc();
+        return calculation.getTotal().getInterestRate();
+    }
+}
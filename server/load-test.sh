@@ -0,0 +1,20 @@
+#!/bin/sh
+# Load test of the quote server on localhost.
+# Usage: ./load-test.sh [port] [client options, see QuoteLoadTest]
+# Build the server first: mvn install -DskipTests (in the root) and mvn -f server/pom.xml package
+cd "$(dirname "$0")"
+JAR=target/quote-server.jar
+PORT=${1:-8080}
+[ $# -gt 0 ] && shift
+if [ ! -f "$JAR" ]; then
+    echo "$JAR is not found, build it with mvn -f server/pom.xml package" >&2
+    exit 1
+fi
+java -jar "$JAR" --port="$PORT" > target/quote-server.log 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null' EXIT
+for i in 1 2 3 4 5 6 7 8 9 10; do
+    grep -q "started" target/quote-server.log 2>/dev/null && break
+    sleep 1
+done
+java -cp "$JAR" com.github.amortization.server.QuoteLoadTest --url="http://localhost:$PORT" "$@"
@@ -0,0 +1,172 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the quote server. Client threads send GET /quote requests with random loans one after another,
+ * latencies of successful requests after the warm up are reported as percentiles together with requests per second.
+ * <pre>
+ * java -cp quote-server.jar com.github.amortization.server.QuoteLoadTest --url=http://localhost:8080
+ *     --threads=16 --requests=20000 --warmup=2000
+ * </pre>
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class QuoteLoadTest {
+    private static final String URL_ARG = "--url=";
+    private static final String THREADS = "--threads=";
+    private static final String REQUESTS = "--requests=";
+    private static final String WARMUP = "--warmup=";
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_UNAVAILABLE = 503;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final String url;
+    private final int threads;
+    private final int requests;
+    private final int warmup;
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public QuoteLoadTest(String url, int threads, int requests, int warmup) {
+        this.url = url;
+        this.threads = threads;
+        this.requests = requests;
+        this.warmup = warmup;
+    }
+
+    /**
+     * Send the requests and wait for the responses.
+     * @return report with latency percentiles and throughput
+     * @throws InterruptedException if the test was interrupted
+     */
+    public String run() throws InterruptedException {
+        sendAll(warmup);
+        sent.set(0);
+        failed.set(0);
+        rejected.set(0);
+        long start = System.nanoTime();
+        long[] latencies = sendAll(requests);
+        long nanos = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return String.format(Locale.ENGLISH, "requests: %d, failed: %d, rejected: %d, time: %.3f s, %.1f requests/s%n"
+                + "latency ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f", requests, failed.get(), rejected.get(),
+                nanos / 1e9, requests * 1e9 / nanos, percentile(latencies, 50), percentile(latencies, 90),
+                percentile(latencies, 99), percentile(latencies, 100));
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return .00;
+        }
+        int index = (int) Math.ceil(percent / 100.00 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / NANOS_PER_MILLI;
+    }
+
+    private long[] sendAll(final int count) throws InterruptedException {
+        final long[][] latencies = new long[threads][];
+        final int[] sizes = new int[threads];
+        Thread[] workers = new Thread[threads];
+        for (int thread = 0; thread < threads; thread += 1) {
+            final int worker = thread;
+            latencies[worker] = new long[count / threads + 1];
+            workers[worker] = new Thread(() -> {
+                Random random = new Random(worker);
+                while (sent.getAndIncrement() < count) {
+                    long start = System.nanoTime();
+                    int status = send(random);
+                    long latency = System.nanoTime() - start;
+                    if (status == STATUS_OK) {
+                        if (sizes[worker] == latencies[worker].length) {
+                            latencies[worker] = Arrays.copyOf(latencies[worker], sizes[worker] * 2);
+                        }
+                        latencies[worker][sizes[worker]] = latency;
+                        sizes[worker] += 1;
+                    } else if (status == STATUS_UNAVAILABLE) {
+                        rejected.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+            workers[worker].start();
+        }
+        int total = 0;
+        for (int thread = 0; thread < threads; thread += 1) {
+            workers[thread].join();
+            total += sizes[thread];
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (int thread = 0; thread < threads; thread += 1) {
+            System.arraycopy(latencies[thread], 0, all, position, sizes[thread]);
+            position += sizes[thread];
+        }
+        return all;
+    }
+
+    private int send(Random random) {
+        String query = String.format(Locale.ENGLISH, "/quote?amount=%d&rate=%.2f&openingRate=1&monthlyRate=0.5"
+                + "&duration=%d&startDate=2012-%02d-%02d&repaymentDay=%d", 1000 + random.nextInt(79000),
+                1 + random.nextInt(3000) / 100.00, 6 + random.nextInt(55), 1 + random.nextInt(12),
+                1 + random.nextInt(28), 1 + random.nextInt(28));
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url + query).openConnection();
+            int status = connection.getResponseCode();
+            try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                byte[] buffer = new byte[4096];
+                while (input != null && input.read(buffer) >= 0) {
+                    continue;
+                }
+            }
+            return status;
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String url = "http://localhost:" + QuoteServer.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        int requests = 20000;
+        int warmup = 2000;
+        for (String arg : args) {
+            if (arg.startsWith(URL_ARG)) {
+                url = arg.substring(URL_ARG.length());
+            } else if (arg.startsWith(THREADS)) {
+                threads = Integer.parseInt(arg.substring(THREADS.length()));
+            } else if (arg.startsWith(REQUESTS)) {
+                requests = Integer.parseInt(arg.substring(REQUESTS.length()));
+            } else if (arg.startsWith(WARMUP)) {
+                warmup = Integer.parseInt(arg.substring(WARMUP.length()));
+            }
+        }
+        System.out.println(new QuoteLoadTest(url, threads, requests, warmup).run());
+    }
+}
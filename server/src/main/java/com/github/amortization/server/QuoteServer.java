@@ -0,0 +1,456 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.github.amortization.AmortizationBatch;
+import com.github.amortization.AmortizationEngine;
+import com.github.amortization.CalculationInputParameters;
+import com.github.amortization.CalculationResult;
+import com.github.amortization.CalculationSummary;
+import com.github.amortization.LOG;
+import com.github.amortization.PaymentCalendarCache;
+import com.github.amortization.PaymentSchedule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP server with quotes of loans, built on the JDK HTTP server and one shared AmortizationEngine.
+ * Every request runs on its own virtual thread when the JVM has them (Java 21 and later), otherwise on a pool
+ * with twice as many platform threads as allowed concurrent requests, so requests over the limit are taken from
+ * the queue of the pool and rejected instead of waiting there.
+ * <ul>
+ * <li>GET or POST /quote - totals of the loan</li>
+ * <li>GET or POST /schedule - totals and payments of the loan</li>
+ * <li>POST /batch - totals of loans, one loan per line, one result per line</li>
+ * </ul>
+ * Loan fields are the same as in AmortizationBatch, in a JSON object for POST or in query parameters for GET.
+ * The body is read before the request waits for a permit, so slow clients do not hold permits. Bodies over
+ * MAX_LOAN_BYTES per loan and batches over the batch size get 413 as soon as the limit is exceeded.
+ * Requests over the concurrency limit wait for a permit for a short time and then get 503.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class QuoteServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    /** the largest body of one loan in bytes */
+    public static final int MAX_LOAN_BYTES = 4096;
+    private static final String PORT = "--port=";
+    private static final String MAX_CONCURRENT = "--max-concurrent=";
+    private static final String MAX_BATCH = "--max-batch=";
+    private static final String JSON = "application/json";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final long PERMIT_TIMEOUT_MILLIS = 100;
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_BAD_REQUEST = 400;
+    private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+    private static final int STATUS_TOO_LARGE = 413;
+    private static final int STATUS_ERROR = 500;
+    private static final int STATUS_UNAVAILABLE = 503;
+
+    static {
+        // headers and body of the response are written separately, with Nagle's algorithm and delayed ACK of
+        // the client every response would wait for about 40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final AmortizationEngine engine = new AmortizationEngine(true, new PaymentCalendarCache());
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final Semaphore permits;
+    private final int maxBatchSize;
+
+    /** Calculation of the response body from the loan fields. */
+    private interface Endpoint {
+        String handle(QuoteServer server, String method, Map<String, String> query, String body);
+    }
+
+    /**
+     * Constructor.
+     * @param address - address to listen on, port 0 for any free port
+     * @param maxConcurrentRequests - number of requests calculated at the same time
+     * @param maxBatchSize - the largest number of loans in one batch request
+     * @throws IOException if the server can not be bound to the address
+     */
+    public QuoteServer(InetSocketAddress address, int maxConcurrentRequests, int maxBatchSize) throws IOException {
+        if (maxConcurrentRequests <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("number of requests and batch size should be positive");
+        }
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.maxBatchSize = maxBatchSize;
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : Executors.newFixedThreadPool(maxConcurrentRequests * 2);
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/quote", exchange -> handle(exchange, QuoteServer::quote, JSON, MAX_LOAN_BYTES,
+                Integer.MAX_VALUE));
+        server.createContext("/schedule", exchange -> handle(exchange, QuoteServer::schedule, JSON, MAX_LOAN_BYTES,
+                Integer.MAX_VALUE));
+        server.createContext("/batch", exchange -> handle(exchange, QuoteServer::batch, NDJSON,
+                (long) MAX_LOAN_BYTES * maxBatchSize, maxBatchSize));
+    }
+
+    /**
+     * Create executor with one virtual thread per task.
+     * @return executor or null if the JVM has no virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+        LOG.info(QuoteServer.class, "Quote server started on port " + getPort()
+                + (virtualThreads ? " with virtual threads" : " with platform threads"));
+    }
+
+    /**
+     * Stop the server and its threads.
+     * @param delaySeconds - time to finish current requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint, String contentType, long maxBytes, int maxLines)
+            throws IOException {
+        try {
+            String body;
+            try {
+                body = read(exchange, maxBytes, maxLines);
+            } catch (HttpException ex) {
+                send(exchange, ex.status, JSON, error(ex.getMessage()));
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, STATUS_UNAVAILABLE, JSON, error("too many concurrent requests"));
+                return;
+            }
+            try {
+                String method = exchange.getRequestMethod();
+                String response = endpoint.handle(this, method, parseQuery(exchange.getRequestURI().getRawQuery()),
+                        body);
+                send(exchange, STATUS_OK, contentType, response);
+            } catch (HttpException ex) {
+                send(exchange, ex.status, JSON, error(ex.getMessage()));
+            } catch (IllegalArgumentException ex) {
+                send(exchange, STATUS_BAD_REQUEST, JSON, error(ex.getMessage()));
+            } catch (RuntimeException ex) {
+                LOG.error(QuoteServer.class, ex, "request failed");
+                send(exchange, STATUS_ERROR, JSON, error(String.valueOf(ex.getMessage())));
+            } finally {
+                permits.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Read the request body, it is rejected as soon as it is over one of the limits.
+     * @param exchange - the request
+     * @param maxBytes - the largest body size
+     * @param maxLines - the largest number of non-empty lines, one loan per line in a batch
+     * @return the body
+     * @throws IOException if the body can not be read
+     */
+    private static String read(HttpExchange exchange, long maxBytes, int maxLines) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && Long.parseLong(contentLength.trim()) > maxBytes) {
+            throw new HttpException(STATUS_TOO_LARGE, "body is larger than " + maxBytes + " bytes");
+        }
+        InputStream input = exchange.getRequestBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int lines = 0;
+        boolean blank = true;
+        int length = input.read(buffer);
+        while (length >= 0) {
+            if (bytes.size() + length > maxBytes) {
+                throw new HttpException(STATUS_TOO_LARGE, "body is larger than " + maxBytes + " bytes");
+            }
+            for (int index = 0; index < length; index += 1) {
+                if (buffer[index] == '\n') {
+                    blank = true;
+                } else if (blank && (buffer[index] & 0xff) > ' ') {
+                    blank = false;
+                    lines += 1;
+                }
+            }
+            if (lines > maxLines) {
+                throw new HttpException(STATUS_TOO_LARGE, "batch has more than " + maxLines + " loans");
+            }
+            bytes.write(buffer, 0, length);
+            length = input.read(buffer);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> fields = new HashMap<String, String>();
+        if (query == null || query.isEmpty()) {
+            return fields;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int index = pair.indexOf('=');
+                if (index > 0) {
+                    fields.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"),
+                            URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return fields;
+    }
+
+    private static Map<String, String> loanFields(String method, Map<String, String> query, String body) {
+        if ("GET".equals(method)) {
+            return query;
+        }
+        if ("POST".equals(method)) {
+            return AmortizationBatch.parseJsonLine(body.trim());
+        }
+        throw new HttpException(STATUS_METHOD_NOT_ALLOWED, "method " + method + " is not allowed");
+    }
+
+    private CalculationResult calculate(Map<String, String> fields) {
+        CalculationInputParameters parameters = AmortizationBatch.toParameters(fields);
+        CalculationResult result = engine.calculate(parameters);
+        if (!result.isSuccessful()) {
+            throw new IllegalArgumentException(String.valueOf(result.getError().getMessage()), result.getError());
+        }
+        return result;
+    }
+
+    private String quote(String method, Map<String, String> query, String body) {
+        Map<String, String> fields = loanFields(method, query, body);
+        StringBuilder json = new StringBuilder(256);
+        appendSummary(json, fields.get("id"), calculate(fields));
+        return json.append('\n').toString();
+    }
+
+    private String schedule(String method, Map<String, String> query, String body) {
+        Map<String, String> fields = loanFields(method, query, body);
+        CalculationResult result = calculate(fields);
+        PaymentSchedule schedule = result.getSchedule();
+        StringBuilder json = new StringBuilder(256 + schedule.size() * 200);
+        json.append("{\"summary\":");
+        appendSummary(json, fields.get("id"), result);
+        json.append(",\"payments\":[");
+        for (int index = 0; index < schedule.size(); index += 1) {
+            if (index > 0) {
+                json.append(',');
+            }
+            long date = schedule.getDate(index);
+            json.append("{\"index\":").append(index);
+            if (date != PaymentSchedule.NO_DATE) {
+                json.append(",\"date\":\"").append(Instant.ofEpochMilli(date).atZone(zone).toLocalDate()).append('"');
+            }
+            appendNumber(json, "debetIn", schedule.getDebetIn(index));
+            appendNumber(json, "capitalPayment", schedule.getCapitalPayment(index));
+            appendNumber(json, "interestPayment", schedule.getInterestPayment(index));
+            appendNumber(json, "monthlyFee", schedule.getMonthlyFee(index));
+            appendNumber(json, "totalPayment", schedule.getTotalPayment(index));
+            appendNumber(json, "debetOut", schedule.getDebetOut(index));
+            appendNumber(json, "netValue", schedule.getNetValue(index));
+            json.append('}');
+        }
+        return json.append("]}\n").toString();
+    }
+
+    private String batch(String method, Map<String, String> query, String body) {
+        if (!"POST".equals(method)) {
+            throw new HttpException(STATUS_METHOD_NOT_ALLOWED, "method " + method + " is not allowed");
+        }
+        StringBuilder json = new StringBuilder(1024);
+        int loans = 0;
+        try (BufferedReader reader = new BufferedReader(new StringReader(body))) {
+            String line = reader.readLine();
+            while (line != null) {
+                if (!line.trim().isEmpty()) {
+                    loans += 1;
+                    if (loans > maxBatchSize) {
+                        throw new HttpException(STATUS_TOO_LARGE, "batch has more than " + maxBatchSize + " loans");
+                    }
+                    String id = String.valueOf(loans);
+                    try {
+                        Map<String, String> fields = AmortizationBatch.parseJsonLine(line.trim());
+                        id = fields.get("id") == null ? id : fields.get("id");
+                        appendSummary(json, id, calculate(fields));
+                    } catch (IllegalArgumentException ex) {
+                        json.append('{');
+                        appendString(json, "id", id);
+                        json.append(',');
+                        appendString(json, "error", String.valueOf(ex.getMessage()));
+                        json.append('}');
+                    }
+                    json.append('\n');
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return json.toString();
+    }
+
+    private static void appendSummary(StringBuilder json, String id, CalculationResult result) {
+        CalculationSummary summary = result.getSummary();
+        CalculationInputParameters parameters = result.getParameters();
+        json.append('{');
+        if (id != null) {
+            appendString(json, "id", id);
+            json.append(',');
+        }
+        json.append("\"amount\":").append(parameters.getAmount());
+        json.append(",\"duration\":").append(parameters.getDuration());
+        appendNumber(json, "rate", parameters.getRate());
+        appendNumber(json, "annuitySum", summary.getAnnuitySum());
+        appendNumber(json, "monthlyInstallment", summary.getTotalInstalmentPayment());
+        appendNumber(json, "openingFee", summary.getOpeningFee());
+        appendNumber(json, "totalPayment", summary.getTotalPayment());
+        appendNumber(json, "totalInterestPayment", summary.getTotalInterestPayment());
+        appendNumber(json, "loanCost", summary.getLoanCost());
+        appendNumber(json, "effectiveRate", summary.getInterestRate());
+        json.append('}');
+    }
+
+    private static void appendNumber(StringBuilder json, String name, double value) {
+        json.append(",\"").append(name).append("\":");
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String name, String value) {
+        json.append('"').append(name).append("\":\"");
+        for (int index = 0; index < value.length(); index += 1) {
+            char ch = value.charAt(index);
+            if (ch == '"' || ch == '\\') {
+                json.append('\\').append(ch);
+            } else if (ch < ' ') {
+                json.append(String.format("\\u%04x", (int) ch));
+            } else {
+                json.append(ch);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{");
+        appendString(json, "error", message);
+        return json.append("}\n").toString();
+    }
+
+    /** Request error with HTTP status. */
+    private static class HttpException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        org.apache.log4j.BasicConfigurator.configure();
+        // debug messages of every calculation would slow down the server
+        org.apache.log4j.Logger.getRootLogger().setLevel(org.apache.log4j.Level.INFO);
+        int port = DEFAULT_PORT;
+        int maxConcurrent = Runtime.getRuntime().availableProcessors() * 2;
+        int maxBatch = DEFAULT_MAX_BATCH_SIZE;
+        for (String arg : args) {
+            if (arg.startsWith(PORT)) {
+                port = Integer.parseInt(arg.substring(PORT.length()));
+            } else if (arg.startsWith(MAX_CONCURRENT)) {
+                maxConcurrent = Integer.parseInt(arg.substring(MAX_CONCURRENT.length()));
+            } else if (arg.startsWith(MAX_BATCH)) {
+                maxBatch = Integer.parseInt(arg.substring(MAX_BATCH.length()));
+            } else {
+                LOG.info(QuoteServer.class, "Usage: java -jar quote-server.jar [--port=" + DEFAULT_PORT
+                        + "] [--max-concurrent=n] [--max-batch=" + DEFAULT_MAX_BATCH_SIZE + "]");
+                return;
+            }
+        }
+        final QuoteServer quoteServer = new QuoteServer(new InetSocketAddress(port), maxConcurrent, maxBatch);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> quoteServer.stop(1)));
+        quoteServer.start();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.amortization.AmortizationBatch;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class QuoteServerTest {
+    private static final String LOAN = "{\"id\":\"a\",\"amount\":10000,\"rate\":12,\"openingRate\":1,"
+            + "\"monthlyRate\":0.5,\"duration\":12,\"startDate\":\"2012-03-10\",\"repaymentDay\":15}";
+    private QuoteServer server;
+    private int status;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new QuoteServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, 3);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+                .openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        status = connection.getResponseCode();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[4096];
+            int length = input.read(buffer);
+            while (length >= 0) {
+                bytes.write(buffer, 0, length);
+                length = input.read(buffer);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test method for /quote with GET and POST.
+     */
+    @Test
+    public void testQuote() throws IOException {
+        Map<String, String> posted = AmortizationBatch.parseJsonLine(request("POST", "/quote", LOAN).trim());
+        assertEquals("Should be equal", 200, status);
+        assertEquals("Should be equal", "a", posted.get("id"));
+        assertEquals("Should be equal", "12", posted.get("duration"));
+        Map<String, String> got = AmortizationBatch.parseJsonLine(request("GET", "/quote?amount=10000&rate=12"
+                + "&openingRate=1&monthlyRate=0.5&duration=12&startDate=2012-03-10&repaymentDay=15", null).trim());
+        assertEquals("Should be equal", 200, status);
+        assertEquals("Should be equal", posted.get("effectiveRate"), got.get("effectiveRate"));
+        assertEquals("Should be equal", posted.get("totalPayment"), got.get("totalPayment"));
+        assertTrue(Double.parseDouble(got.get("effectiveRate")) > 12.00);
+    }
+
+    /**
+     * Test method for /schedule.
+     */
+    @Test
+    public void testSchedule() throws IOException {
+        String response = request("POST", "/schedule", LOAN);
+        assertEquals("Should be equal", 200, status);
+        assertTrue(response.startsWith("{\"summary\":{\"id\":\"a\","));
+        assertTrue(response.contains("{\"index\":0,\"date\":\"2012-03-10\","));
+        assertTrue(response.contains("{\"index\":12,"));
+    }
+
+    /**
+     * Test method for /batch with wrong loan and too large batch.
+     */
+    @Test
+    public void testBatch() throws IOException {
+        String[] lines = request("POST", "/batch", LOAN + "\n\n{\"amount\":\"x\"}\n{\"amount\":5000,\"rate\":10,"
+                + "\"duration\":6,\"startDate\":\"2012-03-10\",\"repaymentDay\":1}\n").split("\n");
+        assertEquals("Should be equal", 200, status);
+        assertEquals("Should be equal", 3, lines.length);
+        assertEquals("Should be equal", "a", AmortizationBatch.parseJsonLine(lines[0]).get("id"));
+        assertEquals("Should be equal", "2", AmortizationBatch.parseJsonLine(lines[1]).get("id"));
+        assertTrue(AmortizationBatch.parseJsonLine(lines[1]).get("error").startsWith("wrong loan"));
+        assertEquals("Should be equal", "6", AmortizationBatch.parseJsonLine(lines[2]).get("duration"));
+        request("POST", "/batch", LOAN + "\n" + LOAN + "\n" + LOAN + "\n" + LOAN + "\n");
+        assertEquals("Should be equal", 413, status);
+    }
+
+    /**
+     * Test method for bodies over the size limit.
+     */
+    @Test
+    public void testTooLarge() throws IOException {
+        StringBuilder body = new StringBuilder(LOAN.substring(0, LOAN.length() - 1));
+        while (body.length() <= QuoteServer.MAX_LOAN_BYTES) {
+            body.append(",\"comment\":\"").append(LOAN.replace('"', '\'')).append('"');
+        }
+        String response = request("POST", "/quote", body.append('}').toString());
+        assertEquals("Should be equal", 413, status);
+        assertTrue(AmortizationBatch.parseJsonLine(response.trim()).get("error").startsWith("body is larger"));
+        request("POST", "/batch", body.toString() + "\n" + LOAN + "\n");
+        assertEquals("Should be equal", 200, status);
+        request("POST", "/schedule", LOAN.replace(",", ",\n"));
+        assertEquals("Should be equal", 200, status);
+    }
+
+    /**
+     * Test method for wrong requests.
+     */
+    @Test
+    public void testErrors() throws IOException {
+        request("GET", "/batch", null);
+        assertEquals("Should be equal", 405, status);
+        request("DELETE", "/quote", null);
+        assertEquals("Should be equal", 405, status);
+        String response = request("POST", "/quote", "{\"amount\":");
+        assertEquals("Should be equal", 400, status);
+        assertTrue(AmortizationBatch.parseJsonLine(response.trim()).containsKey("error"));
+        request("GET", "/quote?amount=1000&duration=twelve&rate=12", null);
+        assertEquals("Should be equal", 400, status);
+    }
+}
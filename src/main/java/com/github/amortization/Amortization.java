@@ -17,7 +17,19 @@
  */
 package com.github.amortization;
 
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * .
@@ -30,6 +42,15 @@ public class Amortization {
     private static final String RATE = "--rate=";
     private static final String OPENINGRATE = "--openingrate=";
     private static final String MONTHLYRATE = "--monthlyrate=";
+    private static final String BATCH = "--batch=";
+    private static final String OUTPUT = "--output=";
+    private static final String INPUT_FORMAT = "--input-format=";
+    private static final String OUTPUT_FORMAT = "--output-format=";
+    private static final String MODE = "--mode=";
+    private static final String THREADS = "--threads=";
+    private static final String CHUNK = "--chunk=";
+    private static final String STANDARD_STREAM = "-";
+    private static final int BUFFER_SIZE = 1 << 16;
 
     static {
         org.apache.log4j.BasicConfigurator.configure();
@@ -37,11 +58,24 @@ public class Amortization {
 
     public static void main(String[] args) {
         if (args.length == 0) {
-            LOG.info(null,
+            LOG.info(Amortization.class,
                     "The tool to calculate amortization plan\n"
-                    + "Usage: java -jar amortization.jar --duration=[1-60] --amount=[300-80000] --rate=[0.01-100] --openingrate=[0-5] --monthlyrate=[0-5]");
+                    + "Usage: java -jar amortization.jar --duration=[1-60] --amount=[300-80000] --rate=[0.01-100] --openingrate=[0-5] --monthlyrate=[0-5]\n"
+                    + "Batch: java -jar amortization.jar --batch=[file|-] [--output=file|-] [--input-format=csv|ndjson]"
+                    + " [--output-format=csv|ndjson] [--mode=summary|schedule] [--threads=n] [--chunk=n]");
             return;
         }
+        for (String arg : args) {
+            if (arg.startsWith(BATCH)) {
+                try {
+                    batch(args);
+                } catch (IOException ex) {
+                    LOG.error(Amortization.class, ex, "batch calculation failed");
+                    System.exit(1);
+                }
+                return;
+            }
+        }
         CalculationInputParameters calculationInputParameters = new CalculationInputParameters();
         calculationInputParameters.setRate(0.01);
         calculationInputParameters.setDuration(12);
@@ -53,9 +87,9 @@ public class Amortization {
             } else if (arg.startsWith(RATE)) {
                 calculationInputParameters.setRate(Double.valueOf(arg.substring(RATE.length())));
             } else if (arg.startsWith(OPENINGRATE)) {
-                calculationInputParameters.setRate(Double.valueOf(arg.substring(OPENINGRATE.length())));
+                calculationInputParameters.setOpeningRate(Double.valueOf(arg.substring(OPENINGRATE.length())));
             } else if (arg.startsWith(MONTHLYRATE)) {
-                calculationInputParameters.setRate(Double.valueOf(arg.substring(MONTHLYRATE.length())));
+                calculationInputParameters.setMonthlyRate(Double.valueOf(arg.substring(MONTHLYRATE.length())));
             }
         }
 
@@ -69,10 +103,69 @@ public class Amortization {
                 index++;
                 continue;
             }
-            LOG.info(null, index + ">>> Date: " + payment.getDate() + " Full Payment: " + payment.getTotalPayment() + " Capital Payment:"
+            LOG.info(Amortization.class, index + ">>> Date: " + payment.getDate() + " Full Payment: " + payment.getTotalPayment() + " Capital Payment:"
                     + payment.getCapitalPayment() + " Interest Payment:" + payment.getInterestPayment()
                     + " Monthly Payment:" + payment.getMonthlyFee());
             index++;
         }
     }
+
+    private static void batch(String[] args) throws IOException {
+        // debug messages of every loan would be mixed with the results on the console
+        org.apache.log4j.Logger.getRootLogger().setLevel(org.apache.log4j.Level.WARN);
+        // loggers are created here, before the calculating threads ask for them at the same time
+        LOG.isDebugEnabled(MonthlyCalendarFiller.class);
+        LOG.isDebugEnabled(AmortizationCalculation.class);
+        LOG.isDebugEnabled(PortfolioCalculation.class);
+        String input = STANDARD_STREAM;
+        String output = STANDARD_STREAM;
+        String inputFormat = null;
+        String outputFormat = null;
+        String mode = "summary";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunk = AmortizationBatch.DEFAULT_CHUNK_SIZE;
+        for (String arg : args) {
+            if (arg.startsWith(BATCH)) {
+                input = arg.substring(BATCH.length());
+            } else if (arg.startsWith(OUTPUT)) {
+                output = arg.substring(OUTPUT.length());
+            } else if (arg.startsWith(INPUT_FORMAT)) {
+                inputFormat = arg.substring(INPUT_FORMAT.length());
+            } else if (arg.startsWith(OUTPUT_FORMAT)) {
+                outputFormat = arg.substring(OUTPUT_FORMAT.length());
+            } else if (arg.startsWith(MODE)) {
+                mode = arg.substring(MODE.length());
+            } else if (arg.startsWith(THREADS)) {
+                threads = Integer.parseInt(arg.substring(THREADS.length()));
+            } else if (arg.startsWith(CHUNK)) {
+                chunk = Integer.parseInt(arg.substring(CHUNK.length()));
+            }
+        }
+        AmortizationBatch.Format inFormat = toFormat(inputFormat, input);
+        AmortizationBatch.Format outFormat = outputFormat == null && STANDARD_STREAM.equals(output) ? inFormat
+                : toFormat(outputFormat, output);
+        if (!"summary".equals(mode) && !"schedule".equals(mode)) {
+            throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+        AmortizationBatch batch = new AmortizationBatch(inFormat, outFormat, "schedule".equals(mode), threads, chunk);
+        AmortizationBatch.Statistics statistics;
+        try (InputStream inputStream = STANDARD_STREAM.equals(input) ? System.in : new FileInputStream(input);
+                OutputStream outputStream = STANDARD_STREAM.equals(output) ? System.out
+                        : new FileOutputStream(output);
+                Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                        BUFFER_SIZE)) {
+            statistics = batch.process(reader, writer);
+        }
+        System.err.println(statistics);
+    }
+
+    private static AmortizationBatch.Format toFormat(String format, String fileName) {
+        if (format != null) {
+            return AmortizationBatch.Format.valueOf(format.toUpperCase(Locale.ENGLISH));
+        }
+        String name = fileName.toLowerCase(Locale.ENGLISH);
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")
+                ? AmortizationBatch.Format.NDJSON : AmortizationBatch.Format.CSV;
+    }
 }
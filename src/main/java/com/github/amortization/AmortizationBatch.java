@@ -0,0 +1,553 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Batch calculation of many loans read as CSV or NDJSON. Loans are read in chunks of limited size, every chunk is
+ * calculated in parallel by PortfolioCalculation and written in input order before the next chunk is read,
+ * so memory usage does not depend on the number of loans. Effective rate of the loan is solved from the rate of
+ * the previous loan with the same terms (see EffectiveRateCache).
+ * <p>
+ * Input fields (CSV header or JSON keys): id, amount, rate, openingRate, monthlyRate, duration, startDate
+ * (yyyy-MM-dd), repaymentDay, endGracePeriod. Output is one summary line per loan or one line per payment,
+ * a failed loan has one line with the id and the error in both modes.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class AmortizationBatch {
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /** Format of input and output lines. */
+    public enum Format { CSV, NDJSON }
+
+    private static final String[] SUMMARY_FIELDS = {"id", "amount", "duration", "rate", "annuitySum",
+        "monthlyInstallment", "totalPayment", "totalInterestPayment", "loanCost", "effectiveRate", "error"};
+    private static final String[] SCHEDULE_FIELDS = {"id", "index", "date", "debetIn", "capitalPayment",
+        "interestPayment", "monthlyFee", "totalPayment", "debetOut", "netValue", "error"};
+
+    private final Format inputFormat;
+    private final Format outputFormat;
+    private final boolean schedule;
+    private final int parallelism;
+    private final int chunkSize;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * Constructor.
+     * @param inputFormat - format of input lines
+     * @param outputFormat - format of output lines
+     * @param schedule - true to write every payment, false to write summary of every loan
+     * @param parallelism - number of calculating threads
+     * @param chunkSize - number of loans calculated together
+     */
+    public AmortizationBatch(Format inputFormat, Format outputFormat, boolean schedule, int parallelism,
+            int chunkSize) {
+        if (parallelism <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("parallelism and chunk size should be positive");
+        }
+        this.inputFormat = inputFormat;
+        this.outputFormat = outputFormat;
+        this.schedule = schedule;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read loans, calculate them and write the results.
+     * @param input - loans
+     * @param output - results, not closed
+     * @return statistics of the batch
+     * @throws IOException if loans can not be read or results can not be written
+     */
+    public Statistics process(Reader input, Writer output) throws IOException {
+        long start = System.nanoTime();
+        long loans = 0;
+        long failed = 0;
+        long lines = 0;
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        PortfolioCalculation calculation = new PortfolioCalculation(parallelism);
+        EffectiveRateCache rateCache = new EffectiveRateCache();
+        calculation.setEffectiveRateCache(rateCache);
+        try {
+            String[] header = null;
+            if (inputFormat == Format.CSV) {
+                String line = reader.readLine();
+                header = line == null ? new String[0] : parseCsvLine(line);
+            }
+            if (outputFormat == Format.CSV) {
+                writeCsvLine(output, schedule ? SCHEDULE_FIELDS : SUMMARY_FIELDS);
+            }
+            List<String> ids = new ArrayList<String>(chunkSize);
+            List<CalculationInputParameters> chunk = new ArrayList<CalculationInputParameters>(chunkSize);
+            List<RuntimeException> errors = new ArrayList<RuntimeException>(chunkSize);
+            String line = reader.readLine();
+            while (line != null) {
+                if (!line.trim().isEmpty()) {
+                    CalculationInputParameters parameters = new CalculationInputParameters();
+                    String id = null;
+                    RuntimeException error;
+                    try {
+                        Map<String, String> fields = inputFormat == Format.CSV ? toMap(header, parseCsvLine(line))
+                                : parseJsonLine(line);
+                        id = fields.get("id");
+                        error = fill(parameters, fields);
+                    } catch (RuntimeException ex) {
+                        error = new IllegalArgumentException("wrong line: " + ex.getMessage(), ex);
+                    }
+                    ids.add(id == null ? String.valueOf(loans + chunk.size() + 1) : id);
+                    chunk.add(parameters);
+                    errors.add(error);
+                }
+                line = reader.readLine();
+                if (chunk.size() == chunkSize || line == null && !chunk.isEmpty()) {
+                    List<CalculationResult> results = calculate(calculation, chunk, errors);
+                    for (int index = 0; index < results.size(); index += 1) {
+                        CalculationResult result = results.get(index);
+                        failed += result.isSuccessful() ? 0 : 1;
+                        lines += write(output, ids.get(index), result);
+                    }
+                    loans += chunk.size();
+                    ids.clear();
+                    chunk.clear();
+                    errors.clear();
+                }
+            }
+            output.flush();
+        } finally {
+            calculation.shutdown();
+        }
+        return new Statistics(loans, failed, lines, System.nanoTime() - start, rateCache.getSolveCount(),
+                rateCache.getIterationCount(), rateCache.getHitCount());
+    }
+
+    private static List<CalculationResult> calculate(PortfolioCalculation calculation,
+            List<CalculationInputParameters> chunk, List<RuntimeException> errors) {
+        List<CalculationInputParameters> valid = new ArrayList<CalculationInputParameters>(chunk.size());
+        for (int index = 0; index < chunk.size(); index += 1) {
+            if (errors.get(index) == null) {
+                valid.add(chunk.get(index));
+            }
+        }
+        List<CalculationResult> calculated = calculation.calculate(valid);
+        List<CalculationResult> results = new ArrayList<CalculationResult>(chunk.size());
+        int validIndex = 0;
+        for (int index = 0; index < chunk.size(); index += 1) {
+            if (errors.get(index) == null) {
+                results.add(calculated.get(validIndex));
+                validIndex += 1;
+            } else {
+                results.add(new CalculationResult(chunk.get(index), errors.get(index)));
+            }
+        }
+        return results;
+    }
+
+    private static RuntimeException fill(CalculationInputParameters parameters, Map<String, String> fields) {
+        try {
+            fillParameters(parameters, fields);
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return ex;
+        }
+    }
+
+    /**
+     * Create input parameters of the loan from its fields (see the class description), names are case insensitive,
+     * unknown names and empty values are ignored.
+     * @param fields - field names and values
+     * @return input parameters of the loan
+     * @throws IllegalArgumentException if a value can not be parsed
+     */
+    public static CalculationInputParameters toParameters(Map<String, String> fields) {
+        CalculationInputParameters parameters = new CalculationInputParameters();
+        fillParameters(parameters, fields);
+        return parameters;
+    }
+
+    private static void fillParameters(CalculationInputParameters parameters, Map<String, String> fields) {
+        try {
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                String value = field.getValue();
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+                String name = field.getKey().toLowerCase(Locale.ENGLISH);
+                if ("amount".equals(name)) {
+                    parameters.setAmount(Double.parseDouble(value));
+                } else if ("rate".equals(name)) {
+                    parameters.setRate(Double.parseDouble(value));
+                } else if ("openingrate".equals(name)) {
+                    parameters.setOpeningRate(Double.parseDouble(value));
+                } else if ("monthlyrate".equals(name)) {
+                    parameters.setMonthlyRate(Double.parseDouble(value));
+                } else if ("duration".equals(name)) {
+                    parameters.setDuration(Integer.parseInt(value));
+                } else if ("startdate".equals(name)) {
+                    parameters.setStartDate(Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault())
+                            .toInstant()));
+                } else if ("repaymentday".equals(name)) {
+                    parameters.setRepaymentDay(Integer.parseInt(value));
+                } else if ("endgraceperiod".equals(name)) {
+                    parameters.setEndGracePeriod(Long.valueOf(value));
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("wrong loan: " + ex.getMessage(), ex);
+        }
+    }
+
+    private int write(Writer output, String id, CalculationResult result) throws IOException {
+        if (!schedule) {
+            CalculationSummary summary = result.getSummary();
+            CalculationInputParameters parameters = result.getParameters();
+            Object[] values = summary == null
+                ? new Object[] {id, parameters.getAmount(), parameters.getDuration(), parameters.getRate(), null,
+                    null, null, null, null, null, result.getError().getMessage()}
+                : new Object[] {id, parameters.getAmount(), parameters.getDuration(), parameters.getRate(),
+                    summary.getAnnuitySum(), summary.getTotalInstalmentPayment(), summary.getTotalPayment(),
+                    summary.getTotalInterestPayment(), summary.getLoanCost(), summary.getInterestRate(), null};
+            writeLine(output, SUMMARY_FIELDS, values);
+            return 1;
+        }
+        PaymentSchedule payments = result.getSchedule();
+        Object[] values = new Object[SCHEDULE_FIELDS.length];
+        if (payments == null) {
+            if (result.getError() == null) {
+                return 0;
+            }
+            values[0] = id;
+            values[10] = result.getError().getMessage();
+            writeLine(output, SCHEDULE_FIELDS, values);
+            return 1;
+        }
+        for (int index = 0; index < payments.size(); index += 1) {
+            long date = payments.getDate(index);
+            values[0] = id;
+            values[1] = index;
+            values[2] = date == PaymentSchedule.NO_DATE ? null
+                    : Instant.ofEpochMilli(date).atZone(zone).toLocalDate();
+            values[3] = payments.getDebetIn(index);
+            values[4] = payments.getCapitalPayment(index);
+            values[5] = payments.getInterestPayment(index);
+            values[6] = payments.getMonthlyFee(index);
+            values[7] = payments.getTotalPayment(index);
+            values[8] = payments.getDebetOut(index);
+            values[9] = payments.getNetValue(index);
+            writeLine(output, SCHEDULE_FIELDS, values);
+        }
+        return payments.size();
+    }
+
+    private void writeLine(Writer output, String[] names, Object[] values) throws IOException {
+        if (outputFormat == Format.CSV) {
+            for (int index = 0; index < values.length; index += 1) {
+                if (index > 0) {
+                    output.write(',');
+                }
+                if (values[index] != null) {
+                    writeCsvValue(output, values[index].toString());
+                }
+            }
+            output.write('\n');
+            return;
+        }
+        output.write('{');
+        boolean first = true;
+        for (int index = 0; index < values.length; index += 1) {
+            if (values[index] == null) {
+                continue;
+            }
+            if (!first) {
+                output.write(',');
+            }
+            first = false;
+            output.write('"');
+            output.write(names[index]);
+            output.write("\":");
+            if (values[index] instanceof Number) {
+                output.write(values[index].toString());
+            } else {
+                writeJsonString(output, values[index].toString());
+            }
+        }
+        output.write("}\n");
+    }
+
+    private static void writeCsvLine(Writer output, String[] values) throws IOException {
+        for (int index = 0; index < values.length; index += 1) {
+            if (index > 0) {
+                output.write(',');
+            }
+            writeCsvValue(output, values[index]);
+        }
+        output.write('\n');
+    }
+
+    private static void writeCsvValue(Writer output, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            output.write(value);
+            return;
+        }
+        output.write('"');
+        output.write(value.replace("\"", "\"\""));
+        output.write('"');
+    }
+
+    private static void writeJsonString(Writer output, String value) throws IOException {
+        output.write('"');
+        for (int index = 0; index < value.length(); index += 1) {
+            char ch = value.charAt(index);
+            if (ch == '"' || ch == '\\') {
+                output.write('\\');
+                output.write(ch);
+            } else if (ch < ' ') {
+                output.write(String.format("\\u%04x", (int) ch));
+            } else {
+                output.write(ch);
+            }
+        }
+        output.write('"');
+    }
+
+    private static Map<String, String> toMap(String[] header, String[] values) {
+        Map<String, String> fields = new HashMap<String, String>();
+        for (int index = 0; index < header.length && index < values.length; index += 1) {
+            fields.put(header[index].trim(), values[index].trim());
+        }
+        return fields;
+    }
+
+    /**
+     * Split CSV line to values, quoted values may contain commas and doubled quotes.
+     */
+    static String[] parseCsvLine(String line) {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int index = 0; index < line.length(); index += 1) {
+            char ch = line.charAt(index);
+            if (quoted) {
+                if (ch == '"' && index + 1 < line.length() && line.charAt(index + 1) == '"') {
+                    value.append('"');
+                    index += 1;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    value.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(ch);
+            }
+        }
+        values.add(value.toString());
+        return values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * Parse flat JSON object with string, number, boolean and null values.
+     * @param line - JSON object in one line
+     * @return field names and values, numbers and booleans as they are written, null for null
+     * @throws IllegalArgumentException if the line is not a flat JSON object
+     */
+    public static Map<String, String> parseJsonLine(String line) {
+        try {
+            return parseJsonObject(line);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Unexpected end of line: " + line, ex);
+        }
+    }
+
+    private static Map<String, String> parseJsonObject(String line) {
+        Map<String, String> fields = new HashMap<String, String>();
+        int[] position = {skipSpaces(line, 0)};
+        expect(line, position, '{');
+        if (line.charAt(skipSpaces(line, position[0])) == '}') {
+            return fields;
+        }
+        while (true) {
+            position[0] = skipSpaces(line, position[0]);
+            String name = parseJsonString(line, position);
+            position[0] = skipSpaces(line, position[0]);
+            expect(line, position, ':');
+            position[0] = skipSpaces(line, position[0]);
+            String value;
+            if (line.charAt(position[0]) == '"') {
+                value = parseJsonString(line, position);
+            } else {
+                int end = position[0];
+                while (end < line.length() && ",} \t".indexOf(line.charAt(end)) < 0) {
+                    end += 1;
+                }
+                value = line.substring(position[0], end);
+                position[0] = end;
+                if ("null".equals(value)) {
+                    value = null;
+                }
+            }
+            fields.put(name, value);
+            position[0] = skipSpaces(line, position[0]);
+            if (line.charAt(position[0]) == '}') {
+                return fields;
+            }
+            expect(line, position, ',');
+        }
+    }
+
+    private static String parseJsonString(String line, int[] position) {
+        expect(line, position, '"');
+        StringBuilder value = new StringBuilder();
+        int index = position[0];
+        while (line.charAt(index) != '"') {
+            char ch = line.charAt(index);
+            if (ch == '\\') {
+                index += 1;
+                char escaped = line.charAt(index);
+                if (escaped == 'u') {
+                    value.append((char) Integer.parseInt(line.substring(index + 1, index + 5), 16));
+                    index += 4;
+                } else if (escaped == 'n') {
+                    value.append('\n');
+                } else if (escaped == 't') {
+                    value.append('\t');
+                } else if (escaped == 'r') {
+                    value.append('\r');
+                } else {
+                    value.append(escaped);
+                }
+            } else {
+                value.append(ch);
+            }
+            index += 1;
+        }
+        position[0] = index + 1;
+        return value.toString();
+    }
+
+    private static void expect(String line, int[] position, char expected) {
+        if (position[0] >= line.length() || line.charAt(position[0]) != expected) {
+            throw new IllegalArgumentException("'" + expected + "' is expected at " + position[0] + ": " + line);
+        }
+        position[0] += 1;
+    }
+
+    private static int skipSpaces(String line, int position) {
+        int index = position;
+        while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+            index += 1;
+        }
+        return index;
+    }
+
+    /**
+     * Statistics of the processed batch.
+     */
+    public static final class Statistics {
+        private final long loans;
+        private final long failed;
+        private final long lines;
+        private final long nanos;
+        private final long rateSolves;
+        private final long rateIterations;
+        private final long rateCacheHits;
+
+        Statistics(long loans, long failed, long lines, long nanos, long rateSolves, long rateIterations,
+                long rateCacheHits) {
+            this.loans = loans;
+            this.failed = failed;
+            this.lines = lines;
+            this.nanos = nanos;
+            this.rateSolves = rateSolves;
+            this.rateIterations = rateIterations;
+            this.rateCacheHits = rateCacheHits;
+        }
+
+        public long getLoans() {
+            return loans;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Get number of effective rate solver iterations of all calculated loans.
+         * @return number of iterations
+         */
+        public long getRateIterations() {
+            return rateIterations;
+        }
+
+        /**
+         * Get number of loans, which effective rate was solved from the rate of a loan with the same terms.
+         * @return number of warm started loans
+         */
+        public long getRateCacheHits() {
+            return rateCacheHits;
+        }
+
+        /**
+         * Get average number of effective rate solver iterations per calculated loan.
+         * @return iterations per loan
+         */
+        public double getRateIterationsPerLoan() {
+            return rateSolves == 0 ? .00 : (double) rateIterations / rateSolves;
+        }
+
+        /**
+         * Get number of loans processed per second.
+         * @return loans per second
+         */
+        public double getLoansPerSecond() {
+            return nanos == 0 ? .00 : loans * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "loans: %d, failed: %d, lines: %d, time: %.3f s, %.1f loans/s,"
+                    + " APR iterations: %.2f per loan, %d warm started", loans, failed, lines, nanos / 1e9,
+                    getLoansPerSecond(), getRateIterationsPerLoan(), rateCacheHits);
+        }
+    }
+}
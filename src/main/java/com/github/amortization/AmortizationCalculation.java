@@ -17,11 +17,16 @@
  */
 package com.github.amortization;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
-import java.math.BigDecimal;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * .
@@ -29,13 +34,14 @@ import java.math.BigDecimal;
  * @version $Revision$ $Date$
  */
 public class AmortizationCalculation {
-    private static final int INTEREST_DAYS_30 = 30;
-    private static final double N_PRECISION = -0.00000000000001;
-    private static final double P_PRECISION = 0.00000000000001;
+    private static final long ONE_MINUTE = 60 * 1000L;
+    /** half width of the bracket hint around the effective rate guess */
+    private static final double GUESS_BRACKET = .01;
     private List<PaymentDate> calendar;
     private CalculationInputParameters parameters;
     private Payment total;
     private List<Payment> payments;
+    private PaymentSchedule schedule;
     private double annuitySum;
     private double monthlyFee;
     private double realMonthlyFee;
@@ -45,6 +51,14 @@ public class AmortizationCalculation {
     /** Date of the end of Grace Period */
     private Date endGracePeriodDate;
     private boolean flagNeedRound = true;
+    private boolean flagStrict;
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+    /** effective rate of a similar loan to start the solver from, NaN to start from the nominal rate */
+    private double effectiveRateGuess = Double.NaN;
+    private final AnnuityFactorCache factorCache;
+    /** totals of the stream drained last, null until a stream of the last spliterator() call is drained */
+    private CalculationSummary summary;
+    private PeriodCursor cursor;
 
     /**
      * Constructor. If class instance is made by this constructor, annuity sum will not be calculated internally and
@@ -57,6 +71,65 @@ public class AmortizationCalculation {
      *            for annuity calculation procedure.
      */
     public AmortizationCalculation(List<PaymentDate> calendar, CalculationInputParameters parameters) {
+        factorCache = AnnuityFactorCache.getDefault();
+        total = new Payment();
+        setPayments(new ArrayList<Payment>());
+        init(calendar, parameters);
+    }
+
+    /**
+     * Constructor with the rounding flag, so the plan is initialized once.
+     *
+     * @param calendar
+     *            - PaymentDate object list (payment schedule).
+     * @param parameters
+     *            - input parameters of the loan
+     * @param roundValues
+     *            - see setRoundValues()
+     */
+    public AmortizationCalculation(List<PaymentDate> calendar, CalculationInputParameters parameters,
+            boolean roundValues) {
+        this(calendar, parameters, roundValues, false);
+    }
+
+    /**
+     * Constructor with calculation flags, so the plan is initialized once.
+     *
+     * @param calendar
+     *            - PaymentDate object list (payment schedule).
+     * @param parameters
+     *            - input parameters of the loan
+     * @param roundValues
+     *            - see setRoundValues()
+     * @param strict
+     *            - see setStrict()
+     */
+    AmortizationCalculation(List<PaymentDate> calendar, CalculationInputParameters parameters, boolean roundValues,
+            boolean strict) {
+        this(calendar, parameters, roundValues, strict, AnnuityFactorCache.getDefault());
+    }
+
+    /**
+     * Constructor with calculation flags and cache of annuity factors.
+     *
+     * @param calendar
+     *            - PaymentDate object list (payment schedule).
+     * @param parameters
+     *            - input parameters of the loan
+     * @param roundValues
+     *            - see setRoundValues()
+     * @param strict
+     *            - see setStrict()
+     * @param factorCache
+     *            - cache of annuity factors, a cache with zero size for rates which are used once
+     */
+    AmortizationCalculation(List<PaymentDate> calendar, CalculationInputParameters parameters, boolean roundValues,
+            boolean strict, AnnuityFactorCache factorCache) {
+        this.factorCache = factorCache;
+        this.flagNeedRound = roundValues;
+        this.flagStrict = strict;
+        total = new Payment();
+        setPayments(new ArrayList<Payment>());
         init(calendar, parameters);
     }
 
@@ -73,9 +146,7 @@ public class AmortizationCalculation {
         this.calendar = calendar;
         this.parameters = parameters;
         this.rate = parameters.getRate();
-        total = new Payment();
         annuitySum = calcAnnuitySums(parameters.getAmount(), parameters.getDuration());
-        setPayments(new ArrayList<Payment>());
         realMonthlyFee = parameters.getMonthlyRate() / 100.00 * parameters.getAmount();
         openingFee = parameters.getOpeningRate() / 100.00 * parameters.getAmount();
 
@@ -87,60 +158,165 @@ public class AmortizationCalculation {
         }
     }
 
+    /**
+     * Prepare the calculation for the next loan. The payment schedule, its payment list view and the total payment
+     * are reused by the next calc(), so the Payment objects returned by getTotal() and getPayments() before reset()
+     * are overwritten with values of the next loan and should be copied if they are needed later. Calculation flags
+     * are kept. It allows to calculate many loans in one thread without allocations.
+     *
+     * @param calendar
+     *            - PaymentDate object list (payment schedule).
+     * @param parameters
+     *            - input parameters of the next loan
+     */
+    public void reset(List<PaymentDate> calendar, CalculationInputParameters parameters) {
+        init(calendar, parameters);
+        endGracePeriodDate = null;
+        effectiveRateGuess = Double.NaN;
+        setPayments(Collections.<Payment>emptyList());
+    }
+
+    /**
+     * Get total payment calculated by calc(). The same Payment object is filled again by the next calc() and
+     * reset(), so its values should be copied if they are needed after that.
+     * @return total payment
+     */
     public Payment getTotal() {
         return total;
     }
 
     public void calc() {
-        payments.clear();
+        CalculationListener listener = CalculationInstrumentation.getListener();
+        if (listener == null) {
+            calcPlan();
+            return;
+        }
+        long start = System.nanoTime();
+        calcPlan();
+        listener.planCalculated(System.nanoTime() - start, schedule.size());
+    }
+
+    private void calcPlan() {
+        total.clear();
+        endGracePeriodDate = null;
         if (rate < 0.000001 || parameters == null || parameters.getAmount() < 0.000001) {
+            prepareSchedule(0);
+            payments = schedule.asPayments();
             return;
         }
 
         int size = calendar.size();
-        Payment previous = null;
-        Calendar totalCalendarDate = Calendar.getInstance();
-        for (int index = 0; index < size; index += 1) {
-            Payment payment;
-            PaymentDate paymentDate = (PaymentDate) calendar.get(index);
-            if (paymentDate != null && paymentDate.getDate() != null) {
-                totalCalendarDate.setTime(paymentDate.getDate());
+        prepareSchedule(size);
+        schedule.setLoanTerms(openingFee, monthlyInstallment, parameters);
+        long totalCalendarDate = System.currentTimeMillis();
+        if (cursor == null) {
+            cursor = new PeriodCursor();
+        } else {
+            cursor.rewind();
+        }
+        while (cursor.next()) {
+            schedule.set(cursor.index, cursor.date, cursor.days, cursor.daysPerMonth, cursor.getDebetIn(),
+                    cursor.getCapitalPayment(), cursor.getInterestPayment(), cursor.getTotalInterestPayment(),
+                    cursor.getMonthlyFee(), cursor.getTotalPayment());
+            if (cursor.date != PaymentSchedule.NO_DATE) {
+                totalCalendarDate = cursor.date;
             }
-
-            if (index == 0) {
-                payment = new Payment();
-                payment.setTotalPayment(-parameters.getAmount());
-                payment.setDate(paymentDate.getDate());
-                payment.setOpeningFee(openingFee);
-                payments.add(payment);
-                continue;
+            if (cursor.index > 0) {
+                add2Total(cursor);
             }
-            payment = index == 1 ? calcFirstInstallment(paymentDate, index) : index + 1 == size
-                ? calcLastInstallment(paymentDate, previous, index) : calcInstallment(paymentDate, previous, index);
-            previous = payment;
-            payment.setMonthlyFeeRate(parameters.getMonthlyRate());
-            payment.setOpeningFeeRate(parameters.getOpeningRate());
-            payment.setNominalRate(parameters.getRate());
-            payment.setTotalInstalmentPayment(monthlyInstallment);
-            payment.setCoreAmount(parameters.getCoreAmount());
-
-            add2Total(payment);
-            payments.add(payment);
         }
+        payments = schedule.asPayments();
         // round all payments
         completeTotal(totalCalendarDate);
 
         if (parameters.getEndGracePeriod() != null && this.parameters.getEndGracePeriod() > 0) {
             try {
-                this.endGracePeriodDate = this.payments.get(this.parameters.getEndGracePeriod().intValue()).getDate();
-                LOG.debug(this, "calc(): EndGracePeriodDate=" + this.endGracePeriodDate);
+                // the payment is a view of the schedule, which is overwritten by the next calc()
+                Date date = this.payments.get(this.parameters.getEndGracePeriod().intValue()).getDate();
+                this.endGracePeriodDate = date == null ? null : new Date(date.getTime());
+                LOG.debug(this, "calc(): EndGracePeriodDate={}", this.endGracePeriodDate);
 
             } catch (Exception ex) {
-                LOG.error(this, "check grace period value, may be is too big: " + ex.getMessage());
+                if (flagStrict) {
+                    throw new IllegalArgumentException("check grace period value, may be is too big: "
+                            + ex.getMessage(), ex);
+                }
+                LOG.error(this, "check grace period value, may be is too big: {}", ex.getMessage());
             }
         }
     }
 
+    /**
+     * Calculate totals of amortization plan without building the payment schedule. Payments are calculated one by
+     * one and only the sums and cash flows for the effective rate are kept, so getPayments() and getSchedule()
+     * are not changed.
+     *
+     * @return totals equal to the total payment of calc()
+     */
+    public CalculationSummary calcSummary() {
+        if (rate < 0.000001 || parameters == null || parameters.getAmount() < 0.000001) {
+            return createEmptySummary();
+        }
+        SummaryAccumulator accumulator = new SummaryAccumulator();
+        PeriodCursor cursor = new PeriodCursor();
+        while (cursor.next()) {
+            accumulator.add(cursor);
+        }
+        return accumulator.complete();
+    }
+
+    /**
+     * Stream of payments of amortization plan, calculated on demand. Only the current payment is kept, so
+     * payments can be paged or written out without keeping the plan in memory. The effective rate is known only
+     * at the end of the plan, so net values of streamed payments are zero. Totals are available from getSummary()
+     * when the stream is drained.
+     *
+     * @return sequential stream of payments, the loan payout first
+     */
+    public Stream<Payment> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Spliterator over payments of amortization plan, calculated on demand. See stream().
+     *
+     * @return ordered spliterator of payments
+     */
+    public Spliterator<Payment> spliterator() {
+        summary = null;
+        if (rate < 0.000001 || parameters == null || parameters.getAmount() < 0.000001) {
+            summary = createEmptySummary();
+            return Spliterators.emptySpliterator();
+        }
+        return new PaymentSpliterator();
+    }
+
+    /**
+     * Get totals of the plan streamed by stream() or spliterator(). If several streams are open, these are the
+     * totals of the stream drained last.
+     * @return totals or null if no stream is drained since the last stream() call
+     */
+    public CalculationSummary getSummary() {
+        return summary;
+    }
+
+    private static CalculationSummary createEmptySummary() {
+        return new CalculationSummary(System.currentTimeMillis(), 0, .00, .00, .00, .00, .00, .00, .00, .00, .00);
+    }
+
+    /**
+     * set flag for strict calculation.
+     * <ul>
+     * <li><b>true</b> - errors in input parameters are thrown as IllegalArgumentException</li>
+     * <li><b>false</b> - errors in input parameters are logged only</li>
+     * </ul>
+     *
+     * @param newStrictValue set strict calculation
+     */
+    public void setStrict(boolean newStrictValue) {
+        this.flagStrict = newStrictValue;
+    }
+
     /**
      * set flag for need round values.
      * <ul>
@@ -151,82 +327,83 @@ public class AmortizationCalculation {
      * @param newRoundValue set need round
      */
     public void setRoundValues(boolean newRoundValue) {
-        this.flagNeedRound = newRoundValue;
+        if (flagNeedRound != newRoundValue) {
+            this.flagNeedRound = newRoundValue;
+            init(calendar, parameters);
+        }
     }
 
     /**
      * Calculate effective rate according to National Bank of Ukraine rules.
      *
-     * @param payments
-     *            - payment list (Payment object list)
      * @return - calculated rate with precision E -14.
      */
     private double calcEffectRate() {
-        double localRate = .00;
-        int size = payments.size();
-        double netValue;
-        double left;
-        double currentRate;
-        double offset;
-        for (currentRate = 1.00; localRate > N_PRECISION; currentRate += 1.00) {
-            localRate = .00;
-            for (int index = 0; index < size; index += 1) {
-                Payment payment = (Payment) payments.get(index);
-                netValue = payment.getTotalPayment() / Math.pow(1 + currentRate / 12, index);
-                localRate += netValue;
-                if (localRate > N_PRECISION) {
-                    break;
-                }
-            }
-            if (localRate < N_PRECISION) {
-                break;
-            }
+        double[] cashFlows = schedule.getTotalPaymentColumn();
+        int size = schedule.size();
+        double currentRate = solveEffectiveRate(cashFlows, size);
+        NpvKernel.netValues(cashFlows, size, currentRate, schedule.getNetValueColumn());
+        return currentRate;
+    }
+
+    private double solveEffectiveRate(double[] cashFlows, int size) {
+        CalculationListener listener = CalculationInstrumentation.getListener();
+        if (listener == null) {
+            return solveEffectiveRate(cashFlows, size, effectiveRateGuess);
         }
+        long start = System.nanoTime();
+        double effectiveRate = solveEffectiveRate(cashFlows, size, effectiveRateGuess);
+        listener.effectiveRateCalculated(System.nanoTime() - start, solver.getIterations(), solver.isConverged());
+        return effectiveRate;
+    }
 
-        left = currentRate;
-        int cnt = 0;
-        int precision = BigDecimal.valueOf(P_PRECISION).scale() - 2;
-        BigDecimal.valueOf(0.00).precision();
-        for (offset = 0.10; offset > P_PRECISION && cnt < precision; offset = offset / 10, cnt++) {
-            currentRate = left;
-            boolean isLastFor = (offset / 10 < P_PRECISION) || cnt >= precision;
-            for (; currentRate > P_PRECISION; currentRate = currentRate - offset) {
-                localRate = .00;
-                for (int index = 0; index < size; index += 1) {
-                    Payment payment = (Payment) payments.get(index);
-                    netValue = payment.getTotalPayment() / Math.pow(1 + currentRate / 12, index);
-                    localRate += netValue;
-                    if (isLastFor) {
-                        payment.setNetValue(netValue);
-                    }
-                    if (localRate > N_PRECISION && !isLastFor) {
-                        break;
-                    }
-                }
-                if (localRate > N_PRECISION) {
-                    break;
-                } else {
-                    left = currentRate;
-                }
-            }
+    private double solveEffectiveRate(double[] cashFlows, int size, double guess) {
+        if (Double.isNaN(guess)) {
+            return solver.solve(cashFlows, size, rate / 100.00);
         }
-        return currentRate;
+        return solver.solve(cashFlows, size, guess, guess - GUESS_BRACKET, guess + GUESS_BRACKET);
+    }
+
+    /**
+     * Set effective rate to start the solver from, for example the effective rate of the previous loan with the
+     * same terms. The solver returns the rate of a fixed grid near the root, so the guess changes only the number of
+     * iterations and not a single bit of the rate. It is cleared by reset().
+     * @param guess - effective rate (0.15 for 15%), NaN to start from the nominal rate
+     */
+    void setEffectiveRateGuess(double guess) {
+        this.effectiveRateGuess = guess;
+    }
+
+    /**
+     * Get number of iterations of the last effective rate calculation.
+     * @return number of solver iterations
+     */
+    int getEffectiveRateIterations() {
+        return solver.getIterations();
     }
 
     /**
      * add2Total.
      * @param payment for addition to destination
      */
-    private void add2Total(Payment payment) {
+    private void add2Total(PeriodCursor payment) {
         total.setTotalPayment(total.getTotalPayment() + payment.getTotalPayment());
         total.setCapitalPayment(total.getCapitalPayment() + payment.getCapitalPayment());
         total.setInterestPayment(total.getInterestPayment() + payment.getInterestPayment());
         total.setTotalInterestPayment(total.getTotalInterestPayment() + payment.getTotalInterestPayment());
-        total.setOpeningFee(total.getOpeningFee() + payment.getOpeningFee());
+        total.setOpeningFee(total.getOpeningFee() + openingFee);
         total.setMonthlyFee(total.getMonthlyFee() + payment.getMonthlyFee());
     }
 
-    private void completeTotal(Calendar cal) {
+    private void prepareSchedule(int size) {
+        if (schedule == null) {
+            schedule = new PaymentSchedule(size);
+        } else {
+            schedule.reset(size);
+        }
+    }
+
+    private void completeTotal(long lastDate) {
         total.setMonthlyFeePayment(getMonthlyFee());
         double ef = calcEffectRate();
         ef *= 100.00;
@@ -250,91 +427,205 @@ public class AmortizationCalculation {
         total.setLoanCost(total.getTotalPayment());
 
         total.setTotalInterestPayment(total.getTotalPayment() - total.getCapitalPayment());
-        cal.add(Calendar.MINUTE, 1);
-        total.setDate(cal.getTime());
-    }
-
-    private Payment calcFirstInstallment(PaymentDate paymentDate, int period) {
-        Payment payment = new Payment();
-        double sum = parameters.getAmount();
-        long days = getDays((PaymentDate) calendar.get(0), paymentDate);
-        payment.setDays(days);
-        payment.setDate(paymentDate.getDate());
-        // Instalment in part of interests
-        double interestByRealDays = calcInterest(sum, rate, Math.min(days, INTEREST_DAYS_30));
-        interestByRealDays = round(interestByRealDays, 2);
-        double totalInterestPayment = interestByRealDays + getMonthlyFee();
-        payment.setInterestPayment(interestByRealDays);
-        payment.setTotalInterestPayment(totalInterestPayment);
-        if (parameters.getEndGracePeriod() != null && period <= parameters.getEndGracePeriod()) {
-            payment.setCapitalPayment(annuitySum - interestByRealDays);
-            payment.setMonthlyFee(0D);
-            payment.setTotalPayment(annuitySum);
+        if (total.getDate() == null) {
+            total.setDate(new Date(lastDate + ONE_MINUTE));
         } else {
-            payment.setCapitalPayment(monthlyInstallment - totalInterestPayment);
-            payment.setMonthlyFee(getMonthlyFee());
-            payment.setTotalPayment(monthlyInstallment);
+            total.getDate().setTime(lastDate + ONE_MINUTE);
         }
-        payment.setOpeningFee(openingFee);
-        payment.setDaysPerMonth(paymentDate.getDaysPerMonth());
-        payment.setDebetIn(round(parameters.getAmount(), 2));
-        return payment;
-    }
-
-    private Payment calcLastInstallment(PaymentDate paymentDate, Payment previous, int period) {
-        Payment payment = createPayment(paymentDate, period);
-        payment.setOpeningFee(openingFee);
-        payment.setMonthlyFee(getMonthlyFee());
-        double rest = previous.getDebetIn() - previous.getCapitalPayment();
-        payment.setDebetIn(rest);
-        previous.setDebetOut(rest);
-        payment.setCapitalPayment(rest);
-        double interestByRealDays = round(calcInterest(rest, rate, INTEREST_DAYS_30), 2);
-
-        payment.setInterestPayment(interestByRealDays);
-        double totalInterest = interestByRealDays + getMonthlyFee();
-        payment.setTotalInterestPayment(totalInterest);
-        double lastMonthlyPayment = rest + totalInterest;
-        payment.setTotalPayment(lastMonthlyPayment);
-        payment.setInterestPayment(totalInterest - getMonthlyFee());
-        return payment;
-    }
-
-    private Payment createPayment(PaymentDate paymentDate, int period) {
-        Payment payment = new Payment();
-        payment.setOpeningFee(openingFee);
-        payment.setMonthlyFee(getMonthlyFee());
-        payment.setDaysPerMonth(paymentDate.getDaysPerMonth());
-        long days = paymentDate.getDaysBefore();
-        payment.setDays(days);
-        payment.setDate(paymentDate.getDate());
-        if (parameters.getEndGracePeriod() != null && period <= parameters.getEndGracePeriod()) {
-            payment.setTotalPayment(annuitySum);
-            payment.setMonthlyFee(0D);
-        } else {
-            payment.setTotalPayment(monthlyInstallment);
-            payment.setMonthlyFee(monthlyFee);
+    }
+
+    /**
+     * Sums of the payments and cash flows for the effective rate. Every summary and stream has its own accumulator,
+     * so streams of the same plan can be drained in any order.
+     */
+    private class SummaryAccumulator {
+        private final int size = calendar.size();
+        private final double[] cashFlows = new double[size];
+        private double totalPayment;
+        private double capitalPayment;
+        private double interestPayment;
+        private double monthlyFees;
+        private long lastDate = System.currentTimeMillis();
+
+        void add(PeriodCursor cursor) {
+            cashFlows[cursor.index] = cursor.getTotalPayment();
+            if (cursor.date != PaymentSchedule.NO_DATE) {
+                lastDate = cursor.date;
+            }
+            if (cursor.index > 0) {
+                totalPayment += cursor.getTotalPayment();
+                capitalPayment += cursor.getCapitalPayment();
+                interestPayment += cursor.getInterestPayment();
+                monthlyFees += cursor.getMonthlyFee();
+            }
         }
-        payment.setOpeningFee(openingFee);
-        return payment;
-    }
-
-    private Payment calcInstallment(PaymentDate paymentDate, Payment previous, int period) {
-        Payment payment = createPayment(paymentDate, period);
-        double rest = round(previous.getDebetIn() - previous.getCapitalPayment(), 2);
-        payment.setDebetIn(rest);
-        previous.setDebetOut(rest);
-        double interestByRealDays = calcInterest(rest, rate, INTEREST_DAYS_30);
-        interestByRealDays = round(interestByRealDays, 2);
-        payment.setInterestPayment(interestByRealDays);
-        double totalInterestPayment = interestByRealDays + getMonthlyFee();
-        payment.setTotalInterestPayment(totalInterestPayment);
-        double instPartOfCapital = monthlyInstallment - interestByRealDays - getMonthlyFee();
-        if (parameters.getEndGracePeriod() != null && period <= parameters.getEndGracePeriod()) {
-            instPartOfCapital = annuitySum - interestByRealDays;
+
+        CalculationSummary complete() {
+            Long endGracePeriod = parameters.getEndGracePeriod();
+            if (endGracePeriod != null && endGracePeriod >= size) {
+                if (flagStrict) {
+                    throw new IllegalArgumentException("check grace period value, may be is too big: "
+                            + endGracePeriod);
+                }
+                LOG.error(AmortizationCalculation.this, "check grace period value, may be is too big: {}",
+                        endGracePeriod);
+            }
+            double effectiveRate = solveEffectiveRate(cashFlows, size) * 100.00;
+            return new CalculationSummary(lastDate + ONE_MINUTE, parameters.getDuration(), effectiveRate,
+                    round(parameters.getRate(), 2), round(totalPayment, 2), round(capitalPayment, 2),
+                    round(interestPayment, 2), round(monthlyFees, 2), round(openingFee, 2), annuitySum,
+                    monthlyInstallment);
+        }
+    }
+
+    /**
+     * Spliterator which calculates payments on demand. The cursor is one payment ahead of the returned payment,
+     * because debet out of the payment is debet in of the next one.
+     */
+    private class PaymentSpliterator implements Spliterator<Payment> {
+        private final PeriodCursor cursor = new PeriodCursor();
+        private final SummaryAccumulator accumulator = new SummaryAccumulator();
+        private Payment pending;
+        private int returned;
+        private boolean completed;
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Payment> action) {
+            if (pending == null) {
+                if (returned > 0 || completed) {
+                    return false;
+                }
+                if (!cursor.next()) {
+                    complete();
+                    return false;
+                }
+                pending = createPayment();
+            }
+            Payment payment = pending;
+            if (cursor.next()) {
+                if (cursor.index > 1) {
+                    payment.setDebetOut(cursor.getDebetIn());
+                }
+                pending = createPayment();
+            } else {
+                pending = null;
+                complete();
+            }
+            returned += 1;
+            action.accept(payment);
+            return true;
+        }
+
+        /**
+         * Publish totals of this spliterator, the summary of the stream drained last is kept.
+         */
+        private void complete() {
+            completed = true;
+            summary = accumulator.complete();
+        }
+
+        private Payment createPayment() {
+            accumulator.add(cursor);
+            Payment payment = new Payment();
+            payment.setDate(cursor.date == PaymentSchedule.NO_DATE ? null : new Date(cursor.date));
+            payment.setTotalPayment(cursor.getTotalPayment());
+            payment.setOpeningFee(openingFee);
+            if (cursor.index == 0) {
+                return payment;
+            }
+            payment.setDays(cursor.days);
+            payment.setDaysPerMonth(cursor.daysPerMonth);
+            payment.setDebetIn(cursor.getDebetIn());
+            payment.setCapitalPayment(cursor.getCapitalPayment());
+            payment.setInterestPayment(cursor.getInterestPayment());
+            payment.setTotalInterestPayment(cursor.getTotalInterestPayment());
+            payment.setMonthlyFee(cursor.getMonthlyFee());
+            payment.setMonthlyFeeRate(parameters.getMonthlyRate());
+            payment.setOpeningFeeRate(parameters.getOpeningRate());
+            payment.setNominalRate(parameters.getRate());
+            payment.setTotalInstalmentPayment(monthlyInstallment);
+            payment.setCoreAmount(parameters.getCoreAmount());
+            return payment;
+        }
+
+        @Override
+        public Spliterator<Payment> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return cursor.size - returned;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | SIZED;
+        }
+    }
+
+    /**
+     * Cursor over the payments of the plan. Every next() call calculates the next payment from the previous one,
+     * so only two payments are kept at any time.
+     */
+    private class PeriodCursor extends PeriodPayment {
+        private int size;
+        private Long endGracePeriod;
+        private int index;
+        /** payment date in milliseconds or PaymentSchedule.NO_DATE */
+        private long date;
+        private long days;
+        private long daysPerMonth;
+
+        PeriodCursor() {
+            rewind();
+        }
+
+        /**
+         * Move before the first payment of the current calendar and parameters.
+         */
+        void rewind() {
+            size = calendar.size();
+            endGracePeriod = parameters.getEndGracePeriod();
+            index = -1;
+            setTerms(parameters.getAmount(), rate, annuitySum, monthlyInstallment, monthlyFee);
+        }
+
+        /**
+         * Move to the next payment.
+         * @return false if there are no more payments
+         */
+        boolean next() {
+            if (index + 1 >= size) {
+                return false;
+            }
+            index += 1;
+            PaymentDate paymentDate = calendar.get(index);
+            date = paymentDate.getTime();
+            if (index == 0) {
+                days = 0;
+                daysPerMonth = 0;
+                calcLoanPayout();
+                return true;
+            }
+            daysPerMonth = paymentDate.getDaysPerMonth();
+            if (index == 1) {
+                days = getDays(calendar.get(0), paymentDate);
+                calcFirstInstallment(days, isGracePeriod());
+            } else {
+                days = paymentDate.getDaysBefore();
+                if (index + 1 == size) {
+                    calcLastInstallment();
+                } else {
+                    calcInstallment(isGracePeriod());
+                }
+            }
+            return true;
+        }
+
+        private boolean isGracePeriod() {
+            return endGracePeriod != null && index <= endGracePeriod;
         }
-        payment.setCapitalPayment(round(instPartOfCapital, 2));
-        return payment;
     }
 
     /**
@@ -347,13 +638,23 @@ public class AmortizationCalculation {
      * @return the annuity sum
      */
     public double calcAnnuitySums(double ammount, int duration) {
-        double sum;
-        sum = ((Math.pow(1 + (rate / 12 / 100.00), duration) * (rate / 12 / 100.00)) / (Math.pow(
-                1 + (rate / 12 / 100.00), duration) - 1))
-                * ammount;
+        double sum = factorCache.getFactor(rate, duration) * ammount;
         return round(sum, 2);
     }
 
+    /**
+     * Get payment schedule calculated by calc().
+     * @return payment schedule or null if calc() was not called
+     */
+    public PaymentSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Get payments calculated by calc(). The list and its Payment objects are views of the payment schedule, they
+     * are overwritten by the next calc() and reset().
+     * @return payment list
+     */
     public List<Payment> getPayments() {
         return payments;
     }
@@ -376,9 +677,7 @@ public class AmortizationCalculation {
      * @return rounded value.
      */
     public double round(double value, int number) {
-        BigDecimal bd = BigDecimal.valueOf(value);
-        bd = bd.setScale(number, BigDecimal.ROUND_HALF_UP);
-        return bd.doubleValue();
+        return Rounding.halfUp(value, number);
     }
 
     /**
@@ -399,27 +698,17 @@ public class AmortizationCalculation {
         this.monthlyFee = monthlyFee;
     }
 
-    private long getDays(PaymentDate fromDate, PaymentDate toDate) {
-        return getDays(fromDate.getDate(), toDate.getDate());
-    }
-
-    private long getDays(Date fromDate, Date toDate) {
-        Calendar fromDateCalendar = Calendar.getInstance();
-        fromDateCalendar.setTime(fromDate);
-        Calendar toDateCalendar = Calendar.getInstance();
-        toDateCalendar.setTime(toDate);
-
-        long monthes = (toDateCalendar.get(Calendar.YEAR) * 12 + toDateCalendar.get(Calendar.MONTH))
-                - (fromDateCalendar.get(Calendar.YEAR) * 12 + fromDateCalendar.get(Calendar.MONTH));
-
-        long startDay = fromDateCalendar.get(Calendar.DATE);
-        long endDay = toDateCalendar.get(Calendar.DATE);
-        long days = monthes * 30 + (endDay - startDay);
-        return days;
-    }
-
-    private double calcInterest(double sum, double rate, double days) {
-        return sum * rate * days / (100.00 * 360);
+    /**
+     * Number of days between dates, counting every month as 30 days.
+     * @param fromDate - the first date
+     * @param toDate - the second date
+     * @return number of days
+     */
+    static long getDays(PaymentDate fromDate, PaymentDate toDate) {
+        LocalDate from = fromDate.getLocalDate();
+        LocalDate to = toDate.getLocalDate();
+        long monthes = (to.getYear() * 12 + to.getMonthValue()) - (from.getYear() * 12 + from.getMonthValue());
+        return monthes * 30 + (to.getDayOfMonth() - from.getDayOfMonth());
     }
 
     /**
@@ -0,0 +1,198 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.List;
+
+/**
+ * Stateless amortization plan calculation. The engine keeps only its configuration, every call works with its
+ * own AmortizationCalculation, so one engine can be shared by any number of threads without locking.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public final class AmortizationEngine {
+    private final boolean roundValues;
+    private final PaymentCalendarCache calendarCache;
+    private final EffectiveRateCache rateCache;
+
+    /**
+     * Constructor. Installments are rounded, payment calendar is created for every loan.
+     */
+    public AmortizationEngine() {
+        this(true, null);
+    }
+
+    /**
+     * Constructor.
+     * @param roundValues - round annuity sum and installment up (see AmortizationCalculation.setRoundValues())
+     * @param calendarCache - cache of payment calendars, null to create calendar for every loan
+     */
+    public AmortizationEngine(boolean roundValues, PaymentCalendarCache calendarCache) {
+        this(roundValues, calendarCache, null);
+    }
+
+    /**
+     * Constructor.
+     * @param roundValues - round annuity sum and installment up (see AmortizationCalculation.setRoundValues())
+     * @param calendarCache - cache of payment calendars, null to create calendar for every loan
+     * @param rateCache - cache of effective rates to start the solver from, null to start from the nominal rate
+     */
+    public AmortizationEngine(boolean roundValues, PaymentCalendarCache calendarCache,
+            EffectiveRateCache rateCache) {
+        this.roundValues = roundValues;
+        this.calendarCache = calendarCache;
+        this.rateCache = rateCache;
+    }
+
+    public boolean isRoundValues() {
+        return roundValues;
+    }
+
+    public PaymentCalendarCache getCalendarCache() {
+        return calendarCache;
+    }
+
+    public EffectiveRateCache getEffectiveRateCache() {
+        return rateCache;
+    }
+
+    /**
+     * Calculate amortization plan for the loan with its payment calendar.
+     * @param parameters - input parameters of the loan
+     * @return the result with payments or with error
+     */
+    public CalculationResult calculate(CalculationInputParameters parameters) {
+        try {
+            List<PaymentDate> dates = calendarCache == null
+                    ? new MonthlyCalendarFiller().createDateList(parameters) : calendarCache.getDateList(parameters);
+            return calculate(dates, parameters);
+        } catch (RuntimeException ex) {
+            return new CalculationResult(parameters, ex);
+        }
+    }
+
+    /**
+     * Calculate amortization plan for the loan. Errors in input parameters are returned in the result.
+     * @param dates - payment calendar, it is not changed by the calculation
+     * @param parameters - input parameters of the loan
+     * @return the result with payments or with error
+     */
+    public CalculationResult calculate(List<PaymentDate> dates, CalculationInputParameters parameters) {
+        try {
+            AmortizationCalculation calculation = new AmortizationCalculation(dates, parameters, roundValues, true);
+            if (rateCache == null) {
+                calculation.calc();
+            } else {
+                calculation.setEffectiveRateGuess(rateCache.getRate(parameters));
+                calculation.calc();
+                rateCache.put(parameters, calculation.getTotal().getInterestRate() / 100.00,
+                        calculation.getEffectiveRateIterations());
+            }
+            return new CalculationResult(parameters, calculation.getSchedule(),
+                    new CalculationSummary(calculation.getTotal()));
+        } catch (RuntimeException ex) {
+            return new CalculationResult(parameters, ex);
+        }
+    }
+
+    /**
+     * Find the largest amount of the loan, which monthly installment is not larger than the target.
+     * @param parameters - input parameters of the loan, amount is ignored
+     * @param monthlyInstallment - target monthly installment
+     * @return amount in whole cents
+     * @throws IllegalArgumentException if no positive amount has so small installment
+     */
+    public double findAmount(CalculationInputParameters parameters, double monthlyInstallment) {
+        return new GoalSeek(parameters, roundValues).findAmount(monthlyInstallment);
+    }
+
+    /**
+     * Find the shortest duration of the loan, which monthly installment is not larger than the target.
+     * @param parameters - input parameters of the loan, duration is ignored
+     * @param monthlyInstallment - target monthly installment
+     * @return number of months, longer than grace period
+     * @throws IllegalArgumentException if the installment does not cover interests of the loan
+     */
+    public int findDuration(CalculationInputParameters parameters, double monthlyInstallment) {
+        return new GoalSeek(parameters, roundValues).findDuration(monthlyInstallment);
+    }
+
+    /**
+     * Find the largest nominal rate of the loan, which monthly installment is not larger than the target.
+     * @param parameters - input parameters of the loan, rate is ignored
+     * @param monthlyInstallment - target monthly installment
+     * @return nominal rate in percents
+     * @throws IllegalArgumentException if the installment is smaller than with zero rate
+     */
+    public double findRate(CalculationInputParameters parameters, double monthlyInstallment) {
+        return new GoalSeek(parameters, roundValues).findRate(monthlyInstallment);
+    }
+
+    /**
+     * Find nominal rate of the loan with the target effective rate (APR), with fees and grace period of the loan.
+     * @param parameters - input parameters of the loan, rate is ignored
+     * @param effectiveRate - target effective rate in percents
+     * @return nominal rate in percents
+     * @throws IllegalArgumentException if fees of the loan alone give larger effective rate
+     */
+    public double findRateForEffectiveRate(CalculationInputParameters parameters, double effectiveRate) {
+        List<PaymentDate> dates = calendarCache == null
+                ? new MonthlyCalendarFiller().createDateList(parameters) : calendarCache.getDateList(parameters);
+        return new GoalSeek(parameters, roundValues).findRateForEffectiveRate(dates, effectiveRate);
+    }
+
+    /**
+     * Calculate plans of the loan for a grid of nominal rates.
+     * @param parameters - input parameters of the loan, rate is ignored
+     * @param rates - nominal rates in percents
+     * @param keepSchedules - true to keep payment schedule of every rate
+     * @return calculated plans
+     * @throws IllegalArgumentException if the loan or a rate is not valid
+     */
+    public RateSensitivity calculateRates(CalculationInputParameters parameters, double[] rates,
+            boolean keepSchedules) {
+        List<PaymentDate> dates = calendarCache == null
+                ? new MonthlyCalendarFiller().createDateList(parameters) : calendarCache.getDateList(parameters);
+        RateSensitivity sensitivity = new RateSensitivity(dates, parameters, rates);
+        sensitivity.setRoundValues(roundValues);
+        sensitivity.setKeepSchedules(keepSchedules);
+        sensitivity.calc();
+        return sensitivity;
+    }
+
+    /**
+     * Recalculate the plan after the change of the loan terms, payments before the changed installment are kept.
+     * @param base - calculated plan
+     * @param change - change of the loan terms
+     * @return the result with the new plan or with error
+     */
+    public CalculationResult recalculate(CalculationResult base, ScheduleChange change) {
+        try {
+            CalculationInputParameters parameters = base.getParameters();
+            if (change.getExtraMonths() > 0) {
+                parameters = GoalSeek.copy(parameters);
+                parameters.setDuration(parameters.getDuration() + change.getExtraMonths());
+            }
+            List<PaymentDate> dates = calendarCache == null
+                    ? new MonthlyCalendarFiller().createDateList(parameters) : calendarCache.getDateList(parameters);
+            return new ScheduleRecalculation(base, roundValues).recalc(dates, change);
+        } catch (RuntimeException ex) {
+            return new CalculationResult(base.getParameters(), ex);
+        }
+    }
+}
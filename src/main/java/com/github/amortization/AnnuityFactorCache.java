@@ -0,0 +1,155 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of annuity factors for pairs of nominal rate and duration.
+ * Annuity sum is the loan amount multiplied by the factor, so the factor is calculated with Math.pow once for
+ * every pair. When the cache is full, factors of new pairs are calculated on every call.
+ * The cache is thread safe. The shared instance is used by the calculations.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class AnnuityFactorCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+    private static final AnnuityFactorCache DEFAULT = new AnnuityFactorCache(DEFAULT_MAXIMUM_SIZE);
+
+    private final int maximumSize;
+    private final ConcurrentMap<Key, Double> factors = new ConcurrentHashMap<Key, Double>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param maximumSize - maximum number of cached factors
+     */
+    public AnnuityFactorCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximum size should not be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the shared cache.
+     * @return the shared cache
+     */
+    public static AnnuityFactorCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Calculate annuity factor: monthly payment of the loan with amount 1.
+     * @param rate - nominal year rate in percents
+     * @param duration - number of months
+     * @return annuity factor
+     */
+    public static double calcFactor(double rate, int duration) {
+        double monthlyRate = rate / 12 / 100.00;
+        double growth = Math.pow(1 + monthlyRate, duration);
+        return growth * monthlyRate / (growth - 1);
+    }
+
+    /**
+     * Get annuity factor from the cache or calculate it.
+     * @param rate - nominal year rate in percents
+     * @param duration - number of months
+     * @return annuity factor
+     */
+    public double getFactor(double rate, int duration) {
+        Key key = new Key(rate, duration);
+        Double factor = factors.get(key);
+        if (factor != null) {
+            hitCount.increment();
+            return factor;
+        }
+        missCount.increment();
+        double newFactor = calcFactor(rate, duration);
+        if (factors.size() < maximumSize) {
+            factors.putIfAbsent(key, newFactor);
+        }
+        return newFactor;
+    }
+
+    /**
+     * Calculate and cache factors for the product grid.
+     * @param rates - nominal year rates in percents
+     * @param durations - numbers of months
+     */
+    public void preload(double[] rates, int[] durations) {
+        for (double rate : rates) {
+            for (int duration : durations) {
+                if (factors.size() >= maximumSize) {
+                    return;
+                }
+                factors.putIfAbsent(new Key(rate, duration), calcFactor(rate, duration));
+            }
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int size() {
+        return factors.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Remove all cached factors. Statistics are not reset.
+     */
+    public void clear() {
+        factors.clear();
+    }
+
+    private static final class Key {
+        private final long rate;
+        private final int duration;
+
+        Key(double rate, int duration) {
+            this.rate = Double.doubleToLongBits(rate);
+            this.duration = duration;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return rate == key.rate && duration == key.duration;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(rate) + duration;
+        }
+    }
+}
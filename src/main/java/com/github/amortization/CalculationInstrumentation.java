@@ -0,0 +1,46 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Holder of the calculation listener. When no listener is set, instrumented code only reads a volatile field.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public final class CalculationInstrumentation {
+    private static volatile CalculationListener listener;
+
+    private CalculationInstrumentation() {
+    }
+
+    /**
+     * Set listener of the calculation events for all calculations.
+     * @param newListener - listener or null to switch instrumentation off
+     */
+    public static void setListener(CalculationListener newListener) {
+        listener = newListener;
+    }
+
+    /**
+     * Get listener of the calculation events.
+     * @return listener or null if instrumentation is off
+     */
+    public static CalculationListener getListener() {
+        return listener;
+    }
+}
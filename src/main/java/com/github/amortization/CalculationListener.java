@@ -0,0 +1,58 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Listener of the calculation events, used to collect metrics. Methods are called in the calculating thread
+ * and should be fast and thread safe. See CalculationInstrumentation.setListener().
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public interface CalculationListener {
+    /**
+     * Amortization plan is calculated by AmortizationCalculation.calc().
+     * @param nanos - calculation time in nanoseconds
+     * @param payments - number of payments including the loan payout
+     */
+    default void planCalculated(long nanos, int payments) {
+    }
+
+    /**
+     * Payment calendar is created by MonthlyCalendarFiller.
+     * @param nanos - creation time in nanoseconds
+     * @param dates - number of payment dates
+     */
+    default void calendarCreated(long nanos, int dates) {
+    }
+
+    /**
+     * Effective rate is calculated.
+     * @param nanos - calculation time in nanoseconds
+     * @param iterations - number of solver iterations
+     * @param converged - false if the solver reached the maximum number of iterations or found no root
+     */
+    default void effectiveRateCalculated(long nanos, int iterations, boolean converged) {
+    }
+
+    /**
+     * Payment calendar is requested from PaymentCalendarCache.
+     * @param hit - true if the calendar was found in the cache
+     */
+    default void calendarCacheAccessed(boolean hit) {
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Calculation metrics: counters and latency histograms of plan, calendar and effective rate calculations,
+ * solver iterations and calendar cache hits. Metrics are collected when the instance is set as the listener by
+ * install() and can be read by JMX after register().
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class CalculationMetrics implements CalculationListener, CalculationMetricsMBean {
+    public static final String OBJECT_NAME = "com.github.amortization:type=CalculationMetrics";
+    private static final double NANOS_PER_MICRO = 1000.00;
+
+    private final Histogram plans = new Histogram();
+    private final Histogram calendars = new Histogram();
+    private final Histogram effectiveRates = new Histogram();
+    private final LongAdder solverIterations = new LongAdder();
+    private final LongAdder solverFailures = new LongAdder();
+    private final LongAdder calendarCacheHits = new LongAdder();
+    private final LongAdder calendarCacheMisses = new LongAdder();
+
+    /**
+     * Set this instance as the listener of all calculations.
+     * @return this instance
+     */
+    public CalculationMetrics install() {
+        CalculationInstrumentation.setListener(this);
+        return this;
+    }
+
+    /**
+     * Register this instance in the platform MBean server.
+     * @throws JMException if the MBean can not be registered
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Unregister the MBean and switch instrumentation off if this instance is the listener.
+     * @throws JMException if the MBean can not be unregistered
+     */
+    public void unregister() throws JMException {
+        if (CalculationInstrumentation.getListener() == this) {
+            CalculationInstrumentation.setListener(null);
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Override
+    public void planCalculated(long nanos, int payments) {
+        plans.record(nanos);
+    }
+
+    @Override
+    public void calendarCreated(long nanos, int dates) {
+        calendars.record(nanos);
+    }
+
+    @Override
+    public void effectiveRateCalculated(long nanos, int iterations, boolean converged) {
+        effectiveRates.record(nanos);
+        solverIterations.add(iterations);
+        if (!converged) {
+            solverFailures.increment();
+        }
+    }
+
+    @Override
+    public void calendarCacheAccessed(boolean hit) {
+        if (hit) {
+            calendarCacheHits.increment();
+        } else {
+            calendarCacheMisses.increment();
+        }
+    }
+
+    @Override
+    public long getPlanCount() {
+        return plans.getCount();
+    }
+
+    @Override
+    public double getPlanMeanMicros() {
+        return plans.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getPlanP50Micros() {
+        return plans.getPercentile(.50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getPlanP99Micros() {
+        return plans.getPercentile(.99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public long getCalendarCount() {
+        return calendars.getCount();
+    }
+
+    @Override
+    public double getCalendarMeanMicros() {
+        return calendars.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getCalendarP99Micros() {
+        return calendars.getPercentile(.99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public long getEffectiveRateCount() {
+        return effectiveRates.getCount();
+    }
+
+    @Override
+    public double getEffectiveRateMeanMicros() {
+        return effectiveRates.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getEffectiveRateP99Micros() {
+        return effectiveRates.getPercentile(.99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getSolverMeanIterations() {
+        long count = effectiveRates.getCount();
+        return count == 0 ? .00 : solverIterations.sum() / (double) count;
+    }
+
+    @Override
+    public long getSolverFailures() {
+        return solverFailures.sum();
+    }
+
+    @Override
+    public long getCalendarCacheHits() {
+        return calendarCacheHits.sum();
+    }
+
+    @Override
+    public long getCalendarCacheMisses() {
+        return calendarCacheMisses.sum();
+    }
+
+    @Override
+    public double getCalendarCacheHitRate() {
+        long hits = calendarCacheHits.sum();
+        long total = hits + calendarCacheMisses.sum();
+        return total == 0 ? .00 : hits / (double) total;
+    }
+
+    @Override
+    public void reset() {
+        plans.reset();
+        calendars.reset();
+        effectiveRates.reset();
+        solverIterations.reset();
+        solverFailures.reset();
+        calendarCacheHits.reset();
+        calendarCacheMisses.reset();
+    }
+
+    /**
+     * Latency histogram with power of two buckets: bucket i counts times in [2^(i-1), 2^i) nanoseconds.
+     */
+    private static final class Histogram {
+        private static final int BUCKETS = 64;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(Math.min(BUCKETS - Long.numberOfLeadingZeros(value), BUCKETS - 1));
+            count.increment();
+            total.add(value);
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        double getMean() {
+            long currentCount = count.sum();
+            return currentCount == 0 ? .00 : total.sum() / (double) currentCount;
+        }
+
+        double getPercentile(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long currentCount = 0;
+            for (int index = 0; index < BUCKETS; index += 1) {
+                counts[index] = buckets.get(index);
+                currentCount += counts[index];
+            }
+            long rank = (long) Math.ceil(percentile * currentCount);
+            long seen = 0;
+            for (int index = 0; index < BUCKETS; index += 1) {
+                seen += counts[index];
+                if (seen >= rank && seen > 0) {
+                    return Math.pow(2, index);
+                }
+            }
+            return .00;
+        }
+
+        void reset() {
+            for (int index = 0; index < BUCKETS; index += 1) {
+                buckets.set(index, 0);
+            }
+            count.reset();
+            total.reset();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * JMX interface of the calculation metrics. Times are in microseconds, percentiles are upper bounds of
+ * power of two buckets.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public interface CalculationMetricsMBean {
+    long getPlanCount();
+
+    double getPlanMeanMicros();
+
+    double getPlanP50Micros();
+
+    double getPlanP99Micros();
+
+    long getCalendarCount();
+
+    double getCalendarMeanMicros();
+
+    double getCalendarP99Micros();
+
+    long getEffectiveRateCount();
+
+    double getEffectiveRateMeanMicros();
+
+    double getEffectiveRateP99Micros();
+
+    double getSolverMeanIterations();
+
+    long getSolverFailures();
+
+    long getCalendarCacheHits();
+
+    long getCalendarCacheMisses();
+
+    double getCalendarCacheHitRate();
+
+    void reset();
+}
@@ -0,0 +1,110 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the amortization plan calculation for one loan.
+ * Either the schedule and the summary are filled or the error is set. The result is immutable, input parameters
+ * are copied, the schedule is read-only and payments are created on every getPayments() call and on every access
+ * to the schedule payment list view, so they may be changed by the caller.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class CalculationResult {
+    private final CalculationInputParameters parameters;
+    private final PaymentSchedule schedule;
+    private final CalculationSummary summary;
+    private final RuntimeException error;
+
+    /**
+     * Constructor of the calculated plan.
+     * @param parameters - input parameters, they are copied
+     * @param schedule - payment schedule, it is made read-only and is not changed afterwards
+     * @param summary - totals of the plan
+     */
+    CalculationResult(CalculationInputParameters parameters, PaymentSchedule schedule, CalculationSummary summary) {
+        this.parameters = GoalSeek.copy(parameters);
+        schedule.freeze();
+        this.schedule = schedule;
+        this.summary = summary;
+        this.error = null;
+    }
+
+    CalculationResult(CalculationInputParameters parameters, RuntimeException error) {
+        this.parameters = parameters == null ? null : GoalSeek.copy(parameters);
+        this.schedule = null;
+        this.summary = null;
+        this.error = error;
+    }
+
+    /**
+     * Get input parameters of the calculation.
+     * @return copy of the input parameters
+     */
+    public CalculationInputParameters getParameters() {
+        return parameters == null ? null : GoalSeek.copy(parameters);
+    }
+
+    /**
+     * Get payment schedule. The schedule is read-only, its payment list view creates new payment objects on every
+     * access.
+     * @return payment schedule or null if calculation failed
+     */
+    public PaymentSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Get payments of the payment schedule, new payment objects are created on every call.
+     * @return unmodifiable payment list, empty if calculation failed
+     */
+    public List<Payment> getPayments() {
+        if (schedule == null) {
+            return Collections.<Payment>emptyList();
+        }
+        List<Payment> payments = new ArrayList<Payment>(schedule.size());
+        for (int index = 0; index < schedule.size(); index += 1) {
+            payments.add(schedule.createPayment(index));
+        }
+        return Collections.unmodifiableList(payments);
+    }
+
+    /**
+     * Get immutable totals of the plan.
+     * @return totals or null if calculation failed
+     */
+    public CalculationSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Get error of the calculation.
+     * @return error or null if calculation succeeded
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
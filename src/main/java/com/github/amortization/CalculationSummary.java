@@ -0,0 +1,130 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.Date;
+
+/**
+ * Totals of the amortization plan calculated without the payment schedule.
+ * Values are the same as in the total payment of AmortizationCalculation.calc().
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public final class CalculationSummary {
+    private final long date;
+    private final long duration;
+    private final double interestRate;
+    private final double nominalRate;
+    private final double loanCost;
+    private final double totalPayment;
+    private final double capitalPayment;
+    private final double interestPayment;
+    private final double totalInterestPayment;
+    private final double monthlyFee;
+    private final double openingFee;
+    private final double annuitySum;
+    private final double totalInstalmentPayment;
+
+    CalculationSummary(long date, long duration, double interestRate, double nominalRate, double totalPayment,
+            double capitalPayment, double interestPayment, double monthlyFee, double openingFee, double annuitySum,
+            double totalInstalmentPayment) {
+        this.date = date;
+        this.duration = duration;
+        this.interestRate = interestRate;
+        this.nominalRate = nominalRate;
+        this.loanCost = totalPayment;
+        this.totalPayment = totalPayment;
+        this.capitalPayment = capitalPayment;
+        this.interestPayment = interestPayment;
+        this.totalInterestPayment = totalPayment - capitalPayment;
+        this.monthlyFee = monthlyFee;
+        this.openingFee = openingFee;
+        this.annuitySum = annuitySum;
+        this.totalInstalmentPayment = totalInstalmentPayment;
+    }
+
+    CalculationSummary(Payment total) {
+        this(total.getDate().getTime(), total.getDuration(), total.getInterestRate(), total.getNominalRate(),
+                total.getTotalPayment(), total.getCapitalPayment(), total.getInterestPayment(), total.getMonthlyFee(),
+                total.getOpeningFee(), total.getAnnuitySum(), total.getTotalInstalmentPayment());
+    }
+
+    /**
+     * Get date of the total, one minute after the last payment.
+     * @return date of the total
+     */
+    public Date getDate() {
+        return new Date(date);
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get effective interest rate (APR).
+     * @return effective interest rate in percents
+     */
+    public double getInterestRate() {
+        return interestRate;
+    }
+
+    public double getNominalRate() {
+        return nominalRate;
+    }
+
+    public double getLoanCost() {
+        return loanCost;
+    }
+
+    public double getTotalPayment() {
+        return totalPayment;
+    }
+
+    public double getCapitalPayment() {
+        return capitalPayment;
+    }
+
+    public double getInterestPayment() {
+        return interestPayment;
+    }
+
+    /**
+     * Get total interest payment with fees.
+     * @return total payment minus capital payment
+     */
+    public double getTotalInterestPayment() {
+        return totalInterestPayment;
+    }
+
+    public double getMonthlyFee() {
+        return monthlyFee;
+    }
+
+    public double getOpeningFee() {
+        return openingFee;
+    }
+
+    public double getAnnuitySum() {
+        return annuitySum;
+    }
+
+    public double getTotalInstalmentPayment() {
+        return totalInstalmentPayment;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Cash flows stored as runs of equal values. Installments of a plan are mostly equal, so a plan is kept in a few
+ * runs and its net present value is calculated in a time which does not depend on the number of installments:
+ * the sum of x^i over a run is calculated by doubling the run length, like the power is calculated by squaring.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class CashFlowRuns {
+    private final int[] starts;
+    private final int[] lengths;
+    private final double[] values;
+    private final int count;
+
+    /**
+     * Constructor.
+     * @param cashFlows - monthly cash flows
+     * @param size - number of cash flows to use
+     */
+    CashFlowRuns(double[] cashFlows, int size) {
+        int runs = 0;
+        for (int index = 0; index < size; index += 1) {
+            if (index == 0 || cashFlows[index] != cashFlows[index - 1]) {
+                runs += 1;
+            }
+        }
+        starts = new int[runs];
+        lengths = new int[runs];
+        values = new double[runs];
+        int run = -1;
+        for (int index = 0; index < size; index += 1) {
+            if (index == 0 || cashFlows[index] != cashFlows[index - 1]) {
+                run += 1;
+                starts[run] = index;
+                values[run] = cashFlows[index];
+            }
+            lengths[run] += 1;
+        }
+        count = runs;
+    }
+
+    /**
+     * Get number of runs.
+     * @return number of runs
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Calculate net present value of the cash flows before the end index and its derivative by rate, the same as
+     * NpvKernel.evaluate() does.
+     * @param end - index of the first cash flow not to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @param result - array of two elements to store NpvKernel.VALUE and NpvKernel.DERIVATIVE to
+     */
+    void evaluate(int end, double rate, double[] result) {
+        double discount = 1 / (1 + rate / 12);
+        double value = .00;
+        // derivative by the discount factor
+        double derivative = .00;
+        for (int run = 0; run < count && starts[run] < end; run += 1) {
+            int start = starts[run];
+            int length = Math.min(lengths[run], end - start);
+            // sum and its derivative of x^i for i in [0, length)
+            double sum = .00;
+            double sumDerivative = .00;
+            double power = 1.00;
+            int done = 0;
+            for (int bit = Integer.highestOneBit(length); bit > 0; bit >>>= 1) {
+                // [0, 2 * done) = [0, done) + x^done * [0, done)
+                sumDerivative += sumDerivative * power + sum * done * power / discount;
+                sum += sum * power;
+                power *= power;
+                done *= 2;
+                if ((length & bit) != 0) {
+                    // [0, done + 1) = 1 + x * [0, done)
+                    sumDerivative = sum + discount * sumDerivative;
+                    sum = 1.00 + discount * sum;
+                    power *= discount;
+                    done += 1;
+                }
+            }
+            double startPower = Math.pow(discount, start);
+            value += values[run] * startPower * sum;
+            derivative += values[run] * (start * startPower / discount * sum + startPower * sumDerivative);
+        }
+        result[NpvKernel.VALUE] = value;
+        result[NpvKernel.DERIVATIVE] = -derivative * discount * discount / 12;
+    }
+}
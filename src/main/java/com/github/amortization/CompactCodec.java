@@ -0,0 +1,132 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * Layout of the compact binary records of CompactEncoder and CompactDecoder. Records have no type and no
+ * length, the reader knows what it reads, as with DataInput.
+ * <p>
+ * Values are encoded as:
+ * <ul>
+ * <li>integer - zig-zag varint, 7 bits per byte, least significant group first</li>
+ * <li>amount - varint of zig-zag cents shifted left by one, if the double is exactly cents / 100, otherwise
+ * varint 1 and the big endian raw double, so any double (rates, -0.0, NaN) is kept exactly</li>
+ * <li>date - integer epoch day in the zone of the codec and integer milliseconds from the start of the day,
+ * so a date at midnight takes 4 bytes</li>
+ * <li>string - varint number of UTF-8 bytes and the bytes</li>
+ * <li>decimal - integer scale, varint number of bytes of the unscaled value and its two's complement bytes</li>
+ * </ul>
+ * Records start with a byte of flags of null values, the values follow in the order of the table.
+ * <pre>
+ * PaymentDate                  Payment                            CalculationInputParameters
+ *   flags (1 - date)             flags (1 - date, 2 - insurance,    flags (1 - startDate, 2 - type of the first
+ *   date                                4 - zero insurance)                due date, 4 - endGracePeriod)
+ *   integer daysBefore           date                               amount amount
+ *   integer daysPerMonth         amount totalPayment                amount coreAmount
+ *                                amount coreAmount                  amount rate
+ *                                amount capitalPayment              amount openingRate
+ *                                amount interestPayment             amount openingFeePayment
+ *                                amount totalInterestPayment        amount monthlyRate
+ *                                amount openingFee                  amount annuityExample
+ *                                amount monthlyFee                  integer duration
+ *                                amount monthlyFeePayment           date startDate
+ *                                amount interestRate                integer repaymentDay
+ *                                amount loanCost                    amount downPayment
+ *                                integer daysPerMonth               amount installment
+ *                                integer days                       amount totalPrice
+ *                                amount debetIn                     string typefirstduedatecal
+ *                                amount debetOut                    integer endGracePeriod
+ *                                amount netValue
+ *                                integer duration
+ *                                amount annuitySum
+ *                                amount totalInstalmentPayment
+ *                                amount openingFeeRate
+ *                                amount monthlyFeeRate
+ *                                amount nominalRate
+ *                                decimal insurancePayment
+ * </pre>
+ * A list is a varint number of records and the records. Values of null flags and zero insurance are skipped.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class CompactCodec {
+    static final int FLAG_DATE = 1;
+    static final int FLAG_INSURANCE = 2;
+    static final int FLAG_ZERO_INSURANCE = 4;
+    static final int PAYMENT_FLAGS = FLAG_DATE | FLAG_INSURANCE | FLAG_ZERO_INSURANCE;
+    static final int FLAG_START_DATE = 1;
+    static final int FLAG_TYPE = 2;
+    static final int FLAG_GRACE_PERIOD = 4;
+    static final int PARAMETERS_FLAGS = FLAG_START_DATE | FLAG_TYPE | FLAG_GRACE_PERIOD;
+    /** tag of the amount which is not whole cents */
+    static final int RAW_DOUBLE = 1;
+    /** larger cents are stored as raw doubles, so the shifted zig-zag value fits into long */
+    static final long MAX_CENTS = 1L << 61;
+    static final int MAX_VARINT_SIZE = 10;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final ZoneId zone;
+    /** offset of the zone in milliseconds, if it is fixed, otherwise the zone rules are used */
+    private final long fixedOffset;
+    private final boolean fixed;
+    private long lastEpochDay = Long.MIN_VALUE;
+    private long lastStartOfDay;
+
+    CompactCodec(ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        this.zone = zone;
+        this.fixed = rules.isFixedOffset();
+        this.fixedOffset = rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L;
+    }
+
+    ZoneId getZone() {
+        return zone;
+    }
+
+    long toEpochDay(long millis) {
+        if (fixed) {
+            return Math.floorDiv(millis + fixedOffset, MILLIS_PER_DAY);
+        }
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    long startOfDay(long epochDay) {
+        if (fixed) {
+            return epochDay * MILLIS_PER_DAY - fixedOffset;
+        }
+        // dates of one record are often the same day, so the last day is kept
+        if (epochDay != lastEpochDay) {
+            lastStartOfDay = LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+            lastEpochDay = epochDay;
+        }
+        return lastStartOfDay;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decoder of compact binary records written by CompactEncoder (see CompactCodec for the layout). Records are
+ * read one after another from the position of the buffer. If the buffer ends inside a record,
+ * BufferUnderflowException is thrown and the position is moved back to the start of the record, so more bytes
+ * can be added to the buffer and the record read again. Wrong records are reported by IllegalArgumentException.
+ * The decoder should use the zone of the encoder, UTC by default. The decoder is not thread safe.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class CompactDecoder {
+    private final CompactCodec codec;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor with days of dates in UTC, so the records do not depend on the default time zone.
+     * @param buffer - buffer to read records from
+     */
+    public CompactDecoder(ByteBuffer buffer) {
+        this(buffer, ZoneOffset.UTC);
+    }
+
+    /**
+     * Constructor.
+     * @param buffer - buffer to read records from
+     * @param zone - time zone of days of dates
+     */
+    public CompactDecoder(ByteBuffer buffer, ZoneId zone) {
+        this.codec = new CompactCodec(zone);
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Set buffer to read the next records from.
+     * @param buffer - buffer to read records from
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ZoneId getZone() {
+        return codec.getZone();
+    }
+
+    /**
+     * Read payment record.
+     * @return new payment
+     * @throws BufferUnderflowException if the buffer ends inside the record, nothing is read
+     */
+    public Payment readPayment() {
+        int start = buffer.position();
+        try {
+            return getPayment();
+        } catch (BufferUnderflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Read list of payment records.
+     * @return new list of new payments
+     * @throws BufferUnderflowException if the buffer ends inside the list, nothing is read
+     */
+    public List<Payment> readPayments() {
+        int start = buffer.position();
+        try {
+            int size = getSize();
+            List<Payment> payments = new ArrayList<Payment>(Math.min(size, buffer.remaining()));
+            for (int index = 0; index < size; index += 1) {
+                payments.add(getPayment());
+            }
+            return payments;
+        } catch (BufferUnderflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Read payment date record.
+     * @return new payment date
+     * @throws BufferUnderflowException if the buffer ends inside the record, nothing is read
+     */
+    public PaymentDate readPaymentDate() {
+        int start = buffer.position();
+        try {
+            return getPaymentDate();
+        } catch (BufferUnderflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Read list of payment date records.
+     * @return new list of new payment dates
+     * @throws BufferUnderflowException if the buffer ends inside the list, nothing is read
+     */
+    public List<PaymentDate> readPaymentDates() {
+        int start = buffer.position();
+        try {
+            int size = getSize();
+            List<PaymentDate> paymentDates = new ArrayList<PaymentDate>(Math.min(size, buffer.remaining()));
+            for (int index = 0; index < size; index += 1) {
+                paymentDates.add(getPaymentDate());
+            }
+            return paymentDates;
+        } catch (BufferUnderflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Read input parameters record.
+     * @return new input parameters
+     * @throws BufferUnderflowException if the buffer ends inside the record, nothing is read
+     */
+    public CalculationInputParameters readParameters() {
+        int start = buffer.position();
+        try {
+            return getParameters();
+        } catch (BufferUnderflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    private Payment getPayment() {
+        int flags = getFlags(CompactCodec.PAYMENT_FLAGS);
+        Payment payment = new Payment();
+        payment.setDate((flags & CompactCodec.FLAG_DATE) == 0 ? null : getDate());
+        payment.setTotalPayment(getAmount());
+        payment.setCoreAmount(getAmount());
+        payment.setCapitalPayment(getAmount());
+        payment.setInterestPayment(getAmount());
+        payment.setTotalInterestPayment(getAmount());
+        payment.setOpeningFee(getAmount());
+        payment.setMonthlyFee(getAmount());
+        payment.setMonthlyFeePayment(getAmount());
+        payment.setInterestRate(getAmount());
+        payment.setLoanCost(getAmount());
+        payment.setDaysPerMonth(getLong());
+        payment.setDays(getLong());
+        payment.setDebetIn(getAmount());
+        payment.setDebetOut(getAmount());
+        payment.setNetValue(getAmount());
+        payment.setDuration(getLong());
+        payment.setAnnuitySum(getAmount());
+        payment.setTotalInstalmentPayment(getAmount());
+        payment.setOpeningFeeRate(getAmount());
+        payment.setMonthlyFeeRate(getAmount());
+        payment.setNominalRate(getAmount());
+        if ((flags & CompactCodec.FLAG_INSURANCE) != 0) {
+            payment.setInsurancePayment(getDecimal());
+        } else {
+            payment.setInsurancePayment((flags & CompactCodec.FLAG_ZERO_INSURANCE) == 0 ? null : BigDecimal.ZERO);
+        }
+        return payment;
+    }
+
+    private PaymentDate getPaymentDate() {
+        int flags = getFlags(CompactCodec.FLAG_DATE);
+        Date date = (flags & CompactCodec.FLAG_DATE) == 0 ? null : getDate();
+        PaymentDate paymentDate = new PaymentDate(date, getLong());
+        paymentDate.setDaysPerMonth(getLong());
+        return paymentDate;
+    }
+
+    private CalculationInputParameters getParameters() {
+        int flags = getFlags(CompactCodec.PARAMETERS_FLAGS);
+        CalculationInputParameters parameters = new CalculationInputParameters();
+        parameters.setAmount(getAmount());
+        parameters.setCoreAmount(getAmount());
+        parameters.setRate(getAmount());
+        parameters.setOpeningRate(getAmount());
+        parameters.setOpeningFeePayment(getAmount());
+        parameters.setMonthlyRate(getAmount());
+        parameters.setAnnuityExample(getAmount());
+        parameters.setDuration(getInt());
+        parameters.setStartDate((flags & CompactCodec.FLAG_START_DATE) == 0 ? null : getDate());
+        parameters.setRepaymentDay(getInt());
+        parameters.setDownPayment(getAmount());
+        parameters.setInstallment(getAmount());
+        parameters.setTotalPrice(getAmount());
+        parameters.setTypefirstduedatecal((flags & CompactCodec.FLAG_TYPE) == 0 ? null : getString());
+        parameters.setEndGracePeriod((flags & CompactCodec.FLAG_GRACE_PERIOD) == 0 ? null : getLong());
+        return parameters;
+    }
+
+    private int getFlags(int knownFlags) {
+        int flags = buffer.get() & 0xFF;
+        if ((flags & ~knownFlags) != 0) {
+            throw new IllegalArgumentException("unknown flags: " + flags);
+        }
+        return flags;
+    }
+
+    private double getAmount() {
+        long value = getVarLong();
+        if ((value & 1) == 0) {
+            return CompactCodec.unZigZag(value >>> 1) / 100.00;
+        }
+        if (value != CompactCodec.RAW_DOUBLE) {
+            throw new IllegalArgumentException("wrong amount tag: " + value);
+        }
+        return buffer.getDouble();
+    }
+
+    private Date getDate() {
+        long epochDay = getLong();
+        return new Date(codec.startOfDay(epochDay) + getLong());
+    }
+
+    private String getString() {
+        return new String(getBytes(), StandardCharsets.UTF_8);
+    }
+
+    private BigDecimal getDecimal() {
+        int scale = getInt();
+        byte[] unscaled = getBytes();
+        if (unscaled.length == 0) {
+            throw new IllegalArgumentException("wrong decimal size: 0");
+        }
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private int getSize() {
+        long size = getVarLong();
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("wrong size: " + size);
+        }
+        return (int) size;
+    }
+
+    private byte[] getBytes() {
+        int size = getSize();
+        // the record is not complete yet, the array is not allocated for the size
+        if (size > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[size];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private int getInt() {
+        long value = getLong();
+        if (value != (int) value) {
+            throw new IllegalArgumentException("wrong integer: " + value);
+        }
+        return (int) value;
+    }
+
+    private long getLong() {
+        return CompactCodec.unZigZag(getVarLong());
+    }
+
+    private long getVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < CompactCodec.MAX_VARINT_SIZE * 7; shift += 7) {
+            byte next = buffer.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint is longer than " + CompactCodec.MAX_VARINT_SIZE + " bytes");
+    }
+}
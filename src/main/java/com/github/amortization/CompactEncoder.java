@@ -0,0 +1,289 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Encoder of payments, payment dates and input parameters to compact binary records (see CompactCodec for the
+ * layout). Records are written one after another at the position of the buffer. If a record does not fit,
+ * BufferOverflowException is thrown and the position is moved back to the start of the record, so the buffer
+ * can be drained or replaced and the record written again. Dates are stored as days of the zone of the encoder,
+ * UTC by default, the zone is not written and the decoder should use the same zone. The encoder is not thread
+ * safe.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class CompactEncoder {
+    private final CompactCodec codec;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor with days of dates in UTC, so the records do not depend on the default time zone.
+     * @param buffer - buffer to write records to
+     */
+    public CompactEncoder(ByteBuffer buffer) {
+        this(buffer, ZoneOffset.UTC);
+    }
+
+    /**
+     * Constructor.
+     * @param buffer - buffer to write records to
+     * @param zone - time zone of days of dates
+     */
+    public CompactEncoder(ByteBuffer buffer, ZoneId zone) {
+        this.codec = new CompactCodec(zone);
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Set buffer to write the next records to, for example a larger one after BufferOverflowException.
+     * @param buffer - buffer to write records to
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ZoneId getZone() {
+        return codec.getZone();
+    }
+
+    /**
+     * Write payment record.
+     * @param payment - payment
+     * @throws BufferOverflowException if the record does not fit, nothing is written
+     */
+    public void writePayment(Payment payment) {
+        int start = buffer.position();
+        try {
+            putPayment(payment);
+        } catch (BufferOverflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Write list of payment records, for example the amortization plan.
+     * @param payments - payments
+     * @throws BufferOverflowException if the list does not fit, nothing is written
+     */
+    public void writePayments(List<Payment> payments) {
+        int start = buffer.position();
+        try {
+            putVarLong(payments.size());
+            for (int index = 0; index < payments.size(); index += 1) {
+                putPayment(payments.get(index));
+            }
+        } catch (BufferOverflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Write payment date record.
+     * @param paymentDate - payment date
+     * @throws BufferOverflowException if the record does not fit, nothing is written
+     */
+    public void writePaymentDate(PaymentDate paymentDate) {
+        int start = buffer.position();
+        try {
+            putPaymentDate(paymentDate);
+        } catch (BufferOverflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Write list of payment date records, for example the payment calendar.
+     * @param paymentDates - payment dates
+     * @throws BufferOverflowException if the list does not fit, nothing is written
+     */
+    public void writePaymentDates(List<PaymentDate> paymentDates) {
+        int start = buffer.position();
+        try {
+            putVarLong(paymentDates.size());
+            for (int index = 0; index < paymentDates.size(); index += 1) {
+                putPaymentDate(paymentDates.get(index));
+            }
+        } catch (BufferOverflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Write input parameters record.
+     * @param parameters - input parameters of the loan
+     * @throws BufferOverflowException if the record does not fit, nothing is written
+     */
+    public void writeParameters(CalculationInputParameters parameters) {
+        int start = buffer.position();
+        try {
+            putParameters(parameters);
+        } catch (BufferOverflowException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+    }
+
+    private void putPayment(Payment payment) {
+        BigDecimal insurancePayment = payment.getInsurancePayment();
+        int flags = 0;
+        if (payment.getDate() != null) {
+            flags |= CompactCodec.FLAG_DATE;
+        }
+        if (insurancePayment != null) {
+            flags |= BigDecimal.ZERO.equals(insurancePayment) ? CompactCodec.FLAG_ZERO_INSURANCE
+                    : CompactCodec.FLAG_INSURANCE;
+        }
+        buffer.put((byte) flags);
+        if (payment.getDate() != null) {
+            putDate(payment.getDate());
+        }
+        putAmount(payment.getTotalPayment());
+        putAmount(payment.getCoreAmount());
+        putAmount(payment.getCapitalPayment());
+        putAmount(payment.getInterestPayment());
+        putAmount(payment.getTotalInterestPayment());
+        putAmount(payment.getOpeningFee());
+        putAmount(payment.getMonthlyFee());
+        putAmount(payment.getMonthlyFeePayment());
+        putAmount(payment.getInterestRate());
+        putAmount(payment.getLoanCost());
+        putLong(payment.getDaysPerMonth());
+        putLong(payment.getDays());
+        putAmount(payment.getDebetIn());
+        putAmount(payment.getDebetOut());
+        putAmount(payment.getNetValue());
+        putLong(payment.getDuration());
+        putAmount(payment.getAnnuitySum());
+        putAmount(payment.getTotalInstalmentPayment());
+        putAmount(payment.getOpeningFeeRate());
+        putAmount(payment.getMonthlyFeeRate());
+        putAmount(payment.getNominalRate());
+        if ((flags & CompactCodec.FLAG_INSURANCE) != 0) {
+            putDecimal(insurancePayment);
+        }
+    }
+
+    private void putPaymentDate(PaymentDate paymentDate) {
+        long date = paymentDate.getTime();
+        buffer.put((byte) (date == PaymentSchedule.NO_DATE ? 0 : CompactCodec.FLAG_DATE));
+        if (date != PaymentSchedule.NO_DATE) {
+            putDate(date);
+        }
+        putLong(paymentDate.getDaysBefore());
+        putLong(paymentDate.getDaysPerMonth());
+    }
+
+    private void putParameters(CalculationInputParameters parameters) {
+        int flags = 0;
+        if (parameters.getStartDate() != null) {
+            flags |= CompactCodec.FLAG_START_DATE;
+        }
+        if (parameters.getTypefirstduedatecal() != null) {
+            flags |= CompactCodec.FLAG_TYPE;
+        }
+        if (parameters.getEndGracePeriod() != null) {
+            flags |= CompactCodec.FLAG_GRACE_PERIOD;
+        }
+        buffer.put((byte) flags);
+        putAmount(parameters.getAmount());
+        putAmount(parameters.getCoreAmount());
+        putAmount(parameters.getRate());
+        putAmount(parameters.getOpeningRate());
+        putAmount(parameters.getOpeningFeePayment());
+        putAmount(parameters.getMonthlyRate());
+        putAmount(parameters.getAnnuityExample());
+        putLong(parameters.getDuration());
+        if (parameters.getStartDate() != null) {
+            putDate(parameters.getStartDate());
+        }
+        putLong(parameters.getRepaymentDay());
+        putAmount(parameters.getDownPayment());
+        putAmount(parameters.getInstallment());
+        putAmount(parameters.getTotalPrice());
+        if (parameters.getTypefirstduedatecal() != null) {
+            putString(parameters.getTypefirstduedatecal());
+        }
+        if (parameters.getEndGracePeriod() != null) {
+            putLong(parameters.getEndGracePeriod());
+        }
+    }
+
+    private void putAmount(double value) {
+        long cents = Math.round(value * 100.00);
+        if (cents > -CompactCodec.MAX_CENTS && cents < CompactCodec.MAX_CENTS
+                && Double.doubleToLongBits(cents / 100.00) == Double.doubleToLongBits(value)) {
+            putVarLong(CompactCodec.zigZag(cents) << 1);
+        } else {
+            buffer.put((byte) CompactCodec.RAW_DOUBLE);
+            buffer.putDouble(value);
+        }
+    }
+
+    private void putDate(Date date) {
+        putDate(date.getTime());
+    }
+
+    private void putDate(long millis) {
+        long epochDay = codec.toEpochDay(millis);
+        putLong(epochDay);
+        putLong(millis - codec.startOfDay(epochDay));
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putDecimal(BigDecimal value) {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        putLong(value.scale());
+        putVarLong(unscaled.length);
+        buffer.put(unscaled);
+    }
+
+    private void putLong(long value) {
+        putVarLong(CompactCodec.zigZag(value));
+    }
+
+    private void putVarLong(long value) {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            buffer.put((byte) (rest & 0x7F | 0x80));
+            rest >>>= 7;
+        }
+        buffer.put((byte) rest);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of effective rates of calculated loans, used as the start of the effective rate solver for the
+ * next loan with the same product terms (rates, fees, duration and grace period). Such loans differ by amount and
+ * dates only, so their effective rates are close and the solver needs fewer iterations than from the nominal rate.
+ * The cached rate is the rate of the last calculated loan with the terms. The least recently used terms are
+ * evicted when the cache is full. The cache is thread safe.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class EffectiveRateCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final int maximumSize;
+    private final Map<Key, Double> rates;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long solveCount;
+    private long iterationCount;
+
+    /**
+     * Constructor with default maximum size.
+     */
+    public EffectiveRateCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param maximumSize - maximum number of cached product terms
+     */
+    public EffectiveRateCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximum size should be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.rates = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                boolean evict = size() > EffectiveRateCache.this.maximumSize;
+                if (evict) {
+                    evictionCount += 1;
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Get effective rate of the last loan with the same product terms.
+     * @param parameters - input parameters of the loan
+     * @return effective rate (0.15 for 15%) or NaN if no loan with the terms was calculated
+     */
+    public double getRate(CalculationInputParameters parameters) {
+        Key key = new Key(parameters);
+        synchronized (rates) {
+            Double rate = rates.get(key);
+            if (rate == null) {
+                missCount += 1;
+                return Double.NaN;
+            }
+            hitCount += 1;
+            return rate;
+        }
+    }
+
+    /**
+     * Keep effective rate of the calculated loan.
+     * @param parameters - input parameters of the loan
+     * @param rate - effective rate (0.15 for 15%)
+     * @param iterations - number of solver iterations, summed for statistics
+     */
+    public void put(CalculationInputParameters parameters, double rate, int iterations) {
+        Key key = new Key(parameters);
+        synchronized (rates) {
+            rates.put(key, rate);
+            solveCount += 1;
+            iterationCount += iterations;
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int size() {
+        synchronized (rates) {
+            return rates.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (rates) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (rates) {
+            return missCount;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (rates) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * Get number of effective rates put into the cache.
+     * @return number of solved effective rates
+     */
+    public long getSolveCount() {
+        synchronized (rates) {
+            return solveCount;
+        }
+    }
+
+    /**
+     * Get number of solver iterations of all effective rates put into the cache.
+     * @return number of iterations
+     */
+    public long getIterationCount() {
+        synchronized (rates) {
+            return iterationCount;
+        }
+    }
+
+    /**
+     * Remove all cached rates. Statistics are not reset.
+     */
+    public void clear() {
+        synchronized (rates) {
+            rates.clear();
+        }
+    }
+
+    private static final class Key {
+        private final double rate;
+        private final double openingRate;
+        private final double monthlyRate;
+        private final int duration;
+        private final long endGracePeriod;
+
+        Key(CalculationInputParameters parameters) {
+            this.rate = parameters.getRate();
+            this.openingRate = parameters.getOpeningRate();
+            this.monthlyRate = parameters.getMonthlyRate();
+            this.duration = parameters.getDuration();
+            this.endGracePeriod = parameters.getEndGracePeriod() == null ? -1 : parameters.getEndGracePeriod();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return Double.compare(rate, key.rate) == 0 && Double.compare(openingRate, key.openingRate) == 0
+                    && Double.compare(monthlyRate, key.monthlyRate) == 0 && duration == key.duration
+                    && endGracePeriod == key.endGracePeriod;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Double.hashCode(rate);
+            hash = 31 * hash + Double.hashCode(openingRate);
+            hash = 31 * hash + Double.hashCode(monthlyRate);
+            hash = 31 * hash + duration;
+            return 31 * hash + Long.hashCode(endGracePeriod);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Effective rate solver according to National Bank of Ukraine rules.
+ * The root of the net present value is searched by Newton iterations on the analytic derivative, starting from
+ * the guess rate and guarded by a bisection step whenever Newton leaves the bracket of known positive and negative
+ * net values. The converged rate is moved to the largest rate of a fixed grid with positive net value, so the
+ * result does not depend on the guess, the bracket hints and the path of the iterations. Instance is not thread
+ * safe, but may be reused for any number of cash flows.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public final class EffectiveRateSolver {
+    private static final double P_PRECISION = 0.00000000000001;
+    private static final int MAX_ITERATIONS = 100;
+    private static final double SCAN_STEP = .01;
+    private static final int SCAN_BATCH = 8;
+    /** step of the result grid, 2^-46 is about 1.4E-14 */
+    private static final double GRID_STEP = 0x1p-46;
+    private final double[] result = new double[2];
+    private final double[] scanRates = new double[SCAN_BATCH];
+    private final double[] scanValues = new double[SCAN_BATCH];
+    private final double[] scanDerivatives = new double[SCAN_BATCH];
+    private int iterations;
+    private boolean converged;
+
+    /**
+     * Calculate effective rate.
+     * @param cashFlows - monthly cash flows, the first one is negative loan amount
+     * @param size - number of cash flows to use
+     * @param guess - rate to start from, usually nominal rate (0.15 for 15%)
+     * @return - calculated rate with precision E -14 (0.15 for 15%).
+     */
+    public double solve(double[] cashFlows, int size, double guess) {
+        return solve(null, cashFlows, 0, size, guess, .00, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Calculate effective rate with the bracket hint, for example around the effective rate of a similar loan.
+     * The hint is not trusted, its bounds are used instead of zero and of the doubled rate when the guess is on
+     * the wrong side of the root, and they are checked by the net values as any other rate.
+     * @param cashFlows - monthly cash flows, the first one is negative loan amount
+     * @param size - number of cash flows to use
+     * @param guess - rate to start from, usually effective rate of a similar loan (0.15 for 15%)
+     * @param lowHint - rate which net value is likely positive, not negative
+     * @param highHint - rate which net value is likely negative, may be infinite
+     * @return - calculated rate with precision E -14 (0.15 for 15%).
+     */
+    public double solve(double[] cashFlows, int size, double guess, double lowHint, double highHint) {
+        return solve(null, cashFlows, 0, size, guess, Math.max(lowHint, .00), highHint);
+    }
+
+    /**
+     * Calculate effective rate of the cash flows, which are given by runs of equal values before the from index.
+     * @param prefix - runs of the cash flows before the from index, null if all cash flows are in the array
+     * @param cashFlows - monthly cash flows, only the ones from the from index are used with runs
+     * @param from - index of the first cash flow in the array, not used without runs
+     * @param size - number of cash flows to use
+     * @param guess - rate to start from
+     * @return - calculated rate with precision E -14 (0.15 for 15%).
+     */
+    double solve(CashFlowRuns prefix, double[] cashFlows, int from, int size, double guess) {
+        return solve(prefix, cashFlows, from, size, guess, .00, Double.POSITIVE_INFINITY);
+    }
+
+    private double solve(CashFlowRuns prefix, double[] cashFlows, int from, int size, double guess, double lowHint,
+            double highHint) {
+        iterations = 0;
+        converged = false;
+        double currentRate = Math.max(guess, .00);
+        double low = currentRate;
+        double high = Double.POSITIVE_INFINITY;
+        if (netPresentValue(prefix, cashFlows, from, size, low) <= .00) {
+            high = low;
+            low = lowHint < high ? lowHint : .00;
+            if (low > .00 && netPresentValue(prefix, cashFlows, from, size, low) <= .00) {
+                low = .00;
+            }
+            if (low == .00 && netPresentValue(prefix, cashFlows, from, size, low) <= .00) {
+                // the last installment overpays the loan, so there may be no root left of the guess
+                low = findPositiveNetValueRate(prefix, cashFlows, from, size, high);
+                high = Double.POSITIVE_INFINITY;
+                if (Double.isNaN(low)) {
+                    return .00;
+                }
+                currentRate = low;
+            }
+        }
+        // Newton goes on from the guess on both sides of the root, the net value is convex, so the first step from
+        // the right overshoots only a little to the left and the next ones come to the root from there
+        while (iterations < MAX_ITERATIONS && !converged) {
+            iterations += 1;
+            evaluate(prefix, cashFlows, from, size, currentRate);
+            double netValue = result[NpvKernel.VALUE];
+            if (netValue > .00) {
+                low = currentRate;
+            } else if (netValue < .00) {
+                high = currentRate;
+            } else {
+                converged = true;
+                break;
+            }
+            double nextRate = currentRate - netValue / result[NpvKernel.DERIVATIVE];
+            // the step may be rounded to no change at the bound, it is the convergence and not a step out
+            if (Double.isNaN(nextRate) || nextRate < low || nextRate > high) {
+                nextRate = Double.isInfinite(high) ? nextHigh(low, highHint) : (low + high) / 2;
+            }
+            converged = Math.abs(nextRate - currentRate) < P_PRECISION;
+            currentRate = nextRate;
+        }
+        return converged ? snapToGrid(prefix, cashFlows, from, size, currentRate) : currentRate;
+    }
+
+    /**
+     * Find the largest rate of the grid with positive net value near the converged rate. Net values of the grid
+     * rates do not depend on the iterations, so any rate within a few grid steps of the root gives the same result.
+     */
+    private double snapToGrid(CashFlowRuns prefix, double[] cashFlows, int from, int size, double rate) {
+        double index = Math.floor(rate / GRID_STEP);
+        int steps = 0;
+        if (netPresentValue(prefix, cashFlows, from, size, index * GRID_STEP) > .00) {
+            while (steps < MAX_ITERATIONS && netPresentValue(prefix, cashFlows, from, size,
+                    (index + 1) * GRID_STEP) > .00) {
+                index += 1;
+                steps += 1;
+            }
+        } else {
+            do {
+                index -= 1;
+                steps += 1;
+            } while (index > 0 && steps < MAX_ITERATIONS
+                    && netPresentValue(prefix, cashFlows, from, size, index * GRID_STEP) <= .00);
+        }
+        return Math.max(index, .00) * GRID_STEP;
+    }
+
+    private static double nextHigh(double low, double highHint) {
+        return highHint > low && !Double.isInfinite(highHint) ? highHint : low * 2 + 1.00;
+    }
+
+    /**
+     * Scan rates downwards from well above the guess rate for the first positive net value, so the search
+     * continues to the largest root.
+     */
+    private double findPositiveNetValueRate(CashFlowRuns prefix, double[] cashFlows, int from, int size,
+            double fromRate) {
+        double currentRate = Math.max(fromRate * 4, 1.00);
+        if (prefix != null) {
+            for (; currentRate > .00; currentRate -= SCAN_STEP) {
+                if (netPresentValue(prefix, cashFlows, from, size, currentRate) > .00) {
+                    return currentRate;
+                }
+            }
+            return Double.NaN;
+        }
+        // the rates are evaluated in batches, so the vector kernel evaluates them together
+        while (currentRate > .00) {
+            int count = 0;
+            for (; count < SCAN_BATCH && currentRate > .00; count += 1) {
+                scanRates[count] = currentRate;
+                currentRate -= SCAN_STEP;
+            }
+            NpvKernel.evaluate(cashFlows, size, scanRates, count, scanValues, scanDerivatives);
+            for (int index = 0; index < count; index += 1) {
+                if (scanValues[index] > .00) {
+                    return scanRates[index];
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private double netPresentValue(CashFlowRuns prefix, double[] cashFlows, int from, int size, double rate) {
+        if (prefix == null) {
+            return NpvKernel.netPresentValue(cashFlows, size, rate);
+        }
+        evaluate(prefix, cashFlows, from, size, rate);
+        return result[NpvKernel.VALUE];
+    }
+
+    private void evaluate(CashFlowRuns prefix, double[] cashFlows, int from, int size, double rate) {
+        if (prefix == null) {
+            NpvKernel.evaluate(cashFlows, size, rate, result);
+            return;
+        }
+        NpvKernel.evaluate(cashFlows, from, size, rate, result);
+        double discount = 1 / (1 + rate / 12);
+        double power = Math.pow(discount, from);
+        // the suffix is discounted by x^from, d(x^from)/d(rate) = -from * x^(from + 1) / 12
+        double value = power * result[NpvKernel.VALUE];
+        double derivative = power * result[NpvKernel.DERIVATIVE]
+                - from * power * discount / 12 * result[NpvKernel.VALUE];
+        prefix.evaluate(from, rate, result);
+        result[NpvKernel.VALUE] += value;
+        result[NpvKernel.DERIVATIVE] += derivative;
+    }
+
+    /**
+     * Number of Newton or bisection iterations made by the last solve() call.
+     * @return number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Whether the last solve() call reached the precision.
+     * @return true if converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
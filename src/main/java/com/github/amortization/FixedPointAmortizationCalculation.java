@@ -0,0 +1,274 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Annuity calculation with money held in long cents.
+ * Rounding rules:
+ * <ul>
+ * <li>amount, opening fee, monthly fee and annuity sum are rounded half up to cents once</li>
+ * <li>with rounding of values (default) annuity sum and monthly installment are rounded up to whole units</li>
+ * <li>nominal rate is taken with 4 signs after digit delimiter of a percent</li>
+ * <li>interest of every installment is debetIn * rate * days / (100 * 360) rounded half up to cents,
+ * with days = 30 except the first installment, where days between dates (up to 30) are used</li>
+ * <li>capital part is the installment less interest and monthly fee, the last installment pays the rest (also if it
+ * is the only one)</li>
+ * </ul>
+ * So sum of capital payments is equal to the amount and every total payment is equal to capital payment, interest
+ * payment and monthly fee, both to the cent.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class FixedPointAmortizationCalculation {
+    private static final long CENTS = 100;
+    private static final long RATE_SCALE = 10000;
+    private static final long INTEREST_DIVISOR = 100 * 360 * RATE_SCALE;
+    private static final int INTEREST_DAYS_30 = 30;
+    private static final long ONE_MINUTE = 60 * 1000L;
+    private final List<PaymentDate> calendar;
+    private final CalculationInputParameters parameters;
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+    private boolean flagNeedRound = true;
+    private PaymentSchedule schedule;
+    private Payment total;
+    private long[] debetIn;
+    private long[] capitalPayment;
+    private long[] interestPayment;
+    private long[] monthlyFee;
+    private long[] totalPayment;
+    private long amount;
+    private long rate;
+    private long annuitySum;
+    private long monthlyInstallment;
+    private long monthlyFeeSum;
+    private long openingFee;
+
+    /**
+     * Constructor.
+     *
+     * @param calendar
+     *            - PaymentDate object list (payment schedule).
+     * @param parameters
+     *            - input parameters (see CalculationInputParameters class) are needed to calculate amortization plan
+     *            for annuity calculation procedure.
+     */
+    public FixedPointAmortizationCalculation(List<PaymentDate> calendar, CalculationInputParameters parameters) {
+        this.calendar = calendar;
+        this.parameters = parameters;
+    }
+
+    /**
+     * set flag for need round values.
+     * <ul>
+     * <li><b>true</b> - annuity sum and monthly installment are rounded up to whole units</li>
+     * <li><b>false</b> - annuity sum and monthly installment are rounded to cents</li>
+     * </ul>
+     *
+     * @param newRoundValue set need round
+     */
+    public void setRoundValues(boolean newRoundValue) {
+        this.flagNeedRound = newRoundValue;
+    }
+
+    public void calc() {
+        amount = Rounding.halfUpCents(parameters.getAmount());
+        rate = Math.round(parameters.getRate() * RATE_SCALE);
+        monthlyFeeSum = Rounding.halfUpCents(parameters.getMonthlyRate() / 100.00 * parameters.getAmount());
+        openingFee = Rounding.halfUpCents(parameters.getOpeningRate() / 100.00 * parameters.getAmount());
+        annuitySum = Rounding.halfUpCents(calcAnnuityFactor() * parameters.getAmount());
+        monthlyInstallment = monthlyFeeSum + annuitySum;
+        if (flagNeedRound) {
+            annuitySum = ceilToUnits(annuitySum);
+            monthlyInstallment = ceilToUnits(monthlyInstallment);
+        }
+        total = new Payment();
+        int size = rate <= 0 || amount <= 0 ? 0 : calendar.size();
+        debetIn = new long[size];
+        capitalPayment = new long[size];
+        interestPayment = new long[size];
+        monthlyFee = new long[size];
+        totalPayment = new long[size];
+        for (int index = 0; index < size; index += 1) {
+            if (index == 0) {
+                totalPayment[index] = -amount;
+                continue;
+            }
+            long rest = index == 1 ? amount : debetIn[index - 1] - capitalPayment[index - 1];
+            long days = index == 1 ? Math.min(AmortizationCalculation.getDays(calendar.get(0), calendar.get(1)),
+                    INTEREST_DAYS_30) : INTEREST_DAYS_30;
+            if (index + 1 == size) {
+                calcLastInstallment(index, rest, days);
+            } else {
+                calcInstallment(index, rest, days);
+            }
+        }
+        fillSchedule(size);
+        if (size > 0) {
+            completeTotal(size);
+        }
+    }
+
+    private void calcInstallment(int index, long rest, long days) {
+        debetIn[index] = rest;
+        interestPayment[index] = calcInterest(rest, days);
+        if (parameters.getEndGracePeriod() != null && index <= parameters.getEndGracePeriod()) {
+            monthlyFee[index] = 0;
+            totalPayment[index] = annuitySum;
+        } else {
+            monthlyFee[index] = monthlyFeeSum;
+            totalPayment[index] = monthlyInstallment;
+        }
+        capitalPayment[index] = totalPayment[index] - interestPayment[index] - monthlyFee[index];
+    }
+
+    private void calcLastInstallment(int index, long rest, long days) {
+        debetIn[index] = rest;
+        capitalPayment[index] = rest;
+        interestPayment[index] = calcInterest(rest, days);
+        monthlyFee[index] = monthlyFeeSum;
+        totalPayment[index] = rest + interestPayment[index] + monthlyFeeSum;
+    }
+
+    /**
+     * Interest in cents: sum * rate * days / (100 * 360) rounded half up, calculated without overflow of long.
+     */
+    private long calcInterest(long sum, long days) {
+        long rateDays = rate * days;
+        long quotient = Math.abs(sum) / INTEREST_DIVISOR;
+        long remainder = Math.abs(sum) % INTEREST_DIVISOR;
+        long interest = quotient * rateDays + Rounding.divideHalfUp(remainder * rateDays, INTEREST_DIVISOR);
+        return sum < 0 ? -interest : interest;
+    }
+
+    private double calcAnnuityFactor() {
+        return AnnuityFactorCache.getDefault().getFactor(parameters.getRate(), parameters.getDuration());
+    }
+
+    private static long ceilToUnits(long cents) {
+        return -Math.floorDiv(-cents, CENTS) * CENTS;
+    }
+
+    private static double toDouble(long cents) {
+        return cents / (double) CENTS;
+    }
+
+    private void fillSchedule(int size) {
+        schedule = new PaymentSchedule(size);
+        schedule.setLoanTerms(toDouble(openingFee), toDouble(monthlyInstallment), parameters);
+        for (int index = 0; index < size; index += 1) {
+            PaymentDate paymentDate = calendar.get(index);
+            long days = index == 1 ? AmortizationCalculation.getDays(calendar.get(0), paymentDate)
+                    : paymentDate.getDaysBefore();
+            schedule.set(index, paymentDate.getTime(), index == 0 ? 0 : days,
+                    index == 0 ? 0 : paymentDate.getDaysPerMonth(), toDouble(debetIn[index]),
+                    toDouble(capitalPayment[index]), toDouble(interestPayment[index]),
+                    toDouble(interestPayment[index] + (index == 0 ? 0 : monthlyFeeSum)),
+                    toDouble(monthlyFee[index]), toDouble(totalPayment[index]));
+        }
+    }
+
+    private void completeTotal(int size) {
+        long totalSum = 0;
+        long capitalSum = 0;
+        long interestSum = 0;
+        long monthlyFeeTotal = 0;
+        for (int index = 1; index < size; index += 1) {
+            totalSum += totalPayment[index];
+            capitalSum += capitalPayment[index];
+            interestSum += interestPayment[index];
+            monthlyFeeTotal += monthlyFee[index];
+        }
+        double[] cashFlows = schedule.getTotalPaymentColumn();
+        double effectRate = solver.solve(cashFlows, size, parameters.getRate() / 100.00);
+        NpvKernel.netValues(cashFlows, size, effectRate, schedule.getNetValueColumn());
+        total.setInterestRate(effectRate * 100.00);
+        total.setMonthlyFeePayment(toDouble(monthlyFeeSum));
+        total.setCoreAmount(parameters.getCoreAmount());
+        total.setDuration(parameters.getDuration());
+        total.setAnnuitySum(toDouble(annuitySum));
+        total.setMonthlyFeeRate(parameters.getMonthlyRate());
+        total.setOpeningFeeRate(parameters.getOpeningRate());
+        total.setNominalRate(Rounding.halfUp(parameters.getRate(), 2));
+        total.setTotalInstalmentPayment(toDouble(monthlyInstallment));
+        total.setOpeningFee(toDouble(openingFee));
+        total.setTotalPayment(toDouble(totalSum));
+        total.setCapitalPayment(toDouble(capitalSum));
+        total.setInterestPayment(toDouble(interestSum));
+        total.setMonthlyFee(toDouble(monthlyFeeTotal));
+        total.setTotalInterestPayment(toDouble(totalSum - capitalSum));
+        total.setLoanCost(toDouble(totalSum));
+        long lastDate = schedule.getDate(size - 1);
+        total.setDate(new Date((lastDate == PaymentSchedule.NO_DATE ? System.currentTimeMillis() : lastDate)
+                + ONE_MINUTE));
+    }
+
+    public Payment getTotal() {
+        return total;
+    }
+
+    /**
+     * Get payment schedule calculated by calc(). All money values are whole cents.
+     * @return payment schedule or null if calc() was not called
+     */
+    public PaymentSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Get payments calculated by calc(), views of the payment schedule.
+     * @return payment list, empty if calc() was not called
+     */
+    public List<Payment> getPayments() {
+        if (schedule == null) {
+            return Collections.<Payment>emptyList();
+        }
+        return schedule.asPayments();
+    }
+
+    public long getAnnuitySumCents() {
+        return annuitySum;
+    }
+
+    public long getMonthlyInstallmentCents() {
+        return monthlyInstallment;
+    }
+
+    public long getDebetInCents(int index) {
+        return debetIn[index];
+    }
+
+    public long getCapitalPaymentCents(int index) {
+        return capitalPayment[index];
+    }
+
+    public long getInterestPaymentCents(int index) {
+        return interestPayment[index];
+    }
+
+    public long getMonthlyFeeCents(int index) {
+        return monthlyFee[index];
+    }
+
+    public long getTotalPaymentCents(int index) {
+        return totalPayment[index];
+    }
+}
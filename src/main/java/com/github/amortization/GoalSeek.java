@@ -0,0 +1,282 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Inverse calculations of the loan: amount, duration or nominal rate for the target monthly installment and nominal
+ * rate for the target effective rate. Other parameters of the loan are kept.
+ * <p>
+ * The installment is the regular monthly installment of AmortizationCalculation.getMonthlyInstallment() with the
+ * same rounding, installments of grace period (annuity sum without monthly fee) are never larger. Closed formulas of
+ * the annuity give the first estimate, which is corrected by the exact installment in a bracketed search, so
+ * the rounding of sums to cents and whole units is taken into account. The effective rate has no closed formula,
+ * it is found by the regula falsi method (Illinois variant) on full plans of the loan.
+ * <p>
+ * Annuity factors of the searched values are not put to the shared AnnuityFactorCache. Instance is not thread
+ * safe, AmortizationEngine creates it for every call.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class GoalSeek {
+    /** minimal nominal rate with non empty plan, see AmortizationCalculation.calc() */
+    static final double MIN_RATE = 0.000001;
+    static final int MAX_DURATION = 1200;
+    private static final double MAX_RATE = 1000000.00;
+    private static final double RATE_PRECISION = 1e-10;
+    private static final double EFFECTIVE_RATE_PRECISION = 1e-9;
+    private static final int MAX_ITERATIONS = 200;
+    private static final double CENTS = 100.00;
+    private static final AnnuityFactorCache NO_CACHE = new AnnuityFactorCache(0);
+
+    private final CalculationInputParameters parameters;
+    private final AmortizationCalculation calculation;
+    private List<PaymentDate> calendar = Collections.<PaymentDate>emptyList();
+
+    /**
+     * Constructor.
+     * @param parameters - input parameters of the loan, they are copied and not changed
+     * @param roundValues - see AmortizationCalculation.setRoundValues()
+     */
+    GoalSeek(CalculationInputParameters parameters, boolean roundValues) {
+        this.parameters = copy(parameters);
+        this.calculation = new AmortizationCalculation(calendar, this.parameters, roundValues, true, NO_CACHE);
+    }
+
+    static CalculationInputParameters copy(CalculationInputParameters parameters) {
+        CalculationInputParameters copy = new CalculationInputParameters(parameters.getAmount(),
+                parameters.getRate(), parameters.getOpeningRate(), parameters.getMonthlyRate(),
+                parameters.getDuration(), parameters.getStartDate() == null ? null
+                        : new Date(parameters.getStartDate().getTime()), parameters.getRepaymentDay(),
+                parameters.getDownPayment(), parameters.getInstallment());
+        copy.setCoreAmount(parameters.getCoreAmount());
+        copy.setOpeningFeePayment(parameters.getOpeningFeePayment());
+        copy.setAnnuityExample(parameters.getAnnuityExample());
+        copy.setTotalPrice(parameters.getTotalPrice());
+        copy.setTypefirstduedatecal(parameters.getTypefirstduedatecal());
+        copy.setEndGracePeriod(parameters.getEndGracePeriod());
+        return copy;
+    }
+
+    private double installment() {
+        calculation.reset(calendar, parameters);
+        return calculation.getMonthlyInstallment();
+    }
+
+    private boolean fitsAmount(long cents, double target) {
+        parameters.setAmount(cents / CENTS);
+        return installment() <= target;
+    }
+
+    private boolean fitsDuration(int duration, double target) {
+        parameters.setDuration(duration);
+        return installment() <= target;
+    }
+
+    private boolean fitsRate(double rate, double target) {
+        parameters.setRate(rate);
+        return installment() <= target;
+    }
+
+    private static void checkTarget(double target) {
+        if (!(target > .00) || Double.isInfinite(target)) {
+            throw new IllegalArgumentException("target should be positive: " + target);
+        }
+    }
+
+    /**
+     * Find the largest amount, in cents, with the monthly installment not larger than the target.
+     * @param monthlyInstallment - target monthly installment
+     * @return amount
+     */
+    double findAmount(double monthlyInstallment) {
+        checkTarget(monthlyInstallment);
+        if (parameters.getRate() < MIN_RATE || parameters.getDuration() <= 0) {
+            throw new IllegalArgumentException("rate and duration should be positive");
+        }
+        double factor = NO_CACHE.getFactor(parameters.getRate(), parameters.getDuration())
+                + parameters.getMonthlyRate() / 100.00;
+        long estimate = (long) Math.floor(monthlyInstallment / factor * CENTS);
+        long low;
+        long high;
+        long step = 1;
+        if (fitsAmount(estimate, monthlyInstallment)) {
+            low = estimate;
+            high = estimate + step;
+            while (fitsAmount(high, monthlyInstallment)) {
+                low = high;
+                step *= 2;
+                high = low + step;
+            }
+        } else {
+            high = estimate;
+            low = Math.max(high - step, 0);
+            while (low > 0 && !fitsAmount(low, monthlyInstallment)) {
+                high = low;
+                step *= 2;
+                low = Math.max(high - step, 0);
+            }
+        }
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (fitsAmount(middle, monthlyInstallment)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        if (low <= 0) {
+            throw new IllegalArgumentException("monthly installment " + monthlyInstallment + " is too small");
+        }
+        return low / CENTS;
+    }
+
+    /**
+     * Find the shortest duration with the monthly installment not larger than the target. The duration is longer
+     * than grace period of the loan.
+     * @param monthlyInstallment - target monthly installment
+     * @return number of months
+     */
+    int findDuration(double monthlyInstallment) {
+        checkTarget(monthlyInstallment);
+        double amount = parameters.getAmount();
+        double monthlyRate = parameters.getRate() / 12 / 100.00;
+        double annuity = monthlyInstallment - Rounding.halfUp(parameters.getMonthlyRate() / 100.00 * amount, 2);
+        if (parameters.getRate() < MIN_RATE || !(amount > .00) || annuity <= amount * monthlyRate) {
+            throw new IllegalArgumentException("monthly installment " + monthlyInstallment
+                    + " does not cover interests of the loan");
+        }
+        // annuity = amount * r / (1 - (1 + r)^-n), so n = -ln(1 - amount * r / annuity) / ln(1 + r)
+        double estimate = -Math.log(1 - amount * monthlyRate / annuity) / Math.log(1 + monthlyRate);
+        int minDuration = parameters.getEndGracePeriod() == null ? 1
+                : (int) Math.max(parameters.getEndGracePeriod() + 1, 1);
+        int duration = (int) Math.max(Math.min(Math.ceil(estimate), MAX_DURATION), minDuration);
+        while (duration > minDuration && fitsDuration(duration - 1, monthlyInstallment)) {
+            duration -= 1;
+        }
+        while (!fitsDuration(duration, monthlyInstallment)) {
+            duration += 1;
+            if (duration > MAX_DURATION) {
+                throw new IllegalArgumentException("monthly installment " + monthlyInstallment
+                        + " needs more than " + MAX_DURATION + " months");
+            }
+        }
+        return duration;
+    }
+
+    /**
+     * Find the largest nominal rate with the monthly installment not larger than the target.
+     * @param monthlyInstallment - target monthly installment
+     * @return nominal rate in percents
+     */
+    double findRate(double monthlyInstallment) {
+        checkTarget(monthlyInstallment);
+        if (!(parameters.getAmount() > .00) || parameters.getDuration() <= 0) {
+            throw new IllegalArgumentException("amount and duration should be positive");
+        }
+        double low = MIN_RATE;
+        if (!fitsRate(low, monthlyInstallment)) {
+            throw new IllegalArgumentException("monthly installment " + monthlyInstallment + " is too small");
+        }
+        double high = Math.max(parameters.getRate(), 1.00);
+        while (fitsRate(high, monthlyInstallment)) {
+            low = high;
+            high *= 2;
+            if (high > MAX_RATE) {
+                throw new IllegalArgumentException("monthly installment " + monthlyInstallment + " is too large");
+            }
+        }
+        for (int iteration = 0; iteration < MAX_ITERATIONS && high - low > RATE_PRECISION * high; iteration += 1) {
+            double middle = (low + high) / 2;
+            if (fitsRate(middle, monthlyInstallment)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private double effectiveRate(double rate) {
+        parameters.setRate(rate);
+        calculation.reset(calendar, parameters);
+        return calculation.calcSummary().getInterestRate();
+    }
+
+    /**
+     * Find nominal rate of the loan with the target effective rate.
+     * @param dates - payment calendar of the loan
+     * @param effectiveRate - target effective rate in percents
+     * @return nominal rate in percents
+     */
+    double findRateForEffectiveRate(List<PaymentDate> dates, double effectiveRate) {
+        checkTarget(effectiveRate);
+        if (!(parameters.getAmount() > .00) || parameters.getDuration() <= 0) {
+            throw new IllegalArgumentException("amount and duration should be positive");
+        }
+        calendar = dates;
+        double low = MIN_RATE;
+        double lowValue = effectiveRate(low) - effectiveRate;
+        if (lowValue > .00) {
+            throw new IllegalArgumentException("effective rate " + effectiveRate + " is below the fees of the loan");
+        }
+        // the effective rate is usually larger than the nominal one, otherwise the bracket is extended
+        double high = effectiveRate;
+        double highValue = effectiveRate(high) - effectiveRate;
+        while (highValue < .00) {
+            low = high;
+            lowValue = highValue;
+            high *= 2;
+            if (high > MAX_RATE) {
+                throw new IllegalArgumentException("effective rate " + effectiveRate + " is too large");
+            }
+            highValue = effectiveRate(high) - effectiveRate;
+        }
+        int side = 0;
+        for (int iteration = 0; iteration < MAX_ITERATIONS && high - low > RATE_PRECISION * high; iteration += 1) {
+            double rate = (low * highValue - high * lowValue) / (highValue - lowValue);
+            if (!(rate > low && rate < high)) {
+                rate = (low + high) / 2;
+            }
+            double value = effectiveRate(rate) - effectiveRate;
+            if (Math.abs(value) < EFFECTIVE_RATE_PRECISION) {
+                return rate;
+            }
+            if (value < .00) {
+                low = rate;
+                lowValue = value;
+                // Illinois step: halve the value of the end which stays, so the bracket shrinks from both ends
+                if (side == -1) {
+                    highValue /= 2;
+                }
+                side = -1;
+            } else {
+                high = rate;
+                highValue = value;
+                if (side == 1) {
+                    lowValue /= 2;
+                }
+                side = 1;
+            }
+        }
+        return Math.abs(lowValue) <= Math.abs(highValue) ? low : high;
+    }
+}
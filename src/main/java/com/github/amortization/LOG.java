@@ -17,64 +17,187 @@
  */
 package com.github.amortization;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/**.
+/**
+ * Logging facade. Loggers are cached per class, messages are formatted only if the level is enabled.
+ * The logger is chosen by the passed object: its class, the class itself or the logger name. If the object is
+ * null, the logger of this class is used.
  * @author Valentyn Kolesnikov
  * @version $Revision$ $Date$
  */
 public class LOG {
-    private enum MessageType { DEBUG, INFO, WARN, ERROR };
+    private static final ClassValue<Logger> CLASS_LOGGERS = new ClassValue<Logger>() {
+        @Override
+        protected Logger computeValue(Class<?> type) {
+            return LoggerFactory.getLogger(type.getName());
+        }
+    };
+    private static final ConcurrentMap<String, Logger> NAMED_LOGGERS = new ConcurrentHashMap<String, Logger>();
 
     public static void debug(String aParam) {
         debug(null, aParam);
     }
 
     public static void debug(Object obj, String param) {
-        log(MessageType.DEBUG, obj, param);
+        Logger log = getLogger(obj);
+        if (log.isDebugEnabled()) {
+            log.debug(modifyString(param));
+        }
+    }
+
+    /**
+     * Log debug message created only if debug level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param message - supplier of the message
+     */
+    public static void debug(Object obj, Supplier<String> message) {
+        Logger log = getLogger(obj);
+        if (log.isDebugEnabled()) {
+            log.debug(modifyString(message.get()));
+        }
+    }
+
+    /**
+     * Log debug message formatted only if debug level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param format - message format with {} placeholder
+     * @param arg - argument of the message
+     */
+    public static void debug(Object obj, String format, Object arg) {
+        Logger log = getLogger(obj);
+        if (log.isDebugEnabled()) {
+            log.debug(format, arg);
+        }
+    }
+
+    /**
+     * Log debug message formatted only if debug level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param format - message format with {} placeholders
+     * @param arg1 - the first argument of the message
+     * @param arg2 - the second argument of the message
+     */
+    public static void debug(Object obj, String format, Object arg1, Object arg2) {
+        Logger log = getLogger(obj);
+        if (log.isDebugEnabled()) {
+            log.debug(format, arg1, arg2);
+        }
+    }
+
+    public static boolean isDebugEnabled(Object obj) {
+        return getLogger(obj).isDebugEnabled();
     }
 
     public static void error(Object obj, String param) {
-        log(MessageType.ERROR, obj, param);
+        getLogger(obj).error(modifyString(param));
     }
 
     public static void error(Object obj, Throwable aProblem, String param) {
-        log(MessageType.ERROR, obj, problem2String(param, aProblem));
-     }
+        Logger log = getLogger(obj);
+        if (log.isErrorEnabled()) {
+            log.error(problem2String(param, aProblem));
+        }
+    }
+
+    /**
+     * Log error message formatted only if error level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param format - message format with {} placeholder
+     * @param arg - argument of the message
+     */
+    public static void error(Object obj, String format, Object arg) {
+        Logger log = getLogger(obj);
+        if (log.isErrorEnabled()) {
+            log.error(format, arg);
+        }
+    }
 
     public static void info(Object obj, String param) {
-        log(MessageType.INFO, obj, param);
+        Logger log = getLogger(obj);
+        if (log.isInfoEnabled()) {
+            log.info(modifyString(param));
+        }
+    }
+
+    /**
+     * Log info message created only if info level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param message - supplier of the message
+     */
+    public static void info(Object obj, Supplier<String> message) {
+        Logger log = getLogger(obj);
+        if (log.isInfoEnabled()) {
+            log.info(modifyString(message.get()));
+        }
+    }
+
+    /**
+     * Log info message formatted only if info level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param format - message format with {} placeholder
+     * @param arg - argument of the message
+     */
+    public static void info(Object obj, String format, Object arg) {
+        Logger log = getLogger(obj);
+        if (log.isInfoEnabled()) {
+            log.info(format, arg);
+        }
+    }
+
+    public static boolean isInfoEnabled(Object obj) {
+        return getLogger(obj).isInfoEnabled();
     }
 
     public static void warn(Object obj, String param) {
-        log(MessageType.WARN, obj, param);
+        Logger log = getLogger(obj);
+        if (log.isWarnEnabled()) {
+            log.warn(modifyString(param));
+        }
     }
 
     public static void warn(Object aObj, Throwable aProblem, String param) {
-        warn(aObj, problem2String(param, aProblem));
+        Logger log = getLogger(aObj);
+        if (log.isWarnEnabled()) {
+            log.warn(problem2String(param, aProblem));
+        }
     }
 
-    private static void log(MessageType messageType, Object obj, String localParam) {
-        String aClassName = getLoggerName(obj == null ? whoCalledMe() : obj);
-        Logger log = LoggerFactory.getLogger(aClassName);
-        String param = modifyString(localParam);
-        if (MessageType.DEBUG.equals(messageType)) {
-            log.debug(param);
-        } else if (MessageType.INFO.equals(messageType)) {
-            log.info(param);
-        } else if (MessageType.WARN.equals(messageType)) {
-            log.warn(param);
-        } else {
-            log.error(param);
+    /**
+     * Log warning message formatted only if warn level is enabled.
+     * @param obj - object, class or name of the logger
+     * @param format - message format with {} placeholder
+     * @param arg - argument of the message
+     */
+    public static void warn(Object obj, String format, Object arg) {
+        Logger log = getLogger(obj);
+        if (log.isWarnEnabled()) {
+            log.warn(format, arg);
         }
     }
 
-    private static String whoCalledMe() {
-        StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-        StackTraceElement caller = stackTraceElements[4];
-        String classname = caller.getClassName();
-        return classname;
+    private static Logger getLogger(Object aObj) {
+        if (aObj == null) {
+            return CLASS_LOGGERS.get(LOG.class);
+        }
+        if (aObj instanceof Class) {
+            return CLASS_LOGGERS.get((Class<?>) aObj);
+        }
+        if (aObj instanceof String) {
+            String name = (String) aObj;
+            Logger log = NAMED_LOGGERS.get(name);
+            if (log == null) {
+                log = LoggerFactory.getLogger(name);
+                NAMED_LOGGERS.putIfAbsent(name, log);
+            }
+            return log;
+        }
+        return CLASS_LOGGERS.get(aObj.getClass());
     }
 
     private static String problem2String(String aMsg, Throwable aProblem) {
@@ -102,19 +225,6 @@ public class LOG {
          return param;
      }
 
-    private static String getLoggerName(Object aObj) {
-        if (aObj == null) {
-            return LOG.class.getName();
-        }
-        if (aObj instanceof String) {
-            return (String) aObj;
-        }
-        if (aObj instanceof Class) {
-            return ((Class) aObj).getName();
-        }
-        return aObj.getClass().getName();
-    }
-
     private static void makeGoodTrace(StringBuilder sb, StackTraceElement[] trace) {
         for (StackTraceElement entry : trace) {
             if (entry.getClassName().startsWith("org.bitbucket")) {
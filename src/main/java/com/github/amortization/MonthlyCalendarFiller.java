@@ -17,9 +17,14 @@
  */
 package com.github.amortization;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 
 /**.
@@ -31,6 +36,12 @@ public class MonthlyCalendarFiller {
      * In case if this duration is less than 20 days, first due date is moved to the due date in the next month.
      */
     public static final int MIN_DAYS_FROM_START = 20;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final int DAYS_IN_FEBRUARY_OF_LEAP_YEAR = 29;
+    private static final long DAYS_0000_TO_1970 = 719528L;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60L;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
 
     private int repaymentday                    = 5;
     private Date contractFinancedDate           = new Date();
@@ -68,100 +79,137 @@ public class MonthlyCalendarFiller {
     }
 
     public List<PaymentDate> createDateList(CalculationInputParameters parameters) {
-        List<PaymentDate> dates = new ArrayList<PaymentDate>();
-        Calendar calendar = Calendar.getInstance();
+        CalculationListener listener = CalculationInstrumentation.getListener();
+        if (listener == null) {
+            return fillDateList(parameters);
+        }
+        long start = System.nanoTime();
+        List<PaymentDate> dates = fillDateList(parameters);
+        listener.calendarCreated(System.nanoTime() - start, dates.size());
+        return dates;
+    }
+
+    private List<PaymentDate> fillDateList(CalculationInputParameters parameters) {
         int duration = parameters.getDuration();
         int day = parameters.getRepaymentDay();
         repaymentday = day;
         Date start = parameters.getStartDate();
-        Date currentDate;
-        Date previousDate;
+        List<PaymentDate> dates = new ArrayList<PaymentDate>(duration + 1);
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime startDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(start.getTime()), zone);
+        long startDay = startDateTime.toLocalDate().toEpochDay();
+        long timeOfDay = startDateTime.toLocalTime().toNanoOfDay();
         contractFinancedDateToPrint = start;
-        calendar.setTime(start);
-        previousDate = calendar.getTime();
-
-        Calendar calendarForNextDay   = Calendar.getInstance();
-
-        calendarForNextDay.setTime(contractFinancedDateToPrint);
-        calendarForNextDay.add(Calendar.DATE, 1);
-
-        // it's necessary because we need to move date on first work day after holidays to make payment in bank system
-        correctDate(calendarForNextDay, calendarForNextDay.get(Calendar.DATE));
-        contractdateofnextworkday = calendarForNextDay.getTime();
-
 
         // it's necessary because we need to move date on first work day after holidays to make payment in bank system
-        correctDate(calendar, calendar.get(Calendar.DATE));
-        contractFinancedDate = calendar.getTime();
-
-        dates.add(new PaymentDate(contractFinancedDate, 0));
-        LOG.debug(this, "Set date of financing on calculation start: " + contractFinancedDate);
-
-        calendar.setTime(start);
-        correctDate(calendar, day);
-
-
+        contractdateofnextworkday = toDate(startDay + 1, timeOfDay, zone);
+        contractFinancedDate = new Date(start.getTime());
+
+        dates.add(new PaymentDate(contractFinancedDate, startDay, 0));
+        LOG.debug(this, "Set date of financing on calculation start: {}", contractFinancedDate);
+
+        // month is counted from year 0 (year * 12 + month - 1), day is the day of month
+        int month = startDateTime.getYear() * 12 + startDateTime.getMonthValue() - 1;
+        int dayOfMonth = startDateTime.getDayOfMonth();
+        if (dayOfMonth != day) {
+            dayOfMonth = Math.min(day, lengthOfMonth(month));
+            // repayment day less than 1 moves the date to the previous month as the lenient calendar does
+            while (dayOfMonth < 1) {
+                month -= 1;
+                dayOfMonth += lengthOfMonth(month);
+            }
+        }
+        long previousDay = startDay;
         boolean correctDate = true;
         for (int index = 0; index < duration; index += 1) {
-            calendar.add(Calendar.MONTH, 1);
-            if (index == 0) {
-                firstPaymentDate = calendar.getTime();
-            }
+            month += 1;
+            dayOfMonth = Math.min(dayOfMonth, lengthOfMonth(month));
             if (index == duration - 1) {
-                Calendar calendarEndDate = Calendar.getInstance();
-                calendarEndDate.setTime(calendar.getTime());
-                calendarEndDate.set(Calendar.DATE, day);
-                endPaymentDate = calendarEndDate.getTime();
-                LOG.debug(this, "END PAYMENT DATE=" + endPaymentDate);
+                endPaymentDate = toDate(toEpochDay(month, day), timeOfDay, zone);
+                LOG.debug(this, "END PAYMENT DATE={}", endPaymentDate);
             }
-            currentDate = correctDate(calendar, day);
-            PaymentDate paymentDate = new PaymentDate();
-            if (correctDate) {
-                long days = getDaysBetween(start, calendar.getTime());
-                if ((days + 1) < MIN_DAYS_FROM_START) {
-                    calendar.add(Calendar.MONTH, 1);
-                    currentDate = correctDate(calendar, day);
+            boolean moveToNextMonth = false;
+            do {
+                if (moveToNextMonth) {
+                    month += 1;
+                    dayOfMonth = Math.min(dayOfMonth, lengthOfMonth(month));
+                }
+                if (dayOfMonth != day) {
+                    dayOfMonth = Math.min(day, lengthOfMonth(month));
+                    while (dayOfMonth < 1) {
+                        month -= 1;
+                        dayOfMonth += lengthOfMonth(month);
+                    }
                 }
+                moveToNextMonth = !moveToNextMonth && correctDate
+                    && (toEpochDay(month, dayOfMonth) - startDay + 1) < MIN_DAYS_FROM_START;
+            } while (moveToNextMonth);
+            long currentDay = toEpochDay(month, dayOfMonth);
+            Date currentDate = toDate(currentDay, timeOfDay, zone);
+            if (correctDate) {
                 firstPaymentDate = currentDate;
                 correctDate = false;
             }
-            paymentDate.setDaysPerMonth(calendar.getActualMaximum(Calendar.DATE));
-            paymentDate.setDaysBefore(getDaysBetween(previousDate, currentDate));
-            paymentDate.setDate(currentDate);
+            PaymentDate paymentDate = new PaymentDate(currentDate, currentDay, currentDay - previousDay);
+            paymentDate.setDaysPerMonth(lengthOfMonth(month));
             dates.add(paymentDate);
-            previousDate = currentDate;
+            previousDay = currentDay;
         }
 
         return dates;
     }
 
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
     /**
-     * Correct date according to days in month.
-     * If requested day is more than days in month calendar date will be set to
-     * end day of month.
-     * (For example: if requested day is 31 and current calendar day is February then
-     * calendar date will be set to last day of February)
-     * @param calendar - calendare object can be corrected
-     * @param requestedDay - repayment date
-     * @return corrected Date object
+     * Number of days in month.
+     * @param month - month counted from year 0 (year * 12 + month - 1)
+     * @return number of days in month
      */
-    private Date correctDate(Calendar calendar, int requestedDay) {
-        int maxDay = calendar.getActualMaximum(Calendar.DATE);
-        int day = requestedDay;
-        if (calendar.get(Calendar.DATE) != requestedDay) {
-            day = requestedDay <= maxDay ? requestedDay : maxDay;
+    private static int lengthOfMonth(int month) {
+        int monthOfYear = Math.floorMod(month, 12);
+        if (monthOfYear == 1 && isLeapYear(Math.floorDiv(month, 12))) {
+            return DAYS_IN_FEBRUARY_OF_LEAP_YEAR;
         }
-        calendar.set(Calendar.DATE, day);
-        return calendar.getTime();
+        return DAYS_IN_MONTH[monthOfYear];
     }
 
-    private long getDaysBetween(Date beginDay, Date endDay) {
-        long diff;
-        Calendar calendarFrom = Calendar.getInstance();
-        Calendar calendarTo = Calendar.getInstance();
-        calendarFrom.setTime(beginDay);
-        calendarTo.setTime(endDay);
-        diff = calendarTo.getTimeInMillis() - calendarFrom.getTimeInMillis();
-        return diff / (1000 * 60 * 60 * 24);
+    /**
+     * Epoch day of the day in month. Day out of the month range moves the date to the previous or next months,
+     * like a lenient calendar does.
+     * @param month - month counted from year 0 (year * 12 + month - 1)
+     * @param day - day of month
+     * @return epoch day
+     */
+    private static long toEpochDay(int month, int day) {
+        long year = Math.floorDiv(month, 12);
+        int monthOfYear = Math.floorMod(month, 12) + 1;
+        // the same as LocalDate.of(year, monthOfYear, 1).toEpochDay()
+        long total = 365 * year;
+        if (year >= 0) {
+            total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        } else {
+            total -= year / -4 - year / -100 + year / -400;
+        }
+        total += (367 * monthOfYear - 362) / 12;
+        if (monthOfYear > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970 + day - 1;
+    }
+
+    private static Date toDate(long epochDay, long timeOfDay, ZoneId zone) {
+        long epochSecond = epochDay * SECONDS_PER_DAY + timeOfDay / NANOS_PER_SECOND;
+        int nanos = (int) (timeOfDay % NANOS_PER_SECOND);
+        ZoneRules rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            epochSecond -= rules.getOffset(Instant.EPOCH).getTotalSeconds();
+            return new Date(epochSecond * 1000 + nanos / NANOS_PER_MILLI);
+        }
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+        // ambiguous local time is resolved to the standard time offset like GregorianCalendar does
+        return Date.from(ZonedDateTime.of(dateTime, zone).withLaterOffsetAtOverlap().toInstant());
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Evaluation of net present values used by NpvKernel. The Vector API implementation is compiled only by Java 17
+ * and later and it is used only if the jdk.incubator.vector module is added to the JVM.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+interface NpvEvaluator {
+    /**
+     * See NpvKernel.evaluate().
+     * @param cashFlows - monthly cash flows
+     * @param from - index of the first cash flow to use
+     * @param size - number of cash flows to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @param result - array of two elements to store NpvKernel.VALUE and NpvKernel.DERIVATIVE to
+     */
+    void evaluate(double[] cashFlows, int from, int size, double rate, double[] result);
+
+    /**
+     * See NpvKernel.netPresentValue().
+     * @param cashFlows - monthly cash flows
+     * @param size - number of cash flows to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @return net present value
+     */
+    double netPresentValue(double[] cashFlows, int size, double rate);
+
+    /**
+     * See NpvKernel.evaluate() for several rates.
+     * @param cashFlows - monthly cash flows
+     * @param size - number of cash flows to use
+     * @param rates - annual rates
+     * @param count - number of rates to use
+     * @param values - array to store net present values to, one per rate
+     * @param derivatives - array to store derivatives by rate to, one per rate
+     */
+    void evaluate(double[] cashFlows, int size, double[] rates, int count, double[] values, double[] derivatives);
+}
@@ -0,0 +1,181 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Net present value of monthly cash flows.
+ * Cash flow with index i is discounted by (1 + rate / 12)^i, so the net present value is the polynomial
+ * sum(c[i] * x^i) of the monthly discount factor x = 1 / (1 + rate / 12). It is evaluated by Horner scheme together
+ * with its derivative, without Math.pow calls and without allocations.
+ * <p>
+ * If the JVM runs with --add-modules jdk.incubator.vector (Java 17 and later), long cash flows are evaluated by the
+ * Vector API kernel: blocks of cash flows of the vector length are summed by Horner scheme of x^length, so every
+ * lane has its own polynomial. The kernel is disabled by -Damortization.vector=false.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public final class NpvKernel {
+    /** Index of the net present value in the result array. */
+    public static final int VALUE = 0;
+    /** Index of the net present value derivative by rate in the result array. */
+    public static final int DERIVATIVE = 1;
+
+    /** Cash flows fewer than this are evaluated by the scalar kernel. */
+    static final int VECTOR_MIN_SIZE = 16;
+    private static final NpvEvaluator VECTOR = loadVectorEvaluator();
+
+    private NpvKernel() {
+    }
+
+    private static NpvEvaluator loadVectorEvaluator() {
+        if (!Boolean.parseBoolean(System.getProperty("amortization.vector", "true"))) {
+            return null;
+        }
+        try {
+            // the incubator module is resolved only if it is added to the JVM
+            Class.forName("jdk.incubator.vector.DoubleVector");
+            return (NpvEvaluator) Class.forName("com.github.amortization.VectorNpvKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (Exception | LinkageError ex) {
+            LOG.debug(NpvKernel.class, "Vector API kernel is not used: {}", ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Whether the Vector API kernel is used.
+     * @return true if long cash flows are evaluated by the Vector API
+     */
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Calculate net present value and its derivative by rate.
+     * @param cashFlows - monthly cash flows, the first one is usually negative loan amount
+     * @param size - number of cash flows to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @param result - array of two elements to store VALUE and DERIVATIVE to
+     */
+    public static void evaluate(double[] cashFlows, int size, double rate, double[] result) {
+        evaluate(cashFlows, 0, size, rate, result);
+    }
+
+    /**
+     * Calculate net present value and its derivative by rate of the cash flows from the given index. The cash flow
+     * with the from index is not discounted, so the result is the value at the date of this cash flow.
+     * @param cashFlows - monthly cash flows
+     * @param from - index of the first cash flow to use
+     * @param size - number of cash flows to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @param result - array of two elements to store VALUE and DERIVATIVE to
+     */
+    public static void evaluate(double[] cashFlows, int from, int size, double rate, double[] result) {
+        if (VECTOR != null && size - from >= VECTOR_MIN_SIZE) {
+            VECTOR.evaluate(cashFlows, from, size, rate, result);
+            return;
+        }
+        evaluateScalar(cashFlows, from, size, rate, result);
+    }
+
+    static void evaluateScalar(double[] cashFlows, int from, int size, double rate, double[] result) {
+        double discount = 1 / (1 + rate / 12);
+        double value = .00;
+        double derivative = .00;
+        for (int index = size - 1; index >= from; index -= 1) {
+            derivative = derivative * discount + value;
+            value = value * discount + cashFlows[index];
+        }
+        result[VALUE] = value;
+        // d(x^i)/d(rate) = i * x^(i-1) * dx/d(rate), where dx/d(rate) = -x^2 / 12
+        result[DERIVATIVE] = -derivative * discount * discount / 12;
+    }
+
+    /**
+     * Calculate net present value.
+     * @param cashFlows - monthly cash flows, the first one is usually negative loan amount
+     * @param size - number of cash flows to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @return net present value
+     */
+    public static double netPresentValue(double[] cashFlows, int size, double rate) {
+        if (VECTOR != null && size >= VECTOR_MIN_SIZE) {
+            return VECTOR.netPresentValue(cashFlows, size, rate);
+        }
+        return netPresentValueScalar(cashFlows, size, rate);
+    }
+
+    static double netPresentValueScalar(double[] cashFlows, int size, double rate) {
+        double discount = 1 / (1 + rate / 12);
+        double value = .00;
+        for (int index = size - 1; index >= 0; index -= 1) {
+            value = value * discount + cashFlows[index];
+        }
+        return value;
+    }
+
+    /**
+     * Calculate net present values and their derivatives by rate for several rates at once. The Vector API kernel
+     * evaluates the rates in its lanes.
+     * @param cashFlows - monthly cash flows, the first one is usually negative loan amount
+     * @param size - number of cash flows to use
+     * @param rates - annual rates (0.15 for 15%)
+     * @param count - number of rates to use
+     * @param values - array to store net present values to, one per rate
+     * @param derivatives - array to store derivatives by rate to, one per rate
+     */
+    public static void evaluate(double[] cashFlows, int size, double[] rates, int count, double[] values,
+            double[] derivatives) {
+        if (VECTOR != null) {
+            VECTOR.evaluate(cashFlows, size, rates, count, values, derivatives);
+            return;
+        }
+        evaluateScalar(cashFlows, size, rates, 0, count, values, derivatives);
+    }
+
+    static void evaluateScalar(double[] cashFlows, int size, double[] rates, int fromRate, int count,
+            double[] values, double[] derivatives) {
+        for (int rate = fromRate; rate < count; rate += 1) {
+            double discount = 1 / (1 + rates[rate] / 12);
+            double value = .00;
+            double derivative = .00;
+            for (int index = size - 1; index >= 0; index -= 1) {
+                derivative = derivative * discount + value;
+                value = value * discount + cashFlows[index];
+            }
+            values[rate] = value;
+            derivatives[rate] = -derivative * discount * discount / 12;
+        }
+    }
+
+    /**
+     * Calculate net present value of each cash flow.
+     * @param cashFlows - monthly cash flows
+     * @param size - number of cash flows to use
+     * @param rate - annual rate (0.15 for 15%)
+     * @param netValues - array to store discounted cash flows to
+     */
+    public static void netValues(double[] cashFlows, int size, double rate, double[] netValues) {
+        double growth = 1 + rate / 12;
+        double factor = 1.00;
+        for (int index = 0; index < size; index += 1) {
+            netValues[index] = cashFlows[index] / factor;
+            factor *= growth;
+        }
+    }
+}
@@ -346,6 +346,34 @@ public class Payment implements Serializable {
         this.insurancePayment = insurancePayment;
     }
 
+    /**
+     * Set all amounts, rates and counters to zero, so the payment can be filled again. Date object is kept.
+     */
+    void clear() {
+        totalPayment = .00;
+        coreAmount = .00;
+        capitalPayment = .00;
+        interestPayment = .00;
+        totalInterestPayment = .00;
+        openingFee = .00;
+        monthlyFee = .00;
+        monthlyFeePayment = .00;
+        interestRate = .00;
+        loanCost = .00;
+        daysPerMonth = 0;
+        days = 0;
+        debetIn = .00;
+        debetOut = .00;
+        netValue = .00;
+        duration = 0;
+        annuitySum = .00;
+        totalInstalmentPayment = .00;
+        openingFeeRate = .00;
+        monthlyFeeRate = .00;
+        nominalRate = .00;
+        insurancePayment = BigDecimal.ZERO;
+    }
+
     @Override
     public String toString() {
         return "Payment@" + hashCode();
@@ -0,0 +1,192 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of payment calendars created by MonthlyCalendarFiller.
+ * Calendar depends only on the start date, repayment day, duration and the default time zone, so loans with the
+ * same values share one unmodifiable list of frozen payment dates. Payment dates keep the time of the start date,
+ * so the cached calendar is the same as the one created without the cache. The least recently used calendar is
+ * evicted when the cache is full. The cache is thread safe.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class PaymentCalendarCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final int maximumSize;
+    private final Map<Key, List<PaymentDate>> calendars;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Constructor with default maximum size.
+     */
+    public PaymentCalendarCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param maximumSize - maximum number of cached calendars
+     */
+    public PaymentCalendarCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximum size should be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.calendars = new LinkedHashMap<Key, List<PaymentDate>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<PaymentDate>> eldest) {
+                boolean evict = size() > PaymentCalendarCache.this.maximumSize;
+                if (evict) {
+                    evictionCount += 1;
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Get payment calendar for the loan. Returned list and its payment dates can not be changed.
+     * @param parameters - input parameters of the loan
+     * @return the shared payment calendar
+     */
+    public List<PaymentDate> getDateList(CalculationInputParameters parameters) {
+        long startDate = parameters.getStartDate().getTime();
+        Key key = new Key(startDate, parameters.getRepaymentDay(), parameters.getDuration(),
+                ZoneId.systemDefault().getId());
+        List<PaymentDate> cached;
+        synchronized (calendars) {
+            cached = calendars.get(key);
+            if (cached != null) {
+                hitCount += 1;
+            } else {
+                missCount += 1;
+            }
+        }
+        CalculationListener listener = CalculationInstrumentation.getListener();
+        if (listener != null) {
+            listener.calendarCacheAccessed(cached != null);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        CalculationInputParameters calendarParameters = new CalculationInputParameters();
+        calendarParameters.setStartDate(new Date(startDate));
+        calendarParameters.setRepaymentDay(parameters.getRepaymentDay());
+        calendarParameters.setDuration(parameters.getDuration());
+        List<PaymentDate> dates = freeze(new MonthlyCalendarFiller().createDateList(calendarParameters));
+        synchronized (calendars) {
+            cached = calendars.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            calendars.put(key, dates);
+        }
+        return dates;
+    }
+
+    private static List<PaymentDate> freeze(List<PaymentDate> dates) {
+        List<PaymentDate> frozenDates = new ArrayList<PaymentDate>(dates.size());
+        for (PaymentDate date : dates) {
+            frozenDates.add(date.freeze());
+        }
+        return Collections.unmodifiableList(frozenDates);
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int size() {
+        synchronized (calendars) {
+            return calendars.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (calendars) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (calendars) {
+            return missCount;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (calendars) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * Remove all cached calendars. Statistics are not reset.
+     */
+    public void clear() {
+        synchronized (calendars) {
+            calendars.clear();
+        }
+    }
+
+    private static final class Key {
+        private final long startDate;
+        private final int repaymentDay;
+        private final int duration;
+        private final String timeZone;
+
+        Key(long startDate, int repaymentDay, int duration, String timeZone) {
+            this.startDate = startDate;
+            this.repaymentDay = repaymentDay;
+            this.duration = duration;
+            this.timeZone = timeZone;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return startDate == key.startDate && repaymentDay == key.repaymentDay && duration == key.duration
+                    && timeZone.equals(key.timeZone);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(startDate);
+            hash = 31 * hash + repaymentDay;
+            hash = 31 * hash + duration;
+            return 31 * hash + timeZone.hashCode();
+        }
+    }
+}
@@ -19,6 +19,9 @@ package com.github.amortization;
 
 import java.util.Date;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 
 /**.
  * @author Valentyn Kolesnikov
@@ -30,6 +33,8 @@ public class PaymentDate implements Serializable {
     private Date    date;
     private long    daysBefore;
     private long    daysPerMonth;
+    private transient LocalDate localDate;
+    private transient boolean frozen;
 
     /**
      * Default constructor.
@@ -49,11 +54,32 @@ public class PaymentDate implements Serializable {
     }
 
     /**
-     * Get payment date.
+     * Constructor with the calendar day of payment date is known.
+     * @param date - payment date
+     * @param epochDay - payment day counted from 1970-01-01 in the default time zone
+     * @param daysBefore - number of days from previous date to this one
+     */
+    PaymentDate(Date date, long epochDay, long daysBefore) {
+        this.date       = date;
+        this.daysBefore = daysBefore;
+        this.localDate  = LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Get payment date. Shared payment date (see PaymentCalendarCache) returns a copy, so it can not be changed
+     * through the returned object.
      * @return  payment date
      */
     public Date getDate() {
-        return date;
+        return frozen && date != null ? new Date(date.getTime()) : date;
+    }
+
+    /**
+     * Get payment date without copy of the shared date.
+     * @return payment date in milliseconds or PaymentSchedule.NO_DATE
+     */
+    long getTime() {
+        return date == null ? PaymentSchedule.NO_DATE : date.getTime();
     }
 
     /**
@@ -61,7 +87,20 @@ public class PaymentDate implements Serializable {
      * @param date - payment date
      */
     public void setDate(Date date) {
+        checkNotFrozen();
         this.date = date;
+        this.localDate = null;
+    }
+
+    /**
+     * Get calendar day of payment date in the default time zone.
+     * @return calendar day of payment date
+     */
+    LocalDate getLocalDate() {
+        if (localDate == null) {
+            localDate = Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+        return localDate;
     }
 
     /**
@@ -77,6 +116,7 @@ public class PaymentDate implements Serializable {
      * @param daysBefore - number of days from previous payment date to this one
      */
     public void setDaysBefore(long daysBefore) {
+        checkNotFrozen();
         this.daysBefore = daysBefore;
     }
 
@@ -93,6 +133,26 @@ public class PaymentDate implements Serializable {
      * @param daysPerMonth - number of days in moth
      */
     public void setDaysPerMonth(long daysPerMonth) {
+        checkNotFrozen();
         this.daysPerMonth = daysPerMonth;
     }
+
+    /**
+     * Forbid changes of the payment date, so it can be shared between calculations.
+     * @return this payment date
+     */
+    PaymentDate freeze() {
+        if (date != null) {
+            date = new Date(date.getTime());
+        }
+        getLocalDate();
+        frozen = true;
+        return this;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("shared payment date can not be changed");
+        }
+    }
 }
@@ -0,0 +1,381 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Payment schedule stored as parallel primitive columns, one element per payment.
+ * Payment with index 0 is the loan payout, the others are installments. Values which are the same for all
+ * installments (opening fee, rates, installment sum) are stored once. Payment objects are created only on demand
+ * by the asPayments() view.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class PaymentSchedule {
+    /** Value of the date column for the payment without date. */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private int size;
+    private long[] dates;
+    private long[] days;
+    private long[] daysPerMonth;
+    private double[] debetIn;
+    private double[] capitalPayment;
+    private double[] interestPayment;
+    private double[] totalInterestPayment;
+    private double[] monthlyFee;
+    private double[] totalPayment;
+    private double[] netValue;
+    private double openingFee;
+    private double totalInstalmentPayment;
+    private double monthlyFeeRate;
+    private double openingFeeRate;
+    private double nominalRate;
+    private double coreAmount;
+    private PaymentList payments;
+    private boolean readOnly;
+
+    /**
+     * Constructor.
+     * @param size - number of payments including the loan payout
+     */
+    public PaymentSchedule(int size) {
+        this.size = size;
+        allocate(size);
+    }
+
+    private void allocate(int capacity) {
+        dates = new long[capacity];
+        days = new long[capacity];
+        daysPerMonth = new long[capacity];
+        debetIn = new double[capacity];
+        capitalPayment = new double[capacity];
+        interestPayment = new double[capacity];
+        totalInterestPayment = new double[capacity];
+        monthlyFee = new double[capacity];
+        totalPayment = new double[capacity];
+        netValue = new double[capacity];
+    }
+
+    /**
+     * Prepare the schedule for the next plan. Columns and payment objects of the payment list view are reused when
+     * the new plan is not longer than the largest one before, so values of the previous plan are overwritten.
+     * @param newSize - number of payments including the loan payout
+     */
+    void reset(int newSize) {
+        if (newSize > dates.length) {
+            allocate(newSize);
+            payments = null;
+        } else {
+            Arrays.fill(netValue, 0, newSize, .00);
+        }
+        size = newSize;
+        if (payments != null) {
+            payments.invalidate();
+        }
+    }
+
+    /**
+     * Make the schedule read-only, it is not changed afterwards and asPayments() creates new payment objects on
+     * every access, so the schedule may be shared by threads.
+     */
+    void freeze() {
+        readOnly = true;
+        payments = null;
+    }
+
+    void setLoanTerms(double openingFee, double totalInstalmentPayment, CalculationInputParameters parameters) {
+        this.openingFee = openingFee;
+        this.totalInstalmentPayment = totalInstalmentPayment;
+        this.monthlyFeeRate = parameters.getMonthlyRate();
+        this.openingFeeRate = parameters.getOpeningRate();
+        this.nominalRate = parameters.getRate();
+        this.coreAmount = parameters.getCoreAmount();
+    }
+
+    void set(int index, long date, long days, long daysPerMonth, double debetIn, double capitalPayment,
+            double interestPayment, double totalInterestPayment, double monthlyFee, double totalPayment) {
+        this.dates[index] = date;
+        this.days[index] = days;
+        this.daysPerMonth[index] = daysPerMonth;
+        this.debetIn[index] = debetIn;
+        this.capitalPayment[index] = capitalPayment;
+        this.interestPayment[index] = interestPayment;
+        this.totalInterestPayment[index] = totalInterestPayment;
+        this.monthlyFee[index] = monthlyFee;
+        this.totalPayment[index] = totalPayment;
+    }
+
+    /**
+     * Copy the first payments of the other schedule, net values are not copied.
+     * @param source - schedule to copy payments from
+     * @param count - number of payments to copy
+     */
+    void copy(PaymentSchedule source, int count) {
+        System.arraycopy(source.dates, 0, dates, 0, count);
+        System.arraycopy(source.days, 0, days, 0, count);
+        System.arraycopy(source.daysPerMonth, 0, daysPerMonth, 0, count);
+        System.arraycopy(source.debetIn, 0, debetIn, 0, count);
+        System.arraycopy(source.capitalPayment, 0, capitalPayment, 0, count);
+        System.arraycopy(source.interestPayment, 0, interestPayment, 0, count);
+        System.arraycopy(source.totalInterestPayment, 0, totalInterestPayment, 0, count);
+        System.arraycopy(source.monthlyFee, 0, monthlyFee, 0, count);
+        System.arraycopy(source.totalPayment, 0, totalPayment, 0, count);
+    }
+
+    /**
+     * Column of total payments, used as cash flows for the effective rate.
+     * @return total payments column
+     */
+    double[] getTotalPaymentColumn() {
+        return totalPayment;
+    }
+
+    /**
+     * Column of net current values, filled with the effective rate.
+     * @return net values column
+     */
+    double[] getNetValueColumn() {
+        return netValue;
+    }
+
+    /**
+     * Get number of payments including the loan payout.
+     * @return number of payments
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get payment date.
+     * @param index - payment index
+     * @return payment date in milliseconds or NO_DATE
+     */
+    public long getDate(int index) {
+        return dates[index];
+    }
+
+    /**
+     * Get days from previous payment.
+     * @param index - payment index
+     * @return number of days from previous payment
+     */
+    public long getDays(int index) {
+        return days[index];
+    }
+
+    /**
+     * Get days in the month of payment.
+     * @param index - payment index
+     * @return days in the month of payment
+     */
+    public long getDaysPerMonth(int index) {
+        return daysPerMonth[index];
+    }
+
+    /**
+     * Get client depts before payment.
+     * @param index - payment index
+     * @return client depts before payment
+     */
+    public double getDebetIn(int index) {
+        return debetIn[index];
+    }
+
+    /**
+     * Get client depts after payment, that is the depts before the next installment.
+     * @param index - payment index
+     * @return client depts after payment, zero for the loan payout and the last installment
+     */
+    public double getDebetOut(int index) {
+        return index > 0 && index + 1 < size ? debetIn[index + 1] : .00;
+    }
+
+    public double getCapitalPayment(int index) {
+        return capitalPayment[index];
+    }
+
+    public double getInterestPayment(int index) {
+        return interestPayment[index];
+    }
+
+    public double getTotalInterestPayment(int index) {
+        return totalInterestPayment[index];
+    }
+
+    public double getMonthlyFee(int index) {
+        return monthlyFee[index];
+    }
+
+    public double getTotalPayment(int index) {
+        return totalPayment[index];
+    }
+
+    public double getNetValue(int index) {
+        return netValue[index];
+    }
+
+    public double getOpeningFee() {
+        return openingFee;
+    }
+
+    public double getTotalInstalmentPayment() {
+        return totalInstalmentPayment;
+    }
+
+    public double getMonthlyFeeRate() {
+        return monthlyFeeRate;
+    }
+
+    public double getOpeningFeeRate() {
+        return openingFeeRate;
+    }
+
+    public double getNominalRate() {
+        return nominalRate;
+    }
+
+    public double getCoreAmount() {
+        return coreAmount;
+    }
+
+    /**
+     * Create Payment object for the payment.
+     * @param index - payment index
+     * @return new Payment object
+     */
+    public Payment createPayment(int index) {
+        Payment payment = new Payment();
+        fillPayment(index, payment);
+        return payment;
+    }
+
+    private void fillPayment(int index, Payment payment) {
+        if (dates[index] == NO_DATE) {
+            payment.setDate(null);
+        } else if (payment.getDate() == null) {
+            payment.setDate(new Date(dates[index]));
+        } else {
+            payment.getDate().setTime(dates[index]);
+        }
+        payment.setTotalPayment(totalPayment[index]);
+        payment.setOpeningFee(openingFee);
+        payment.setNetValue(netValue[index]);
+        if (index == 0) {
+            return;
+        }
+        payment.setDays(days[index]);
+        payment.setDaysPerMonth(daysPerMonth[index]);
+        payment.setDebetIn(debetIn[index]);
+        payment.setDebetOut(getDebetOut(index));
+        payment.setCapitalPayment(capitalPayment[index]);
+        payment.setInterestPayment(interestPayment[index]);
+        payment.setTotalInterestPayment(totalInterestPayment[index]);
+        payment.setMonthlyFee(monthlyFee[index]);
+        payment.setMonthlyFeeRate(monthlyFeeRate);
+        payment.setOpeningFeeRate(openingFeeRate);
+        payment.setNominalRate(nominalRate);
+        payment.setTotalInstalmentPayment(totalInstalmentPayment);
+        payment.setCoreAmount(coreAmount);
+    }
+
+    /**
+     * Get payment list view of the schedule. Payment objects are created on first access and the same object is
+     * returned for the same index afterwards. The same view is returned until the schedule grows. For the read-only
+     * schedule of the calculation result a new view is returned, which creates new payment objects on every access.
+     * @return unmodifiable payment list
+     */
+    public List<Payment> asPayments() {
+        if (readOnly) {
+            return new CopyingPaymentList(this);
+        }
+        if (payments == null) {
+            payments = new PaymentList(this, dates.length);
+        }
+        return payments;
+    }
+
+    private static class PaymentList extends AbstractList<Payment> implements RandomAccess {
+        private final PaymentSchedule schedule;
+        private final AtomicReferenceArray<Payment> payments;
+        /** payment objects filled before this generation have values of the previous plan */
+        private final int[] generations;
+        private int generation;
+
+        PaymentList(PaymentSchedule schedule, int capacity) {
+            this.schedule = schedule;
+            this.payments = new AtomicReferenceArray<Payment>(capacity);
+            this.generations = new int[capacity];
+        }
+
+        void invalidate() {
+            generation += 1;
+        }
+
+        @Override
+        public Payment get(int index) {
+            if (index >= schedule.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + schedule.size());
+            }
+            Payment payment = payments.get(index);
+            if (payment == null) {
+                payments.compareAndSet(index, null, schedule.createPayment(index));
+                payment = payments.get(index);
+                generations[index] = generation;
+            } else if (generations[index] != generation) {
+                payment.clear();
+                schedule.fillPayment(index, payment);
+                generations[index] = generation;
+            }
+            return payment;
+        }
+
+        @Override
+        public int size() {
+            return schedule.size();
+        }
+    }
+
+    private static class CopyingPaymentList extends AbstractList<Payment> implements RandomAccess {
+        private final PaymentSchedule schedule;
+
+        CopyingPaymentList(PaymentSchedule schedule) {
+            this.schedule = schedule;
+        }
+
+        @Override
+        public Payment get(int index) {
+            if (index >= schedule.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + schedule.size());
+            }
+            return schedule.createPayment(index);
+        }
+
+        @Override
+        public int size() {
+            return schedule.size();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Payment of one period of the annuity plan, calculated from the payment of the previous period. These are the
+ * rules of the plan shared by AmortizationCalculation, ScheduleRecalculation and RateSensitivity, so their plans
+ * are the same to the last bit. Interests are calculated for 30 days in a month, only the first installment is
+ * calculated for the real number of days, but not more than 30.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+class PeriodPayment {
+    private static final int INTEREST_DAYS_30 = 30;
+
+    private double amount;
+    private double rate;
+    private double annuitySum;
+    private double monthlyInstallment;
+    private double loanMonthlyFee;
+    private double debetIn;
+    private double capitalPayment;
+    private double interestPayment;
+    private double totalInterestPayment;
+    private double monthlyFee;
+    private double totalPayment;
+
+    /**
+     * Set terms of the plan.
+     * @param newAmount - the loan amount
+     * @param newRate - the nominal rate in percents
+     * @param newAnnuitySum - the installment without the monthly fee, paid in grace period
+     * @param newMonthlyInstallment - the installment with the monthly fee
+     * @param newMonthlyFee - the monthly fee
+     */
+    void setTerms(double newAmount, double newRate, double newAnnuitySum, double newMonthlyInstallment,
+            double newMonthlyFee) {
+        this.amount = newAmount;
+        this.rate = newRate;
+        this.annuitySum = newAnnuitySum;
+        this.monthlyInstallment = newMonthlyInstallment;
+        this.loanMonthlyFee = newMonthlyFee;
+    }
+
+    /**
+     * Continue the calculated plan from its payment.
+     * @param previousDebetIn - debet in of the previous payment
+     * @param previousCapitalPayment - capital payment of the previous payment
+     */
+    void setPrevious(double previousDebetIn, double previousCapitalPayment) {
+        this.debetIn = previousDebetIn;
+        this.capitalPayment = previousCapitalPayment;
+    }
+
+    /**
+     * Calculate the loan payout, the first cash flow of the plan.
+     */
+    void calcLoanPayout() {
+        debetIn = .00;
+        capitalPayment = .00;
+        interestPayment = .00;
+        totalInterestPayment = .00;
+        monthlyFee = .00;
+        totalPayment = -amount;
+    }
+
+    /**
+     * Calculate the first installment.
+     * @param days - days from the loan payout
+     * @param grace - whether the installment is in grace period
+     */
+    void calcFirstInstallment(long days, boolean grace) {
+        interestPayment = Rounding.halfUp(calcInterest(amount, Math.min(days, INTEREST_DAYS_30)), 2);
+        totalInterestPayment = interestPayment + loanMonthlyFee;
+        if (grace) {
+            capitalPayment = annuitySum - interestPayment;
+            monthlyFee = .00;
+            totalPayment = annuitySum;
+        } else {
+            capitalPayment = monthlyInstallment - totalInterestPayment;
+            monthlyFee = loanMonthlyFee;
+            totalPayment = monthlyInstallment;
+        }
+        debetIn = Rounding.halfUp(amount, 2);
+    }
+
+    /**
+     * Calculate the installment between the first and the last ones.
+     * @param grace - whether the installment is in grace period
+     */
+    void calcInstallment(boolean grace) {
+        debetIn = Rounding.halfUp(debetIn - capitalPayment, 2);
+        interestPayment = Rounding.halfUp(calcInterest(debetIn, INTEREST_DAYS_30), 2);
+        totalInterestPayment = interestPayment + loanMonthlyFee;
+        if (grace) {
+            monthlyFee = .00;
+            totalPayment = annuitySum;
+            capitalPayment = Rounding.halfUp(annuitySum - interestPayment, 2);
+        } else {
+            monthlyFee = loanMonthlyFee;
+            totalPayment = monthlyInstallment;
+            capitalPayment = Rounding.halfUp(monthlyInstallment - interestPayment - loanMonthlyFee, 2);
+        }
+    }
+
+    /**
+     * Calculate the last installment, it repays the rest of the debt with the monthly fee also in grace period.
+     */
+    void calcLastInstallment() {
+        double rest = debetIn - capitalPayment;
+        debetIn = rest;
+        capitalPayment = rest;
+        monthlyFee = loanMonthlyFee;
+        totalInterestPayment = Rounding.halfUp(calcInterest(rest, INTEREST_DAYS_30), 2) + loanMonthlyFee;
+        totalPayment = rest + totalInterestPayment;
+        interestPayment = totalInterestPayment - loanMonthlyFee;
+    }
+
+    /**
+     * Add extra capital to the installment.
+     * @param extraCapital - the extra capital
+     */
+    void addCapital(double extraCapital) {
+        capitalPayment += extraCapital;
+        totalPayment += extraCapital;
+    }
+
+    private double calcInterest(double sum, double days) {
+        return sum * rate * days / (100.00 * 360);
+    }
+
+    public double getDebetIn() {
+        return debetIn;
+    }
+
+    public double getCapitalPayment() {
+        return capitalPayment;
+    }
+
+    public double getInterestPayment() {
+        return interestPayment;
+    }
+
+    public double getTotalInterestPayment() {
+        return totalInterestPayment;
+    }
+
+    public double getMonthlyFee() {
+        return monthlyFee;
+    }
+
+    public double getTotalPayment() {
+        return totalPayment;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Calculation of amortization plans for many loans on a fork-join pool.
+ * Every loan is calculated independently, so an error in one loan is returned in its CalculationResult and does
+ * not stop the others.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class PortfolioCalculation {
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private boolean flagOrdered = true;
+    private volatile AmortizationEngine engine = new AmortizationEngine();
+
+    /**
+     * Constructor. Loans are calculated on the common fork-join pool.
+     */
+    public PortfolioCalculation() {
+        this.pool = ForkJoinPool.commonPool();
+        this.ownPool = false;
+    }
+
+    /**
+     * Constructor. Loans are calculated on the own fork-join pool, which should be released by shutdown().
+     * @param parallelism - number of threads to calculate loans
+     */
+    public PortfolioCalculation(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.ownPool = true;
+    }
+
+    /**
+     * Constructor. Loans are calculated on the passed fork-join pool.
+     * @param pool - fork-join pool to calculate loans
+     */
+    public PortfolioCalculation(ForkJoinPool pool) {
+        this.pool = pool;
+        this.ownPool = false;
+    }
+
+    /**
+     * set flag for result delivery order.
+     * <ul>
+     * <li><b>true</b> - results are delivered in the order of input parameters</li>
+     * <li><b>false</b> - results are delivered as soon as they are calculated, from the pool threads</li>
+     * </ul>
+     *
+     * @param newOrderedValue set ordered delivery
+     */
+    public void setOrdered(boolean newOrderedValue) {
+        this.flagOrdered = newOrderedValue;
+    }
+
+    /**
+     * Set cache of payment calendars shared by loans with the same start date, repayment day and duration.
+     * @param calendarCache - calendar cache, null to create calendar for every loan
+     */
+    public void setCalendarCache(PaymentCalendarCache calendarCache) {
+        this.engine = new AmortizationEngine(engine.isRoundValues(), calendarCache, engine.getEffectiveRateCache());
+    }
+
+    public PaymentCalendarCache getCalendarCache() {
+        return engine.getCalendarCache();
+    }
+
+    /**
+     * Set cache of effective rates, so the effective rate of the loan is solved from the rate of the previous loan
+     * with the same product terms.
+     * @param rateCache - effective rate cache, null to solve effective rate from the nominal rate
+     */
+    public void setEffectiveRateCache(EffectiveRateCache rateCache) {
+        this.engine = new AmortizationEngine(engine.isRoundValues(), engine.getCalendarCache(), rateCache);
+    }
+
+    public EffectiveRateCache getEffectiveRateCache() {
+        return engine.getEffectiveRateCache();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Calculate amortization plans for the loans.
+     * @param loans - input parameters of loans
+     * @return results in the order of input parameters
+     */
+    public List<CalculationResult> calculate(Collection<CalculationInputParameters> loans) {
+        List<CalculationResult> results = new ArrayList<CalculationResult>(loans.size());
+        calculate(loans.stream(), results::add, true);
+        return results;
+    }
+
+    /**
+     * Calculate amortization plans for the loans and pass results to the consumer. If delivery is not ordered,
+     * consumer is called concurrently from the pool threads and must be thread safe.
+     * @param loans - input parameters of loans
+     * @param consumer - consumer of results
+     */
+    public void calculate(Stream<CalculationInputParameters> loans, Consumer<CalculationResult> consumer) {
+        calculate(loans, consumer, flagOrdered);
+    }
+
+    private void calculate(Stream<CalculationInputParameters> loans, Consumer<CalculationResult> consumer,
+            boolean ordered) {
+        Stream<CalculationResult> results = loans.parallel().map(this::calculate);
+        try {
+            pool.submit(() -> {
+                if (ordered) {
+                    results.forEachOrdered(consumer);
+                } else {
+                    results.forEach(consumer);
+                }
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("portfolio calculation is interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Calculate amortization plan for one loan.
+     * @param parameters - input parameters of the loan
+     * @return the result with payments or with error
+     */
+    public CalculationResult calculate(CalculationInputParameters parameters) {
+        return engine.calculate(parameters);
+    }
+
+    /**
+     * Release the own fork-join pool.
+     */
+    public void shutdown() {
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.List;
+
+/**
+ * Amortization plans of one loan for a grid of nominal rates. Values which do not depend on the rate (days of
+ * the calendar, fees, payment dates) are calculated once, then payments of all rates are calculated period by
+ * period with the rates in the inner loop, by the same PeriodPayment rules as in AmortizationCalculation, so the
+ * results are the same for every rate. The effective rate of every nominal rate starts from the effective rate of
+ * the previous one.
+ * <p>
+ * Totals are kept in one matrix with a row per rate, payment schedules are created only if they are requested.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class RateSensitivity {
+    private static final int ANNUITY_SUM = 0;
+    private static final int MONTHLY_INSTALLMENT = 1;
+    private static final int TOTAL_PAYMENT = 2;
+    private static final int CAPITAL_PAYMENT = 3;
+    private static final int INTEREST_PAYMENT = 4;
+    private static final int MONTHLY_FEE = 5;
+    private static final int INTEREST_RATE = 6;
+    private static final int COLUMNS = 7;
+    private static final long ONE_MINUTE = 60 * 1000L;
+
+    private final List<PaymentDate> calendar;
+    private final CalculationInputParameters parameters;
+    private final double[] rates;
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+    private boolean flagNeedRound = true;
+    private boolean keepSchedules;
+    private double[] totals;
+    private PaymentSchedule[] schedules;
+    private long totalDate;
+    private int iterations;
+
+    /**
+     * Constructor.
+     * @param calendar - payment calendar of the loan
+     * @param parameters - input parameters of the loan, its rate is not used
+     * @param rates - nominal rates in percents, each not less than 0.000001
+     */
+    public RateSensitivity(List<PaymentDate> calendar, CalculationInputParameters parameters, double[] rates) {
+        for (double rate : rates) {
+            if (!(rate >= GoalSeek.MIN_RATE)) {
+                throw new IllegalArgumentException("rate should be positive: " + rate);
+            }
+        }
+        this.calendar = calendar;
+        this.parameters = parameters;
+        this.rates = rates.clone();
+    }
+
+    /**
+     * See AmortizationCalculation.setRoundValues().
+     * @param newRoundValue set need round
+     */
+    public void setRoundValues(boolean newRoundValue) {
+        this.flagNeedRound = newRoundValue;
+    }
+
+    /**
+     * Keep payment schedule of every rate.
+     * @param newKeepSchedules - true to create payment schedules
+     */
+    public void setKeepSchedules(boolean newKeepSchedules) {
+        this.keepSchedules = newKeepSchedules;
+    }
+
+    public void calc() {
+        int lanes = rates.length;
+        int size = calendar.size();
+        double amount = parameters.getAmount();
+        Long endGracePeriod = parameters.getEndGracePeriod();
+        if (amount < 0.000001) {
+            throw new IllegalArgumentException("amount should be positive: " + amount);
+        }
+        if (endGracePeriod != null && endGracePeriod > 0 && endGracePeriod >= size) {
+            throw new IllegalArgumentException("check grace period value, may be is too big: " + endGracePeriod);
+        }
+        double monthlyFee = Rounding.halfUp(parameters.getMonthlyRate() / 100.00 * amount, 2);
+        double openingFee = parameters.getOpeningRate() / 100.00 * amount;
+        totals = new double[lanes * COLUMNS];
+        double[] annuitySum = new double[lanes];
+        double[] monthlyInstallment = new double[lanes];
+        for (int lane = 0; lane < lanes; lane += 1) {
+            // the same as AmortizationCalculation.init(), factors of the grid are not put to the shared cache
+            annuitySum[lane] = Rounding.halfUp(AnnuityFactorCache.calcFactor(rates[lane], parameters.getDuration())
+                    * amount, 2);
+            monthlyInstallment[lane] = monthlyFee + annuitySum[lane];
+            if (flagNeedRound) {
+                annuitySum[lane] = Math.ceil(annuitySum[lane]);
+                monthlyInstallment[lane] = Math.ceil(monthlyInstallment[lane]);
+            }
+        }
+        PeriodPayment[] payments = new PeriodPayment[lanes];
+        for (int lane = 0; lane < lanes; lane += 1) {
+            payments[lane] = new PeriodPayment();
+            payments[lane].setTerms(amount, rates[lane], annuitySum[lane], monthlyInstallment[lane], monthlyFee);
+        }
+        double[] totalSum = new double[lanes];
+        double[] capitalSum = new double[lanes];
+        double[] interestSum = new double[lanes];
+        double monthlyFeeSum = .00;
+        double[][] cashFlows = new double[lanes][size];
+        createSchedules(size, openingFee, monthlyInstallment);
+        totalDate = System.currentTimeMillis();
+        for (int index = 0; index < size; index += 1) {
+            PaymentDate paymentDate = calendar.get(index);
+            long date = paymentDate.getTime();
+            if (date != PaymentSchedule.NO_DATE) {
+                totalDate = date;
+            }
+            boolean grace = endGracePeriod != null && index <= endGracePeriod;
+            long days = index == 0 ? 0 : index == 1 ? AmortizationCalculation.getDays(calendar.get(0), paymentDate)
+                    : paymentDate.getDaysBefore();
+            for (int lane = 0; lane < lanes; lane += 1) {
+                PeriodPayment payment = payments[lane];
+                if (index == 0) {
+                    payment.calcLoanPayout();
+                } else if (index == 1) {
+                    payment.calcFirstInstallment(days, grace);
+                } else if (index + 1 == size) {
+                    payment.calcLastInstallment();
+                } else {
+                    payment.calcInstallment(grace);
+                }
+                cashFlows[lane][index] = payment.getTotalPayment();
+                if (index > 0) {
+                    totalSum[lane] += payment.getTotalPayment();
+                    capitalSum[lane] += payment.getCapitalPayment();
+                    interestSum[lane] += payment.getInterestPayment();
+                }
+                if (schedules != null) {
+                    schedules[lane].set(index, date, days, index == 0 ? 0 : paymentDate.getDaysPerMonth(),
+                            payment.getDebetIn(), payment.getCapitalPayment(), payment.getInterestPayment(),
+                            payment.getTotalInterestPayment(), payment.getMonthlyFee(), payment.getTotalPayment());
+                }
+            }
+            if (index > 0 && lanes > 0) {
+                // the monthly fee does not depend on the rate
+                monthlyFeeSum += payments[0].getMonthlyFee();
+            }
+        }
+        iterations = 0;
+        double guess = rates.length == 0 ? .00 : rates[0] / 100.00;
+        for (int lane = 0; lane < lanes; lane += 1) {
+            double effectiveRate = solver.solve(cashFlows[lane], size, guess);
+            iterations += solver.getIterations();
+            guess = effectiveRate;
+            if (schedules != null) {
+                NpvKernel.netValues(cashFlows[lane], size, effectiveRate, schedules[lane].getNetValueColumn());
+            }
+            int row = lane * COLUMNS;
+            totals[row + ANNUITY_SUM] = annuitySum[lane];
+            totals[row + MONTHLY_INSTALLMENT] = monthlyInstallment[lane];
+            totals[row + TOTAL_PAYMENT] = Rounding.halfUp(totalSum[lane], 2);
+            totals[row + CAPITAL_PAYMENT] = Rounding.halfUp(capitalSum[lane], 2);
+            totals[row + INTEREST_PAYMENT] = Rounding.halfUp(interestSum[lane], 2);
+            totals[row + MONTHLY_FEE] = Rounding.halfUp(monthlyFeeSum, 2);
+            totals[row + INTEREST_RATE] = effectiveRate * 100.00;
+        }
+    }
+
+    private void createSchedules(int size, double openingFee, double[] monthlyInstallment) {
+        schedules = null;
+        if (!keepSchedules) {
+            return;
+        }
+        schedules = new PaymentSchedule[rates.length];
+        for (int lane = 0; lane < rates.length; lane += 1) {
+            CalculationInputParameters laneParameters = GoalSeek.copy(parameters);
+            laneParameters.setRate(rates[lane]);
+            schedules[lane] = new PaymentSchedule(size);
+            schedules[lane].setLoanTerms(openingFee, monthlyInstallment[lane], laneParameters);
+        }
+    }
+
+    private double get(int lane, int column) {
+        if (totals == null) {
+            throw new IllegalStateException("calc() should be called before");
+        }
+        return totals[lane * COLUMNS + column];
+    }
+
+    /**
+     * Get number of rates.
+     * @return number of rates
+     */
+    public int size() {
+        return rates.length;
+    }
+
+    public double getRate(int lane) {
+        return rates[lane];
+    }
+
+    public double getAnnuitySum(int lane) {
+        return get(lane, ANNUITY_SUM);
+    }
+
+    public double getMonthlyInstallment(int lane) {
+        return get(lane, MONTHLY_INSTALLMENT);
+    }
+
+    public double getTotalPayment(int lane) {
+        return get(lane, TOTAL_PAYMENT);
+    }
+
+    public double getCapitalPayment(int lane) {
+        return get(lane, CAPITAL_PAYMENT);
+    }
+
+    public double getInterestPayment(int lane) {
+        return get(lane, INTEREST_PAYMENT);
+    }
+
+    public double getMonthlyFee(int lane) {
+        return get(lane, MONTHLY_FEE);
+    }
+
+    /**
+     * Get total interest payment, that is total payment less capital payment.
+     * @param lane - index of the rate
+     * @return total interest payment
+     */
+    public double getTotalInterestPayment(int lane) {
+        return get(lane, TOTAL_PAYMENT) - get(lane, CAPITAL_PAYMENT);
+    }
+
+    /**
+     * Get effective rate.
+     * @param lane - index of the rate
+     * @return effective rate in percents
+     */
+    public double getInterestRate(int lane) {
+        return get(lane, INTEREST_RATE);
+    }
+
+    /**
+     * Create totals of the plan for the rate.
+     * @param lane - index of the rate
+     * @return totals of the plan
+     */
+    public CalculationSummary getSummary(int lane) {
+        return new CalculationSummary(totalDate + ONE_MINUTE, parameters.getDuration(), getInterestRate(lane),
+                Rounding.halfUp(rates[lane], 2), getTotalPayment(lane), getCapitalPayment(lane),
+                getInterestPayment(lane), getMonthlyFee(lane),
+                Rounding.halfUp(parameters.getOpeningRate() / 100.00 * parameters.getAmount(), 2),
+                getAnnuitySum(lane), getMonthlyInstallment(lane));
+    }
+
+    /**
+     * Get payment schedule for the rate.
+     * @param lane - index of the rate
+     * @return payment schedule or null if schedules are not kept
+     */
+    public PaymentSchedule getSchedule(int lane) {
+        return schedules == null ? null : schedules[lane];
+    }
+
+    /**
+     * Number of effective rate solver iterations of all rates made by the last calc() call.
+     * @return number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.math.BigDecimal;
+
+/**
+ * Half up rounding of double values without allocations.
+ * Result is the same as of BigDecimal.valueOf(value).setScale(scale, BigDecimal.ROUND_HALF_UP).doubleValue(), that
+ * is the value is rounded as its shortest decimal representation. BigDecimal is used only for values which are too
+ * big to be scaled exactly (more than 10^12 units of the last digit) and for NaN and infinite values.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public final class Rounding {
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+    private static final double MAX_SCALED = 1e12;
+    private static final double HALF = .5;
+
+    private Rounding() {
+    }
+
+    /**
+     * Round value to defined number of signs after digit delimiter.
+     *
+     * @param value
+     *            - value to be rounded
+     * @param scale
+     *            - number of signs after digit delimiter for rounding to
+     * @return rounded value.
+     */
+    public static double halfUp(double value, int scale) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            return bigDecimalHalfUp(value, scale);
+        }
+        double magnitude = Math.abs(value);
+        double power = POWERS_OF_TEN[scale];
+        double scaled = magnitude * power;
+        if (!(scaled < MAX_SCALED)) {
+            return bigDecimalHalfUp(value, scale);
+        }
+        double units = Math.floor(scaled);
+        double fraction = scaled - units;
+        // both scaled and the decimal representation of value are within two ulps from the exact value
+        double tolerance = 4 * Math.ulp(scaled);
+        if (fraction > HALF + tolerance) {
+            units += 1;
+        } else if (fraction >= HALF - tolerance && magnitude >= (units + HALF) / power) {
+            // value is the double nearest to the tie or above it, so its decimal representation is not below the tie
+            units += 1;
+        }
+        if (units == 0) {
+            return .00;
+        }
+        double result = units / power;
+        return value < 0 ? -result : result;
+    }
+
+    /**
+     * Round value to cents.
+     * @param value - value to be rounded
+     * @return number of cents
+     */
+    public static long halfUpCents(double value) {
+        return Math.round(halfUp(value, 2) * 100);
+    }
+
+    /**
+     * Divide with half up rounding of the quotient.
+     * @param dividend - dividend
+     * @param divisor - positive divisor
+     * @return rounded quotient
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = (Math.abs(dividend) + divisor / 2) / divisor;
+        return dividend < 0 ? -quotient : quotient;
+    }
+
+    private static double bigDecimalHalfUp(double value, int scale) {
+        BigDecimal bd = BigDecimal.valueOf(value);
+        bd = bd.setScale(scale, BigDecimal.ROUND_HALF_UP);
+        return bd.doubleValue();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Change of the loan terms from the installment with the given index, for example after a partial prepayment or
+ * a rate reset. Only the set terms are changed, the others are kept as in the original plan.
+ * <ul>
+ * <li>extra capital - paid together with the installment, the rest of the loan is amortized by lower installments
+ * till the same end date</li>
+ * <li>rate - new nominal rate, the interests of the installment are calculated with it already</li>
+ * <li>monthly installment - new installment with the monthly fee, the loan ends earlier if it is repaid by
+ * larger installments, the last installment pays the rest otherwise</li>
+ * <li>extra months - number of months the plan is extended by</li>
+ * </ul>
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class ScheduleChange {
+    private final int period;
+    private double extraCapital;
+    private Double rate;
+    private Double monthlyInstallment;
+    private int extraMonths;
+
+    /**
+     * Constructor.
+     * @param period - index of the first changed installment, from 1
+     */
+    public ScheduleChange(int period) {
+        this.period = period;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public double getExtraCapital() {
+        return extraCapital;
+    }
+
+    public void setExtraCapital(double extraCapital) {
+        this.extraCapital = extraCapital;
+    }
+
+    /**
+     * Get new nominal rate.
+     * @return rate in percents or null if the rate is not changed
+     */
+    public Double getRate() {
+        return rate;
+    }
+
+    public void setRate(Double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Get new monthly installment.
+     * @return installment with the monthly fee or null if the installment is not set
+     */
+    public Double getMonthlyInstallment() {
+        return monthlyInstallment;
+    }
+
+    public void setMonthlyInstallment(Double monthlyInstallment) {
+        this.monthlyInstallment = monthlyInstallment;
+    }
+
+    public int getExtraMonths() {
+        return extraMonths;
+    }
+
+    public void setExtraMonths(int extraMonths) {
+        this.extraMonths = extraMonths;
+    }
+}
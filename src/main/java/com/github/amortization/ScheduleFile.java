@@ -0,0 +1,103 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+/**
+ * Layout of the binary schedule file. All values are big endian and have fixed width, so every value of a
+ * schedule is read at a known offset without parsing of the values before it.
+ * <p>
+ * The file starts with a header of 16 bytes: magic number, format version, size of the schedule header and
+ * size of the row. Then schedules follow, each is a schedule header with loan parameters and totals and
+ * one row per payment, the loan payout first. Missing dates are stored as PaymentSchedule.NO_DATE.
+ * <pre>
+ * schedule header                          row
+ *   0 long   loan id                         0 long   date in milliseconds
+ *   8 int    number of rows                  8 int    days from previous payment
+ *  12 int    duration                       12 int    days in the month of payment
+ *  16 int    repayment day                  16 double debetIn
+ *  20 int    flags (1 - has grace period)   24 double capitalPayment
+ *  24 long   start date in milliseconds     32 double interestPayment
+ *  32 long   end of grace period            40 double totalInterestPayment
+ *  40 double amount                         48 double monthlyFee
+ *  48 double nominal rate                   56 double totalPayment
+ *  56 double opening fee rate               64 double netValue
+ *  64 double monthly fee rate
+ *  72 double core amount
+ *  80 long   date of the total
+ *  88 double effective rate
+ *  96 double nominal rate of the total
+ * 104 double totalPayment
+ * 112 double capitalPayment
+ * 120 double interestPayment
+ * 128 double monthlyFee
+ * 136 double openingFee
+ * 144 double annuitySum
+ * 152 double totalInstalmentPayment
+ * </pre>
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class ScheduleFile {
+    static final int MAGIC = 0x414D5346;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 16;
+
+    static final int LOAN_ID = 0;
+    static final int SIZE = 8;
+    static final int DURATION = 12;
+    static final int REPAYMENT_DAY = 16;
+    static final int FLAGS = 20;
+    static final int START_DATE = 24;
+    static final int END_GRACE_PERIOD = 32;
+    static final int AMOUNT = 40;
+    static final int RATE = 48;
+    static final int OPENING_RATE = 56;
+    static final int MONTHLY_RATE = 64;
+    static final int CORE_AMOUNT = 72;
+    static final int TOTAL_DATE = 80;
+    static final int INTEREST_RATE = 88;
+    static final int NOMINAL_RATE = 96;
+    static final int TOTAL_PAYMENT = 104;
+    static final int TOTAL_CAPITAL_PAYMENT = 112;
+    static final int TOTAL_INTEREST_PAYMENT = 120;
+    static final int TOTAL_MONTHLY_FEE = 128;
+    static final int OPENING_FEE = 136;
+    static final int ANNUITY_SUM = 144;
+    static final int TOTAL_INSTALMENT_PAYMENT = 152;
+    static final int HEADER_SIZE = 160;
+
+    static final int FLAG_GRACE_PERIOD = 1;
+
+    static final int ROW_DATE = 0;
+    static final int ROW_DAYS = 8;
+    static final int ROW_DAYS_PER_MONTH = 12;
+    static final int ROW_DEBET_IN = 16;
+    static final int ROW_CAPITAL_PAYMENT = 24;
+    static final int ROW_INTEREST_PAYMENT = 32;
+    static final int ROW_TOTAL_INTEREST_PAYMENT = 40;
+    static final int ROW_MONTHLY_FEE = 48;
+    static final int ROW_TOTAL_PAYMENT = 56;
+    static final int ROW_NET_VALUE = 64;
+    static final int ROW_SIZE = 72;
+
+    /** the largest number of rows, so that a schedule fits into one mapped buffer */
+    static final int MAX_SIZE = (Integer.MAX_VALUE - HEADER_SIZE) / ROW_SIZE;
+
+    private ScheduleFile() {
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+/**
+ * Reader of the binary schedule file (see ScheduleFile for the layout). The file is memory mapped in windows and
+ * values are read directly from the mapped buffer: the reader works as a cursor over schedules, and rows of the
+ * current schedule are exposed by the column getters or by the reusable Row view, so scanning of the file creates
+ * no objects per schedule or payment. The reader is not thread safe.
+ * <pre>
+ * try (ScheduleFileReader reader = new ScheduleFileReader(path)) {
+ *     while (reader.next()) {
+ *         for (int index = 1; index &lt; reader.size(); index += 1) {
+ *             sum += reader.getRow(index).getInterestPayment();
+ *         }
+ *     }
+ * }
+ * </pre>
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class ScheduleFileReader implements Closeable {
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private final Row row = new Row();
+    private ByteBuffer buffer;
+    private long bufferStart;
+    /** position of the current schedule in the file */
+    private long position = -1;
+    /** position of the current schedule in the buffer */
+    private int offset;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param path - file name
+     * @throws IOException if the file can not be opened or it is not a schedule file
+     */
+    public ScheduleFileReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    ScheduleFileReader(Path path, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.windowSize = windowSize;
+        try {
+            fileSize = channel.size();
+            if (fileSize < ScheduleFile.FILE_HEADER_SIZE) {
+                throw new IOException("Not a schedule file: " + path);
+            }
+            map(0, ScheduleFile.FILE_HEADER_SIZE);
+            if (buffer.getInt(0) != ScheduleFile.MAGIC) {
+                throw new IOException("Not a schedule file: " + path);
+            }
+            if (buffer.getInt(4) != ScheduleFile.VERSION || buffer.getInt(8) != ScheduleFile.HEADER_SIZE
+                    || buffer.getInt(12) != ScheduleFile.ROW_SIZE) {
+                throw new IOException("Unsupported version " + buffer.getInt(4) + " of schedule file: " + path);
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Move to the next schedule.
+     * @return false if there are no more schedules
+     * @throws IOException if the file can not be mapped or the schedule is truncated
+     */
+    public boolean next() throws IOException {
+        long next = position < 0 ? ScheduleFile.FILE_HEADER_SIZE
+                : position + ScheduleFile.HEADER_SIZE + (long) size * ScheduleFile.ROW_SIZE;
+        if (next >= fileSize) {
+            size = 0;
+            position = fileSize;
+            return false;
+        }
+        if (next + ScheduleFile.HEADER_SIZE > fileSize) {
+            throw new IOException("Schedule header is truncated at " + next);
+        }
+        map(next, ScheduleFile.HEADER_SIZE);
+        int newSize = buffer.getInt((int) (next - bufferStart) + ScheduleFile.SIZE);
+        long length = ScheduleFile.HEADER_SIZE + (long) newSize * ScheduleFile.ROW_SIZE;
+        if (newSize < 0 || newSize > ScheduleFile.MAX_SIZE || next + length > fileSize) {
+            throw new IOException("Schedule with " + newSize + " rows is truncated at " + next);
+        }
+        map(next, (int) length);
+        position = next;
+        offset = (int) (next - bufferStart);
+        size = newSize;
+        return true;
+    }
+
+    /**
+     * Map the window with the region, unless it is mapped already.
+     */
+    private void map(long start, int length) throws IOException {
+        if (buffer != null && start >= bufferStart && start + length <= bufferStart + buffer.capacity()) {
+            return;
+        }
+        long mapSize = Math.min(Math.max(length, windowSize), fileSize - start);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, mapSize);
+        bufferStart = start;
+    }
+
+    private void checkSchedule() {
+        if (position < 0 || position >= fileSize) {
+            throw new IllegalStateException("No current schedule, next() should return true before");
+        }
+    }
+
+    private long getLong(int field) {
+        checkSchedule();
+        return buffer.getLong(offset + field);
+    }
+
+    private int getInt(int field) {
+        checkSchedule();
+        return buffer.getInt(offset + field);
+    }
+
+    private double getDouble(int field) {
+        checkSchedule();
+        return buffer.getDouble(offset + field);
+    }
+
+    private int rowOffset(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return offset + ScheduleFile.HEADER_SIZE + index * ScheduleFile.ROW_SIZE;
+    }
+
+    public long getLoanId() {
+        return getLong(ScheduleFile.LOAN_ID);
+    }
+
+    /**
+     * Get number of payments of the current schedule including the loan payout.
+     * @return number of payments
+     */
+    public int size() {
+        checkSchedule();
+        return size;
+    }
+
+    public int getDuration() {
+        return getInt(ScheduleFile.DURATION);
+    }
+
+    public int getRepaymentDay() {
+        return getInt(ScheduleFile.REPAYMENT_DAY);
+    }
+
+    /**
+     * Get start date of the loan.
+     * @return start date in milliseconds or PaymentSchedule.NO_DATE
+     */
+    public long getStartDate() {
+        return getLong(ScheduleFile.START_DATE);
+    }
+
+    /**
+     * Get index of the last installment of grace period.
+     * @return end of grace period or null if the loan has no grace period
+     */
+    public Long getEndGracePeriod() {
+        return (getInt(ScheduleFile.FLAGS) & ScheduleFile.FLAG_GRACE_PERIOD) == 0 ? null
+                : Long.valueOf(getLong(ScheduleFile.END_GRACE_PERIOD));
+    }
+
+    public double getAmount() {
+        return getDouble(ScheduleFile.AMOUNT);
+    }
+
+    public double getRate() {
+        return getDouble(ScheduleFile.RATE);
+    }
+
+    public double getOpeningRate() {
+        return getDouble(ScheduleFile.OPENING_RATE);
+    }
+
+    public double getMonthlyRate() {
+        return getDouble(ScheduleFile.MONTHLY_RATE);
+    }
+
+    public double getCoreAmount() {
+        return getDouble(ScheduleFile.CORE_AMOUNT);
+    }
+
+    /**
+     * Get effective rate of the loan.
+     * @return effective rate in percents
+     */
+    public double getInterestRate() {
+        return getDouble(ScheduleFile.INTEREST_RATE);
+    }
+
+    public double getTotalPayment() {
+        return getDouble(ScheduleFile.TOTAL_PAYMENT);
+    }
+
+    public double getAnnuitySum() {
+        return getDouble(ScheduleFile.ANNUITY_SUM);
+    }
+
+    public double getTotalInstalmentPayment() {
+        return getDouble(ScheduleFile.TOTAL_INSTALMENT_PAYMENT);
+    }
+
+    /**
+     * Create input parameters of the current loan.
+     * @return new input parameters
+     */
+    public CalculationInputParameters getParameters() {
+        long startDate = getStartDate();
+        CalculationInputParameters parameters = new CalculationInputParameters(getAmount(), getRate(),
+                getOpeningRate(), getMonthlyRate(), getDuration(),
+                startDate == PaymentSchedule.NO_DATE ? null : new Date(startDate), getRepaymentDay(), .00, .00);
+        parameters.setCoreAmount(getCoreAmount());
+        parameters.setEndGracePeriod(getEndGracePeriod());
+        return parameters;
+    }
+
+    /**
+     * Create totals of the current loan.
+     * @return new totals
+     */
+    public CalculationSummary getSummary() {
+        return new CalculationSummary(getLong(ScheduleFile.TOTAL_DATE), getDuration(), getInterestRate(),
+                getDouble(ScheduleFile.NOMINAL_RATE), getTotalPayment(),
+                getDouble(ScheduleFile.TOTAL_CAPITAL_PAYMENT), getDouble(ScheduleFile.TOTAL_INTEREST_PAYMENT),
+                getDouble(ScheduleFile.TOTAL_MONTHLY_FEE), getDouble(ScheduleFile.OPENING_FEE), getAnnuitySum(),
+                getTotalInstalmentPayment());
+    }
+
+    /**
+     * Get payment date.
+     * @param index - payment index
+     * @return payment date in milliseconds or PaymentSchedule.NO_DATE
+     */
+    public long getDate(int index) {
+        return buffer.getLong(rowOffset(index) + ScheduleFile.ROW_DATE);
+    }
+
+    public long getDays(int index) {
+        return buffer.getInt(rowOffset(index) + ScheduleFile.ROW_DAYS);
+    }
+
+    public long getDaysPerMonth(int index) {
+        return buffer.getInt(rowOffset(index) + ScheduleFile.ROW_DAYS_PER_MONTH);
+    }
+
+    public double getDebetIn(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_DEBET_IN);
+    }
+
+    /**
+     * Get client depts after payment, that is the depts before the next installment.
+     * @param index - payment index
+     * @return client depts after payment, zero for the loan payout and the last installment
+     */
+    public double getDebetOut(int index) {
+        rowOffset(index);
+        return index > 0 && index + 1 < size ? getDebetIn(index + 1) : .00;
+    }
+
+    public double getCapitalPayment(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_CAPITAL_PAYMENT);
+    }
+
+    public double getInterestPayment(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_INTEREST_PAYMENT);
+    }
+
+    public double getTotalInterestPayment(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_TOTAL_INTEREST_PAYMENT);
+    }
+
+    public double getMonthlyFee(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_MONTHLY_FEE);
+    }
+
+    public double getTotalPayment(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_TOTAL_PAYMENT);
+    }
+
+    public double getNetValue(int index) {
+        return buffer.getDouble(rowOffset(index) + ScheduleFile.ROW_NET_VALUE);
+    }
+
+    /**
+     * Get view of the payment of the current schedule. The same view object is returned by every call, so it is
+     * valid only until the next call of getRow() or next().
+     * @param index - payment index
+     * @return row view
+     */
+    public Row getRow(int index) {
+        rowOffset(index);
+        row.index = index;
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    /**
+     * Flyweight view of one payment of the current schedule.
+     */
+    public final class Row {
+        private int index;
+
+        private Row() {
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getDate() {
+            return ScheduleFileReader.this.getDate(index);
+        }
+
+        public long getDays() {
+            return ScheduleFileReader.this.getDays(index);
+        }
+
+        public long getDaysPerMonth() {
+            return ScheduleFileReader.this.getDaysPerMonth(index);
+        }
+
+        public double getDebetIn() {
+            return ScheduleFileReader.this.getDebetIn(index);
+        }
+
+        public double getDebetOut() {
+            return ScheduleFileReader.this.getDebetOut(index);
+        }
+
+        public double getCapitalPayment() {
+            return ScheduleFileReader.this.getCapitalPayment(index);
+        }
+
+        public double getInterestPayment() {
+            return ScheduleFileReader.this.getInterestPayment(index);
+        }
+
+        public double getTotalInterestPayment() {
+            return ScheduleFileReader.this.getTotalInterestPayment(index);
+        }
+
+        public double getMonthlyFee() {
+            return ScheduleFileReader.this.getMonthlyFee(index);
+        }
+
+        public double getTotalPayment() {
+            return ScheduleFileReader.this.getTotalPayment(index);
+        }
+
+        public double getNetValue() {
+            return ScheduleFileReader.this.getNetValue(index);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writer of the binary schedule file (see ScheduleFile for the layout). Columns of the payment schedule are
+ * copied to the file through one buffer, no Payment objects are created. The writer is not thread safe.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class ScheduleFileWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count;
+
+    /**
+     * Constructor. The file is created or truncated.
+     * @param path - file name
+     * @throws IOException if the file can not be opened
+     */
+    public ScheduleFileWriter(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Constructor.
+     * @param channel - channel to write the file to, it is closed by close()
+     * @throws IOException if the file header can not be written
+     */
+    public ScheduleFileWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.putInt(ScheduleFile.MAGIC);
+        buffer.putInt(ScheduleFile.VERSION);
+        buffer.putInt(ScheduleFile.HEADER_SIZE);
+        buffer.putInt(ScheduleFile.ROW_SIZE);
+    }
+
+    /**
+     * Write schedule of the calculated loan, failed calculations are skipped.
+     * @param loanId - identifier of the loan
+     * @param result - result of AmortizationEngine or PortfolioCalculation
+     * @return true if the schedule was written
+     * @throws IOException if the schedule can not be written
+     */
+    public boolean write(long loanId, CalculationResult result) throws IOException {
+        if (!result.isSuccessful()) {
+            return false;
+        }
+        write(loanId, result.getParameters(), result.getSchedule(), result.getSummary());
+        return true;
+    }
+
+    /**
+     * Write schedule of the loan.
+     * @param loanId - identifier of the loan
+     * @param parameters - input parameters of the loan
+     * @param schedule - calculated payment schedule
+     * @param summary - totals of the plan
+     * @throws IOException if the schedule can not be written
+     */
+    public void write(long loanId, CalculationInputParameters parameters, PaymentSchedule schedule,
+            CalculationSummary summary) throws IOException {
+        Long endGracePeriod = parameters.getEndGracePeriod();
+        ensureRemaining(ScheduleFile.HEADER_SIZE);
+        buffer.putLong(loanId);
+        buffer.putInt(schedule.size());
+        buffer.putInt(parameters.getDuration());
+        buffer.putInt(parameters.getRepaymentDay());
+        buffer.putInt(endGracePeriod == null ? 0 : ScheduleFile.FLAG_GRACE_PERIOD);
+        buffer.putLong(parameters.getStartDate() == null ? PaymentSchedule.NO_DATE
+                : parameters.getStartDate().getTime());
+        buffer.putLong(endGracePeriod == null ? 0 : endGracePeriod);
+        buffer.putDouble(parameters.getAmount());
+        buffer.putDouble(parameters.getRate());
+        buffer.putDouble(parameters.getOpeningRate());
+        buffer.putDouble(parameters.getMonthlyRate());
+        buffer.putDouble(parameters.getCoreAmount());
+        buffer.putLong(summary.getDate().getTime());
+        buffer.putDouble(summary.getInterestRate());
+        buffer.putDouble(summary.getNominalRate());
+        buffer.putDouble(summary.getTotalPayment());
+        buffer.putDouble(summary.getCapitalPayment());
+        buffer.putDouble(summary.getInterestPayment());
+        buffer.putDouble(summary.getMonthlyFee());
+        buffer.putDouble(summary.getOpeningFee());
+        buffer.putDouble(summary.getAnnuitySum());
+        buffer.putDouble(summary.getTotalInstalmentPayment());
+        for (int index = 0; index < schedule.size(); index += 1) {
+            ensureRemaining(ScheduleFile.ROW_SIZE);
+            buffer.putLong(schedule.getDate(index));
+            buffer.putInt((int) schedule.getDays(index));
+            buffer.putInt((int) schedule.getDaysPerMonth(index));
+            buffer.putDouble(schedule.getDebetIn(index));
+            buffer.putDouble(schedule.getCapitalPayment(index));
+            buffer.putDouble(schedule.getInterestPayment(index));
+            buffer.putDouble(schedule.getTotalInterestPayment(index));
+            buffer.putDouble(schedule.getMonthlyFee(index));
+            buffer.putDouble(schedule.getTotalPayment(index));
+            buffer.putDouble(schedule.getNetValue(index));
+        }
+        count += 1;
+    }
+
+    /**
+     * Get number of written schedules.
+     * @return number of schedules
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void ensureRemaining(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    /**
+     * Write buffered schedules to the channel.
+     * @throws IOException if the schedules can not be written
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.List;
+
+/**
+ * Recalculation of a calculated plan after the change of the loan terms from some installment (see ScheduleChange).
+ * Payments before the changed installment are copied as they are, only the next ones are calculated from the debt
+ * left after the previous installment. Totals of the kept payments are taken from running sums, and the effective
+ * rate is solved with the kept cash flows stored as runs of equal values (see CashFlowRuns), starting from the
+ * effective rate of the original plan. The sums and the runs are prepared once, so any number of changes of the
+ * same plan may be tried.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class ScheduleRecalculation {
+    private static final long ONE_MINUTE = 60 * 1000L;
+
+    private final CalculationInputParameters parameters;
+    private final PaymentSchedule schedule;
+    private final CalculationSummary summary;
+    private final boolean roundValues;
+    private final double monthlyFee;
+    /** sums of the payments before the index, without the loan payout */
+    private final double[] totalSums;
+    private final double[] capitalSums;
+    private final double[] interestSums;
+    private final double[] monthlyFeeSums;
+    private final CashFlowRuns cashFlowRuns;
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+    private int iterations;
+
+    /**
+     * Constructor.
+     * @param base - calculated plan
+     * @param roundValues - round annuity sum and installment up (see AmortizationCalculation.setRoundValues())
+     */
+    public ScheduleRecalculation(CalculationResult base, boolean roundValues) {
+        if (!base.isSuccessful()) {
+            throw new IllegalArgumentException("plan is not calculated: " + base.getError().getMessage(),
+                    base.getError());
+        }
+        this.parameters = base.getParameters();
+        this.schedule = base.getSchedule();
+        this.summary = base.getSummary();
+        this.roundValues = roundValues;
+        this.monthlyFee = Rounding.halfUp(parameters.getMonthlyRate() / 100.00 * parameters.getAmount(), 2);
+        int size = schedule.size();
+        totalSums = new double[size];
+        capitalSums = new double[size];
+        interestSums = new double[size];
+        monthlyFeeSums = new double[size];
+        // the same order of additions as of AmortizationCalculation, so the totals are the same
+        for (int index = 1; index + 1 < size; index += 1) {
+            totalSums[index + 1] = totalSums[index] + schedule.getTotalPayment(index);
+            capitalSums[index + 1] = capitalSums[index] + schedule.getCapitalPayment(index);
+            interestSums[index + 1] = interestSums[index] + schedule.getInterestPayment(index);
+            monthlyFeeSums[index + 1] = monthlyFeeSums[index] + schedule.getMonthlyFee(index);
+        }
+        cashFlowRuns = new CashFlowRuns(schedule.getTotalPaymentColumn(), size);
+    }
+
+    /**
+     * Calculate the plan with changed terms.
+     * @param calendar - payment calendar of the loan, it should be the calendar of the plan extended by the extra
+     *            months of the change
+     * @param change - change of the loan terms
+     * @return the result with the new plan, its parameters have the new rate and duration
+     * @throws IllegalArgumentException if the change is not valid for the plan
+     */
+    public CalculationResult recalc(List<PaymentDate> calendar, ScheduleChange change) {
+        int period = change.getPeriod();
+        int size = schedule.size() + change.getExtraMonths();
+        double rate = change.getRate() == null ? parameters.getRate() : change.getRate();
+        double extraCapital = change.getExtraCapital();
+        Double installment = change.getMonthlyInstallment();
+        double amount = parameters.getAmount();
+        Long endGracePeriod = parameters.getEndGracePeriod();
+        if (period < 1 || period >= schedule.size()) {
+            throw new IllegalArgumentException("period should be from 1 to " + (schedule.size() - 1) + ": " + period);
+        }
+        if (change.getExtraMonths() < 0) {
+            throw new IllegalArgumentException("extra months should not be negative: " + change.getExtraMonths());
+        }
+        if (calendar.size() < size) {
+            throw new IllegalArgumentException("calendar is shorter than the plan: " + calendar.size());
+        }
+        if (!(rate >= GoalSeek.MIN_RATE)) {
+            throw new IllegalArgumentException("rate should be positive: " + rate);
+        }
+        if (installment != null && !(installment > monthlyFee)) {
+            throw new IllegalArgumentException("installment does not cover the monthly fee: " + installment);
+        }
+        // debt before the changed installment
+        double debetIn = period == 1 ? .00 : schedule.getDebetIn(period - 1);
+        double capitalPayment = period == 1 ? .00 : schedule.getCapitalPayment(period - 1);
+        double debt = period == 1 ? Rounding.halfUp(amount, 2) : Rounding.halfUp(debetIn - capitalPayment, 2);
+        if (!(extraCapital >= .00) || extraCapital > .00 && (extraCapital >= debt || period + 1 >= size)) {
+            throw new IllegalArgumentException("extra capital should be less than the debt and paid before the last"
+                    + " installment: " + extraCapital);
+        }
+        double annuitySum;
+        double monthlyInstallment;
+        if (installment != null) {
+            monthlyInstallment = installment;
+            annuitySum = installment - monthlyFee;
+        } else if (change.getRate() != null || extraCapital > .00 || change.getExtraMonths() > 0) {
+            // extra capital is paid at the end of the first month, so it is discounted by one month
+            double presentDebt = debt - extraCapital / (1 + rate / 12 / 100.00);
+            annuitySum = Rounding.halfUp(AnnuityFactorCache.calcFactor(rate, size - period) * presentDebt, 2);
+            monthlyInstallment = monthlyFee + annuitySum;
+            if (roundValues) {
+                annuitySum = Math.ceil(annuitySum);
+                monthlyInstallment = Math.ceil(monthlyInstallment);
+            }
+        } else {
+            annuitySum = summary.getAnnuitySum();
+            monthlyInstallment = summary.getTotalInstalmentPayment();
+        }
+
+        PaymentSchedule result = new PaymentSchedule(size);
+        result.copy(schedule, period);
+        double totalSum = totalSums[period];
+        double capitalSum = capitalSums[period];
+        double interestSum = interestSums[period];
+        double monthlyFeeSum = monthlyFeeSums[period];
+        int end = size;
+        PeriodPayment payment = new PeriodPayment();
+        payment.setTerms(amount, rate, annuitySum, monthlyInstallment, monthlyFee);
+        payment.setPrevious(debetIn, capitalPayment);
+        for (int index = period; index < end; index += 1) {
+            PaymentDate paymentDate = calendar.get(index);
+            boolean grace = endGracePeriod != null && index <= endGracePeriod;
+            long days;
+            if (index == 1) {
+                days = AmortizationCalculation.getDays(calendar.get(0), paymentDate);
+                payment.calcFirstInstallment(days, grace);
+            } else {
+                days = paymentDate.getDaysBefore();
+                if (index + 1 == end) {
+                    payment.calcLastInstallment();
+                } else {
+                    double previousDebetIn = payment.getDebetIn();
+                    double previousCapitalPayment = payment.getCapitalPayment();
+                    payment.calcInstallment(grace);
+                    if (installment != null && !grace && payment.getCapitalPayment() >= payment.getDebetIn()) {
+                        // the loan is repaid by the larger installment before the end of the plan
+                        end = index + 1;
+                        payment.setPrevious(previousDebetIn, previousCapitalPayment);
+                        payment.calcLastInstallment();
+                    }
+                }
+            }
+            if (index == period && index + 1 < end) {
+                payment.addCapital(extraCapital);
+                if (!(payment.getCapitalPayment() > .00)) {
+                    throw new IllegalArgumentException("installment does not cover interests: "
+                            + monthlyInstallment);
+                }
+            }
+            result.set(index, paymentDate.getTime(), days, paymentDate.getDaysPerMonth(), payment.getDebetIn(),
+                    payment.getCapitalPayment(), payment.getInterestPayment(), payment.getTotalInterestPayment(),
+                    payment.getMonthlyFee(), payment.getTotalPayment());
+            totalSum += payment.getTotalPayment();
+            capitalSum += payment.getCapitalPayment();
+            interestSum += payment.getInterestPayment();
+            monthlyFeeSum += payment.getMonthlyFee();
+        }
+        if (end < size) {
+            result.reset(end);
+        }
+
+        CalculationInputParameters newParameters = GoalSeek.copy(parameters);
+        newParameters.setRate(rate);
+        newParameters.setDuration(end - 1);
+        result.setLoanTerms(schedule.getOpeningFee(), monthlyInstallment, newParameters);
+        double[] cashFlows = result.getTotalPaymentColumn();
+        double effectiveRate = solver.solve(cashFlowRuns, cashFlows, period, end, summary.getInterestRate() / 100.00);
+        iterations = solver.getIterations();
+        NpvKernel.netValues(cashFlows, end, effectiveRate, result.getNetValueColumn());
+
+        CalculationSummary newSummary = new CalculationSummary(result.getDate(end - 1) + ONE_MINUTE, end - 1,
+                effectiveRate * 100.00, Rounding.halfUp(rate, 2), Rounding.halfUp(totalSum, 2),
+                Rounding.halfUp(capitalSum, 2), Rounding.halfUp(interestSum, 2), Rounding.halfUp(monthlyFeeSum, 2),
+                Rounding.halfUp(schedule.getOpeningFee(), 2), annuitySum, monthlyInstallment);
+        return new CalculationResult(newParameters, result, newSummary);
+    }
+
+    /**
+     * Number of effective rate solver iterations made by the last recalc() call.
+     * @return number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Net present value kernel on the Vector API. The cash flows are split into blocks of the vector length L, so the
+ * polynomial sum(c[i] * x^i) is sum(x^l * P_l(x^L)) over the lanes l, where P_l has the cash flows of the lane as
+ * coefficients. All P_l are evaluated together by Horner scheme of y = x^L, one block per step, then the lanes are
+ * summed with their x^l factors. Cash flows after the last full block are evaluated by the scalar Horner scheme.
+ * Several rates are evaluated in the lanes of the discount factor vector by the usual Horner scheme.
+ * <p>
+ * Compiled by Java 17 and later with the jdk.incubator.vector module, see NpvKernel for the fallback.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class VectorNpvKernel implements NpvEvaluator {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    public void evaluate(double[] cashFlows, int from, int size, double rate, double[] result) {
+        double discount = 1 / (1 + rate / 12);
+        int count = size - from;
+        int blocks = count / LANES;
+        int tailFrom = from + blocks * LANES;
+        // the tail, its value is multiplied by x^(blocks * L)
+        double tailValue = .00;
+        double tailDerivative = .00;
+        for (int index = size - 1; index >= tailFrom; index -= 1) {
+            tailDerivative = tailDerivative * discount + tailValue;
+            tailValue = tailValue * discount + cashFlows[index];
+        }
+        double blockDiscount = power(discount, LANES);
+        DoubleVector blockDiscounts = DoubleVector.broadcast(SPECIES, blockDiscount);
+        DoubleVector value = DoubleVector.zero(SPECIES);
+        // derivative by y = x^L
+        DoubleVector derivative = DoubleVector.zero(SPECIES);
+        for (int offset = tailFrom - LANES; offset >= from; offset -= LANES) {
+            derivative = derivative.fma(blockDiscounts, value);
+            value = value.fma(blockDiscounts, DoubleVector.fromArray(SPECIES, cashFlows, offset));
+        }
+        // sum of x^l * P_l(y), derivative by x is l * x^(l - 1) * P_l(y) + x^l * P_l'(y) * L * x^(L - 1)
+        double blockDerivative = LANES * blockDiscount / discount;
+        double lanePower = 1.00;
+        double lanePowerDerivative = .00;
+        double sum = .00;
+        double sumDerivative = .00;
+        for (int lane = 0; lane < LANES; lane += 1) {
+            double laneValue = value.lane(lane);
+            sum += lanePower * laneValue;
+            sumDerivative += lanePowerDerivative * laneValue + lanePower * derivative.lane(lane) * blockDerivative;
+            lanePowerDerivative = lanePowerDerivative * discount + lanePower;
+            lanePower *= discount;
+        }
+        int tailPower = blocks * LANES;
+        double tailFactor = power(discount, tailPower);
+        sum += tailFactor * tailValue;
+        sumDerivative += tailFactor * tailDerivative + tailPower * tailFactor / discount * tailValue;
+        result[NpvKernel.VALUE] = sum;
+        result[NpvKernel.DERIVATIVE] = -sumDerivative * discount * discount / 12;
+    }
+
+    @Override
+    public double netPresentValue(double[] cashFlows, int size, double rate) {
+        double discount = 1 / (1 + rate / 12);
+        int blocks = size / LANES;
+        int tailFrom = blocks * LANES;
+        double tailValue = .00;
+        for (int index = size - 1; index >= tailFrom; index -= 1) {
+            tailValue = tailValue * discount + cashFlows[index];
+        }
+        DoubleVector blockDiscounts = DoubleVector.broadcast(SPECIES, power(discount, LANES));
+        DoubleVector value = DoubleVector.zero(SPECIES);
+        for (int offset = tailFrom - LANES; offset >= 0; offset -= LANES) {
+            value = value.fma(blockDiscounts, DoubleVector.fromArray(SPECIES, cashFlows, offset));
+        }
+        double lanePower = 1.00;
+        double sum = .00;
+        for (int lane = 0; lane < LANES; lane += 1) {
+            sum += lanePower * value.lane(lane);
+            lanePower *= discount;
+        }
+        return sum + power(discount, tailFrom) * tailValue;
+    }
+
+    @Override
+    public void evaluate(double[] cashFlows, int size, double[] rates, int count, double[] values,
+            double[] derivatives) {
+        int vectorCount = count - count % LANES;
+        for (int rate = 0; rate < vectorCount; rate += LANES) {
+            DoubleVector discount = DoubleVector.broadcast(SPECIES, 1.00)
+                    .div(DoubleVector.fromArray(SPECIES, rates, rate).div(12).add(1.00));
+            DoubleVector value = DoubleVector.zero(SPECIES);
+            DoubleVector derivative = DoubleVector.zero(SPECIES);
+            for (int index = size - 1; index >= 0; index -= 1) {
+                derivative = derivative.fma(discount, value);
+                value = value.fma(discount, DoubleVector.broadcast(SPECIES, cashFlows[index]));
+            }
+            value.intoArray(values, rate);
+            derivative.mul(discount).mul(discount).div(-12).intoArray(derivatives, rate);
+        }
+        NpvKernel.evaluateScalar(cashFlows, size, rates, vectorCount, count, values, derivatives);
+    }
+
+    private static double power(double value, int exponent) {
+        double result = 1.00;
+        double base = value;
+        for (int rest = exponent; rest > 0; rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class AmortizationBatchTest {
+    private static final String CSV_INPUT = "id,amount,rate,openingRate,monthlyRate,duration,startDate,"
+            + "repaymentDay,endGracePeriod\n"
+            + "a,10000,12,2,0.5,24,2012-03-10,15,\n"
+            + "b,5000,wrong,0,0,12,2012-03-10,15,\n"
+            + "\"c,1\",20000,18,1,0,36,2012-05-20,5,3\n";
+
+    private static String process(AmortizationBatch batch, String input) throws IOException {
+        StringWriter output = new StringWriter();
+        batch.process(new StringReader(input), output);
+        return output.toString();
+    }
+
+    /**
+     * Test method for summary of loans in CSV.
+     */
+    @Test
+    public void testSummaryCsv() throws IOException {
+        AmortizationBatch batch = new AmortizationBatch(AmortizationBatch.Format.CSV, AmortizationBatch.Format.CSV,
+                false, 2, 2);
+        String[] lines = process(batch, CSV_INPUT).split("\n");
+        assertEquals("Should be equal", 4, lines.length);
+        assertTrue(lines[0].startsWith("id,amount,"));
+        assertTrue(lines[1].startsWith("a,10000.0,24,12.0,"));
+        assertTrue(lines[2].startsWith("b,"));
+        assertTrue(lines[2].contains("wrong loan"));
+        assertTrue(lines[3].startsWith("\"c,1\",20000.0,36,18.0,"));
+
+        CalculationInputParameters parameters = new CalculationInputParameters(10000.00, 12.00, 2.00, .50, 24,
+                Date.from(LocalDate.of(2012, 3, 10).atStartOfDay(ZoneId.systemDefault()).toInstant()), 15, .00,
+                .00);
+        AmortizationCalculation calculation = new AmortizationCalculation(
+                new MonthlyCalendarFiller().createDateList(parameters), parameters);
+        CalculationSummary summary = calculation.calcSummary();
+        String[] values = AmortizationBatch.parseCsvLine(lines[1]);
+        assertEquals("Should be equal", String.valueOf(summary.getTotalPayment()), values[6]);
+        assertEquals("Should be equal", String.valueOf(summary.getInterestRate()), values[9]);
+        assertEquals("Should be equal", "", values[10]);
+    }
+
+    /**
+     * Test method for payment schedules of loans in NDJSON.
+     */
+    @Test
+    public void testScheduleNdjson() throws IOException {
+        AmortizationBatch batch = new AmortizationBatch(AmortizationBatch.Format.NDJSON,
+                AmortizationBatch.Format.NDJSON, true, 1, 16);
+        String input = "{\"id\": \"x\", \"amount\": 10000, \"rate\": 12, \"duration\": 12,"
+                + " \"startDate\": \"2012-03-10\", \"repaymentDay\": 15, \"endGracePeriod\": null}\n"
+                + "\n"
+                + "{\"id\": \"y\", \"amount\": 10000\n";
+        StringWriter output = new StringWriter();
+        AmortizationBatch.Statistics statistics = batch.process(new StringReader(input), output);
+        String[] lines = output.toString().split("\n");
+        assertEquals("Should be equal", 14, lines.length);
+        assertEquals("Should be equal", 2, statistics.getLoans());
+        assertEquals("Should be equal", 1, statistics.getFailed());
+        assertEquals("Should be equal", 14, statistics.getLines());
+        assertEquals("Should be equal", 0, statistics.getRateCacheHits());
+        assertTrue("Iterations - " + statistics.getRateIterations(), statistics.getRateIterationsPerLoan() > .00);
+        Map<String, String> first = AmortizationBatch.parseJsonLine(lines[0]);
+        assertEquals("Should be equal", "x", first.get("id"));
+        assertEquals("Should be equal", "0", first.get("index"));
+        assertEquals("Should be equal", "2012-03-10", first.get("date"));
+        assertEquals("Should be equal", "-10000.0", first.get("totalPayment"));
+        Map<String, String> last = AmortizationBatch.parseJsonLine(lines[12]);
+        assertEquals("Should be equal", "12", last.get("index"));
+        assertEquals("Should be equal", "0.0", last.get("debetOut"));
+        Map<String, String> failed = AmortizationBatch.parseJsonLine(lines[13]);
+        assertEquals("Should be equal", "2", failed.get("id"));
+        assertEquals("Should be equal", 2, failed.size());
+        assertTrue(failed.get("error").startsWith("wrong line"));
+    }
+
+    /**
+     * Test method for payment schedules of loans in CSV with a failed loan.
+     */
+    @Test
+    public void testScheduleCsv() throws IOException {
+        AmortizationBatch batch = new AmortizationBatch(AmortizationBatch.Format.CSV, AmortizationBatch.Format.CSV,
+                true, 2, 2);
+        String[] lines = process(batch, CSV_INPUT).split("\n");
+        assertEquals("Should be equal", 1 + 25 + 1 + 37, lines.length);
+        assertTrue(lines[0].endsWith(",netValue,error"));
+        assertTrue(lines[1].startsWith("a,0,2012-03-10,"));
+        assertTrue(lines[25].startsWith("a,24,"));
+        String[] failed = AmortizationBatch.parseCsvLine(lines[26]);
+        assertEquals("Should be equal", "b", failed[0]);
+        assertEquals("Should be equal", "", failed[1]);
+        assertTrue(failed[10].startsWith("wrong loan"));
+        assertTrue(lines[27].startsWith("\"c,1\",0,2012-05-20,"));
+    }
+
+    /**
+     * Test method for parseCsvLine().
+     */
+    @Test
+    public void testParseCsvLine() {
+        assertArrayEquals(new String[] {"a", "", "b,c", "d\"e"},
+                AmortizationBatch.parseCsvLine("a,,\"b,c\",\"d\"\"e\""));
+    }
+
+    /**
+     * Test method for parseJsonLine().
+     */
+    @Test
+    public void testParseJsonLine() {
+        Map<String, String> fields = AmortizationBatch.parseJsonLine(
+                " { \"a\" : \"x\\\"y\\u0041\", \"b\":-1.5e2,\"c\":true, \"d\": null } ");
+        assertEquals("Should be equal", "x\"yA", fields.get("a"));
+        assertEquals("Should be equal", "-1.5e2", fields.get("b"));
+        assertEquals("Should be equal", "true", fields.get("c"));
+        assertNull(fields.get("d"));
+        assertTrue(AmortizationBatch.parseJsonLine("{}").isEmpty());
+        assertEquals("Should be equal", 4, fields.size());
+    }
+}
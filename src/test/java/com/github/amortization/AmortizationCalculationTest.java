@@ -18,8 +18,16 @@
 package com.github.amortization;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
@@ -65,4 +73,292 @@ public class AmortizationCalculationTest extends AbstractTarificationTestCase {
         assertEquals("Should be equal", 1012.94D, amortizationCalculation.getAnnuitySum(), 2);
         assertEquals("Should be equal", 1148.9D, amortizationCalculation.getMonthlyInstallment(), 2);
     }
+
+    /**
+     * Test method for effective rate calculated by calc().
+     */
+    @Test
+    public void testCalcEffectRate() {
+        CalculationInputParameters params = createObjectFromData("testCalcEffectRate",
+                CalculationInputParameters.class);
+        List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+        amortizationCalculation = new AmortizationCalculation(dates, params);
+        amortizationCalculation.calc();
+        assertEquals("Should be equal", 64.37845819981D, amortizationCalculation.getTotal().getInterestRate(), 1e-9);
+        double netValue = .00;
+        for (Payment payment : amortizationCalculation.getPayments()) {
+            netValue += payment.getNetValue();
+        }
+        assertEquals("Net values should be balanced", 0D, netValue, 1e-6);
+    }
+
+    /**
+     * Test method for getSchedule() and the payment list view.
+     */
+    @Test
+    public void testGetSchedule() {
+        CalculationInputParameters params = createObjectFromData("testCalcEffectRate",
+                CalculationInputParameters.class);
+        amortizationCalculation = new AmortizationCalculation(new MonthlyCalendarFiller().createDateList(params),
+                params);
+        amortizationCalculation.calc();
+        PaymentSchedule schedule = amortizationCalculation.getSchedule();
+        List<Payment> payments = amortizationCalculation.getPayments();
+        assertEquals("Should be equal", 13, schedule.size());
+        assertEquals("Should be equal", schedule.size(), payments.size());
+        assertSame("Should be the same", payments.get(5), payments.get(5));
+        for (int index = 1; index < schedule.size(); index += 1) {
+            Payment payment = payments.get(index);
+            assertEquals("Should be equal", schedule.getDate(index), payment.getDate().getTime());
+            assertEquals("Should be equal", schedule.getCapitalPayment(index), payment.getCapitalPayment(), 0D);
+            assertEquals("Should be equal", schedule.getNetValue(index), payment.getNetValue(), 0D);
+            if (index + 1 < schedule.size()) {
+                assertEquals("Should be equal", schedule.getDebetIn(index + 1), payment.getDebetOut(), 0D);
+            }
+        }
+        assertEquals("Should be equal", -params.getAmount(), payments.get(0).getTotalPayment(), 0D);
+    }
+
+    /**
+     * Test method for setRoundValues() after the constructor.
+     */
+    @Test
+    public void testSetRoundValues() {
+        CalculationInputParameters params = createObjectFromData("testCalcEffectRate",
+                CalculationInputParameters.class);
+        List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+        amortizationCalculation = new AmortizationCalculation(dates, params);
+        double roundedInstallment = amortizationCalculation.getMonthlyInstallment();
+        assertEquals("Should be equal", Math.ceil(roundedInstallment), roundedInstallment, 0D);
+        amortizationCalculation.setRoundValues(false);
+        double installment = amortizationCalculation.getMonthlyInstallment();
+        assertTrue("Installment - " + installment, installment < roundedInstallment);
+        assertEquals("Should be equal", roundedInstallment, Math.ceil(installment), 0D);
+        assertEquals("Should be equal", installment,
+                new AmortizationCalculation(dates, params, false).getMonthlyInstallment(), 0D);
+        amortizationCalculation.setRoundValues(true);
+        assertEquals("Should be equal", roundedInstallment, amortizationCalculation.getMonthlyInstallment(), 0D);
+    }
+
+    /**
+     * Test method for calcSummary().
+     */
+    @Test
+    public void testCalcSummary() {
+        List<CalculationInputParameters> loans = createListFromData("testCalcSummary",
+                CalculationInputParameters.class);
+        for (CalculationInputParameters params : loans) {
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+            amortizationCalculation = new AmortizationCalculation(dates, params);
+            CalculationSummary summary = amortizationCalculation.calcSummary();
+            assertNull("Should not be calculated", amortizationCalculation.getSchedule());
+            amortizationCalculation.calc();
+            Payment total = amortizationCalculation.getTotal();
+            assertEquals("Should be equal", total.getInterestRate(), summary.getInterestRate(), 0D);
+            assertEquals("Should be equal", total.getLoanCost(), summary.getLoanCost(), 0D);
+            assertEquals("Should be equal", total.getTotalPayment(), summary.getTotalPayment(), 0D);
+            assertEquals("Should be equal", total.getCapitalPayment(), summary.getCapitalPayment(), 0D);
+            assertEquals("Should be equal", total.getInterestPayment(), summary.getInterestPayment(), 0D);
+            assertEquals("Should be equal", total.getTotalInterestPayment(), summary.getTotalInterestPayment(), 0D);
+            assertEquals("Should be equal", total.getMonthlyFee(), summary.getMonthlyFee(), 0D);
+            assertEquals("Should be equal", total.getOpeningFee(), summary.getOpeningFee(), 0D);
+            assertEquals("Should be equal", total.getAnnuitySum(), summary.getAnnuitySum(), 0D);
+            assertEquals("Should be equal", total.getTotalInstalmentPayment(),
+                    summary.getTotalInstalmentPayment(), 0D);
+            assertEquals("Should be equal", total.getNominalRate(), summary.getNominalRate(), 0D);
+            assertEquals("Should be equal", total.getDuration(), summary.getDuration());
+            assertEquals("Should be equal", total.getDate(), summary.getDate());
+        }
+    }
+
+    /**
+     * Test method for stream().
+     */
+    @Test
+    public void testStream() {
+        List<CalculationInputParameters> loans = createListFromData("testCalcSummary",
+                CalculationInputParameters.class);
+        for (CalculationInputParameters params : loans) {
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+            amortizationCalculation = new AmortizationCalculation(dates, params);
+            assertEquals("Should be equal", 3, amortizationCalculation.stream().limit(3).count());
+            assertNull("Should not be drained", amortizationCalculation.getSummary());
+            List<Payment> streamed = amortizationCalculation.stream().collect(Collectors.toList());
+            CalculationSummary summary = amortizationCalculation.getSummary();
+            assertNull("Should not be calculated", amortizationCalculation.getSchedule());
+
+            CalculationSummary expectedSummary = amortizationCalculation.calcSummary();
+            assertEquals("Should be equal", expectedSummary.getInterestRate(), summary.getInterestRate(), 0D);
+            assertEquals("Should be equal", expectedSummary.getLoanCost(), summary.getLoanCost(), 0D);
+            amortizationCalculation.calc();
+            List<Payment> payments = amortizationCalculation.getPayments();
+            assertEquals("Should be equal", payments.size(), streamed.size());
+            for (int index = 0; index < payments.size(); index += 1) {
+                Payment expected = payments.get(index);
+                Payment payment = streamed.get(index);
+                assertEquals("Should be equal", expected.getDate(), payment.getDate());
+                assertEquals("Should be equal", expected.getDays(), payment.getDays());
+                assertEquals("Should be equal", expected.getDebetIn(), payment.getDebetIn(), 0D);
+                assertEquals("Should be equal", expected.getDebetOut(), payment.getDebetOut(), 0D);
+                assertEquals("Should be equal", expected.getCapitalPayment(), payment.getCapitalPayment(), 0D);
+                assertEquals("Should be equal", expected.getInterestPayment(), payment.getInterestPayment(), 0D);
+                assertEquals("Should be equal", expected.getMonthlyFee(), payment.getMonthlyFee(), 0D);
+                assertEquals("Should be equal", expected.getTotalPayment(), payment.getTotalPayment(), 0D);
+                assertEquals("Should be equal", expected.getTotalInstalmentPayment(),
+                        payment.getTotalInstalmentPayment(), 0D);
+                assertEquals("Should not be calculated", 0D, payment.getNetValue(), 0D);
+            }
+        }
+    }
+
+    /**
+     * Test method for stream() with two streams open on the same instance.
+     */
+    @Test
+    public void testOverlappingStreams() {
+        List<CalculationInputParameters> loans = createListFromData("testCalcSummary",
+                CalculationInputParameters.class);
+        for (CalculationInputParameters params : loans) {
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+            amortizationCalculation = new AmortizationCalculation(dates, params);
+            CalculationSummary expected = amortizationCalculation.calcSummary();
+            int size = amortizationCalculation.stream().collect(Collectors.toList()).size();
+
+            Stream<Payment> opened = amortizationCalculation.stream();
+            assertEquals("Should be equal", size, amortizationCalculation.stream().collect(Collectors.toList()).size());
+            assertEquals("Should be equal", size, opened.collect(Collectors.toList()).size());
+            assertEquals("Should be equal", expected.getInterestRate(),
+                    amortizationCalculation.getSummary().getInterestRate(), 0D);
+
+            Iterator<Payment> first = amortizationCalculation.stream().iterator();
+            Iterator<Payment> second = amortizationCalculation.stream().iterator();
+            int count = 0;
+            while (first.hasNext()) {
+                first.next();
+                count += 1;
+                if (count % 2 == 0) {
+                    second.next();
+                }
+            }
+            assertEquals("Should be equal", size, count);
+            assertEquals("Should be equal", expected.getInterestRate(),
+                    amortizationCalculation.getSummary().getInterestRate(), 0D);
+            while (second.hasNext()) {
+                second.next();
+                count -= 1;
+            }
+            assertEquals("Should be equal", size / 2, count);
+            CalculationSummary summary = amortizationCalculation.getSummary();
+            assertEquals("Should be equal", expected.getInterestRate(), summary.getInterestRate(), 0D);
+            assertEquals("Should be equal", expected.getLoanCost(), summary.getLoanCost(), 0D);
+        }
+    }
+
+    /**
+     * Test method for repeated calc() calls.
+     */
+    @Test
+    public void testCalcTwice() {
+        CalculationInputParameters params = createObjectFromData("testCalcEffectRate",
+                CalculationInputParameters.class);
+        amortizationCalculation = new AmortizationCalculation(new MonthlyCalendarFiller().createDateList(params),
+                params);
+        amortizationCalculation.calc();
+        Payment total = amortizationCalculation.getTotal();
+        double totalPayment = total.getTotalPayment();
+        double capitalPayment = total.getCapitalPayment();
+        double monthlyFee = total.getMonthlyFee();
+        double interestRate = total.getInterestRate();
+        double firstPayment = amortizationCalculation.getPayments().get(1).getTotalPayment();
+        amortizationCalculation.calc();
+        assertSame("Should be reused", total, amortizationCalculation.getTotal());
+        assertEquals("Should be equal", totalPayment, amortizationCalculation.getTotal().getTotalPayment(), 0D);
+        assertEquals("Should be equal", capitalPayment, amortizationCalculation.getTotal().getCapitalPayment(), 0D);
+        assertEquals("Should be equal", monthlyFee, amortizationCalculation.getTotal().getMonthlyFee(), 0D);
+        assertEquals("Should be equal", interestRate, amortizationCalculation.getTotal().getInterestRate(), 0D);
+        assertEquals("Should be equal", firstPayment, amortizationCalculation.getPayments().get(1).getTotalPayment(),
+                0D);
+    }
+
+    /**
+     * Test method for getEndGracePeriodDate() which is kept after reset() and calc() of the next loan.
+     */
+    @Test
+    public void testEndGracePeriodDate() {
+        CalculationInputParameters params = LoanFixtures.createLoan(100000.00, 18.00, 24);
+        params.setEndGracePeriod(Long.valueOf(3));
+        amortizationCalculation = new AmortizationCalculation(new MonthlyCalendarFiller().createDateList(params),
+                params);
+        amortizationCalculation.calc();
+        Date endGracePeriodDate = amortizationCalculation.getEndGracePeriodDate();
+        long time = endGracePeriodDate.getTime();
+        assertEquals("Should be equal", amortizationCalculation.getPayments().get(3).getDate().getTime(), time);
+
+        CalculationInputParameters nextParams = LoanFixtures.createLoan(100000.00, 18.00, 24);
+        nextParams.setStartDate(new Date(LoanFixtures.START_DATE + 40 * LoanFixtures.ONE_DAY));
+        nextParams.setEndGracePeriod(Long.valueOf(3));
+        amortizationCalculation.reset(new MonthlyCalendarFiller().createDateList(nextParams), nextParams);
+        amortizationCalculation.calc();
+        assertEquals("Should be equal", time, endGracePeriodDate.getTime());
+        assertTrue("Should be later", amortizationCalculation.getEndGracePeriodDate().getTime() > time);
+    }
+
+    /**
+     * Test method for reset() with loans of different duration.
+     */
+    @Test
+    public void testReset() {
+        List<CalculationInputParameters> loans = createListFromData("testCalcSummary",
+                CalculationInputParameters.class);
+        AmortizationCalculation reusedCalculation = null;
+        for (int index = 0; index < loans.size() * 2; index += 1) {
+            CalculationInputParameters params = loans.get((loans.size() - 1 + index) % loans.size());
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+            if (reusedCalculation == null) {
+                reusedCalculation = new AmortizationCalculation(dates, params);
+            } else {
+                reusedCalculation.reset(dates, params);
+            }
+            reusedCalculation.calc();
+            amortizationCalculation = new AmortizationCalculation(dates, params);
+            amortizationCalculation.calc();
+            Payment total = amortizationCalculation.getTotal();
+            assertEquals("Should be equal", total.getInterestRate(),
+                    reusedCalculation.getTotal().getInterestRate(), 0D);
+            assertEquals("Should be equal", total.getTotalPayment(),
+                    reusedCalculation.getTotal().getTotalPayment(), 0D);
+            assertEquals("Should be equal", total.getDate(), reusedCalculation.getTotal().getDate());
+            List<Payment> payments = amortizationCalculation.getPayments();
+            List<Payment> reusedPayments = reusedCalculation.getPayments();
+            assertEquals("Should be equal", payments.size(), reusedPayments.size());
+            for (int row = 0; row < payments.size(); row += 1) {
+                assertEquals("Should be equal", payments.get(row).getDate(), reusedPayments.get(row).getDate());
+                assertEquals("Should be equal", payments.get(row).getDebetOut(),
+                        reusedPayments.get(row).getDebetOut(), 0D);
+                assertEquals("Should be equal", payments.get(row).getCapitalPayment(),
+                        reusedPayments.get(row).getCapitalPayment(), 0D);
+                assertEquals("Should be equal", payments.get(row).getNetValue(),
+                        reusedPayments.get(row).getNetValue(), 0D);
+            }
+        }
+    }
+
+    /**
+     * Test method for the calendar of the loan with java.sql.Date start date.
+     */
+    @Test
+    public void testSqlStartDate() {
+        java.util.Date start = new java.util.Date(1231236000000L);
+        CalculationInputParameters params = new CalculationInputParameters(100000.00, 18.00, 2.00, 1.50, 24,
+                start, 15, .00, .00);
+        CalculationInputParameters sqlParams = new CalculationInputParameters(100000.00, 18.00, 2.00, 1.50, 24,
+                new java.sql.Date(start.getTime()), 15, .00, .00);
+        List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(params);
+        List<PaymentDate> sqlDates = new MonthlyCalendarFiller().createDateList(sqlParams);
+        assertEquals("Should be equal", dates.size(), sqlDates.size());
+        for (int index = 0; index < dates.size(); index += 1) {
+            assertEquals("Should be equal", dates.get(index).getDate(), sqlDates.get(index).getDate());
+            assertEquals("Should be equal", dates.get(index).getLocalDate(), sqlDates.get(index).getLocalDate());
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class AmortizationEngineTest extends AbstractTarificationTestCase {
+    private static final int THREADS = 8;
+    private static final int REPEATS = 200;
+
+    /**
+     * Test method for calculate() on the engine shared by threads.
+     */
+    @Test
+    public void testCalculate() throws Exception {
+        final List<CalculationInputParameters> loans = createListFromData("testCalculate",
+                CalculationInputParameters.class);
+        final AmortizationEngine engine = new AmortizationEngine(true, new PaymentCalendarCache());
+        List<Payment> expected = new ArrayList<Payment>();
+        for (CalculationInputParameters params : loans) {
+            AmortizationCalculation calculation = new AmortizationCalculation(
+                    new MonthlyCalendarFiller().createDateList(params), params);
+            calculation.calc();
+            expected.add(calculation.getTotal());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<CalculationResult>>> futures = new ArrayList<Future<List<CalculationResult>>>();
+            for (int thread = 0; thread < THREADS; thread += 1) {
+                futures.add(executor.submit(() -> {
+                    List<CalculationResult> results = new ArrayList<CalculationResult>();
+                    for (int index = 0; index < REPEATS * loans.size(); index += 1) {
+                        results.add(engine.calculate(loans.get(index % loans.size())));
+                    }
+                    return results;
+                }));
+            }
+            for (Future<List<CalculationResult>> future : futures) {
+                List<CalculationResult> results = future.get();
+                for (int index = 0; index < results.size(); index += 1) {
+                    CalculationResult result = results.get(index);
+                    Payment total = expected.get(index % loans.size());
+                    assertTrue(result.isSuccessful());
+                    assertEquals("Should be equal", total.getInterestRate(),
+                            result.getSummary().getInterestRate(), 0D);
+                    assertEquals("Should be equal", total.getTotalPayment(),
+                            result.getSummary().getTotalPayment(), 0D);
+                    assertEquals("Should be equal", total.getTotalInterestPayment(),
+                            result.getSummary().getTotalInterestPayment(), 0D);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test method for the result which is not changed by the caller.
+     */
+    @Test
+    public void testResultIsCopied() {
+        CalculationInputParameters params = createListFromData("testCalculate", CalculationInputParameters.class)
+                .get(0);
+        CalculationResult result = new AmortizationEngine().calculate(params);
+        double amount = params.getAmount();
+        long startDate = params.getStartDate().getTime();
+        double totalPayment = result.getPayments().get(1).getTotalPayment();
+
+        params.setAmount(amount * 2);
+        params.getStartDate().setTime(0);
+        result.getParameters().setAmount(amount * 3);
+        result.getParameters().getStartDate().setTime(0);
+        result.getPayments().get(1).setTotalPayment(.00);
+        assertEquals("Should be equal", amount, result.getParameters().getAmount(), 0D);
+        assertEquals("Should be equal", startDate, result.getParameters().getStartDate().getTime());
+        assertEquals("Should be equal", totalPayment, result.getPayments().get(1).getTotalPayment(), 0D);
+        try {
+            result.getPayments().clear();
+            fail("Should not be changed");
+        } catch (UnsupportedOperationException ex) {
+            assertEquals("Should be equal", params.getDuration() + 1, result.getPayments().size());
+        }
+    }
+
+    /**
+     * Test method for the schedule of the result which is not changed by one of its readers.
+     */
+    @Test
+    public void testScheduleIsReadOnly() {
+        CalculationInputParameters params = createListFromData("testCalculate", CalculationInputParameters.class)
+                .get(0);
+        CalculationResult result = new AmortizationEngine().calculate(params);
+        List<Payment> firstReader = result.getSchedule().asPayments();
+        List<Payment> secondReader = result.getSchedule().asPayments();
+        double totalPayment = secondReader.get(1).getTotalPayment();
+        long date = secondReader.get(1).getDate().getTime();
+
+        firstReader.get(1).setTotalPayment(.00);
+        firstReader.get(1).getDate().setTime(0);
+        assertEquals("Should be equal", totalPayment, secondReader.get(1).getTotalPayment(), 0D);
+        assertEquals("Should be equal", date, secondReader.get(1).getDate().getTime());
+        assertEquals("Should be equal", totalPayment, result.getSchedule().getTotalPayment(1), 0D);
+        assertNotSame("Should be created on every access", firstReader.get(1), firstReader.get(1));
+    }
+}
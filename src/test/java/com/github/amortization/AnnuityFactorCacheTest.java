@@ -0,0 +1,70 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class AnnuityFactorCacheTest {
+    private static final int COUNT = 10000;
+
+    /**
+     * Test method for getFactor() against the annuity formula.
+     */
+    @Test
+    public void testGetFactor() {
+        AnnuityFactorCache cache = new AnnuityFactorCache(100);
+        Random random = new Random(1);
+        for (int index = 0; index < COUNT; index += 1) {
+            double rate = random.nextInt(5000) / 100.00 + .01;
+            int duration = random.nextInt(360) + 1;
+            double expected = (Math.pow(1 + (rate / 12 / 100.00), duration) * (rate / 12 / 100.00))
+                    / (Math.pow(1 + (rate / 12 / 100.00), duration) - 1);
+            assertEquals("Should be equal", Double.valueOf(expected),
+                    Double.valueOf(cache.getFactor(rate, duration)));
+            assertEquals("Should be equal", Double.valueOf(expected),
+                    Double.valueOf(cache.getFactor(rate, duration)));
+        }
+        assertEquals("Should be bounded", 100, cache.size());
+        assertEquals("Should be equal", 2 * COUNT, cache.getMissCount() + cache.getHitCount());
+    }
+
+    /**
+     * Test method for preload() and statistics.
+     */
+    @Test
+    public void testPreload() {
+        AnnuityFactorCache cache = new AnnuityFactorCache(AnnuityFactorCache.DEFAULT_MAXIMUM_SIZE);
+        cache.preload(new double[] {12.5, 15.5, 18.0}, new int[] {12, 24, 36, 48});
+        assertEquals("Should be equal", 12, cache.size());
+        cache.getFactor(15.5, 24);
+        cache.getFactor(18.0, 48);
+        cache.getFactor(18.0, 60);
+        cache.getFactor(18.0, 60);
+        assertEquals("Should be equal", 3, cache.getHitCount());
+        assertEquals("Should be equal", 1, cache.getMissCount());
+        assertEquals("Should be equal", 13, cache.size());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class CalculationMetricsTest {
+    private final CalculationMetrics metrics = new CalculationMetrics();
+
+    @After
+    public void tearDown() throws Exception {
+        metrics.unregister();
+    }
+
+    /**
+     * Test method for metrics collected by the installed listener.
+     */
+    @Test
+    public void testInstall() throws Exception {
+        metrics.install().register();
+        AmortizationEngine engine = new AmortizationEngine(true, new PaymentCalendarCache());
+        for (int index = 0; index < 10; index += 1) {
+            CalculationInputParameters parameters = new CalculationInputParameters(100000.00, 18.00, 2.00, 1.50,
+                    12 + index % 2 * 12, new Date(1231236000000L), 15, .00, .00);
+            assertTrue(engine.calculate(parameters).isSuccessful());
+        }
+        assertEquals("Should be equal", 10, metrics.getPlanCount());
+        assertEquals("Should be equal", 2, metrics.getCalendarCount());
+        assertEquals("Should be equal", 10, metrics.getEffectiveRateCount());
+        assertEquals("Should be equal", 0, metrics.getSolverFailures());
+        assertTrue(metrics.getSolverMeanIterations() >= 1);
+        assertEquals("Should be equal", 8, metrics.getCalendarCacheHits());
+        assertEquals("Should be equal", .8, metrics.getCalendarCacheHitRate(), 1e-12);
+        assertTrue(metrics.getPlanP99Micros() >= metrics.getPlanP50Micros());
+        assertTrue(metrics.getPlanP50Micros() > 0);
+
+        Object planCount = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName(CalculationMetrics.OBJECT_NAME), "PlanCount");
+        assertEquals("Should be equal", 10L, planCount);
+
+        metrics.reset();
+        assertEquals("Should be equal", 0, metrics.getPlanCount());
+        metrics.unregister();
+        assertNull("Should be switched off", CalculationInstrumentation.getListener());
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class CompactCodecTest {
+    private static final ZoneId[] ZONES = {ZoneId.systemDefault(), ZoneOffset.UTC, ZoneId.of("Europe/Kiev"),
+        ZoneId.of("America/St_Johns"), ZoneId.of("America/Sao_Paulo")};
+
+    private static CalculationInputParameters createParameters() {
+        CalculationInputParameters parameters = LoanFixtures.createLoan(12345.67, 18.00, 36);
+        parameters.setDownPayment(100.00);
+        parameters.setEndGracePeriod(Long.valueOf(3));
+        return parameters;
+    }
+
+    private static List<Payment> createPayments() {
+        CalculationInputParameters parameters = createParameters();
+        AmortizationCalculation calculation = new AmortizationCalculation(
+                new MonthlyCalendarFiller().createDateList(parameters), parameters);
+        calculation.calc();
+        List<Payment> payments = new ArrayList<Payment>(calculation.getPayments());
+        payments.add(calculation.getTotal());
+        return payments;
+    }
+
+    private static void assertBits(double expected, double actual) {
+        assertEquals("Should be equal", Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    private static void assertDate(Date expected, Date actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else {
+            assertEquals("Should be equal", expected.getTime(), actual.getTime());
+        }
+    }
+
+    private static void assertPayment(Payment expected, Payment actual) {
+        assertDate(expected.getDate(), actual.getDate());
+        assertBits(expected.getTotalPayment(), actual.getTotalPayment());
+        assertBits(expected.getCoreAmount(), actual.getCoreAmount());
+        assertBits(expected.getCapitalPayment(), actual.getCapitalPayment());
+        assertBits(expected.getInterestPayment(), actual.getInterestPayment());
+        assertBits(expected.getTotalInterestPayment(), actual.getTotalInterestPayment());
+        assertBits(expected.getOpeningFee(), actual.getOpeningFee());
+        assertBits(expected.getMonthlyFee(), actual.getMonthlyFee());
+        assertBits(expected.getMonthlyFeePayment(), actual.getMonthlyFeePayment());
+        assertBits(expected.getInterestRate(), actual.getInterestRate());
+        assertBits(expected.getLoanCost(), actual.getLoanCost());
+        assertEquals("Should be equal", expected.getDaysPerMonth(), actual.getDaysPerMonth());
+        assertEquals("Should be equal", expected.getDays(), actual.getDays());
+        assertBits(expected.getDebetIn(), actual.getDebetIn());
+        assertBits(expected.getDebetOut(), actual.getDebetOut());
+        assertBits(expected.getNetValue(), actual.getNetValue());
+        assertEquals("Should be equal", expected.getDuration(), actual.getDuration());
+        assertBits(expected.getAnnuitySum(), actual.getAnnuitySum());
+        assertBits(expected.getTotalInstalmentPayment(), actual.getTotalInstalmentPayment());
+        assertBits(expected.getOpeningFeeRate(), actual.getOpeningFeeRate());
+        assertBits(expected.getMonthlyFeeRate(), actual.getMonthlyFeeRate());
+        assertBits(expected.getNominalRate(), actual.getNominalRate());
+        assertEquals("Should be equal", expected.getInsurancePayment(), actual.getInsurancePayment());
+    }
+
+    private static void assertParameters(CalculationInputParameters expected, CalculationInputParameters actual) {
+        assertBits(expected.getAmount(), actual.getAmount());
+        assertBits(expected.getCoreAmount(), actual.getCoreAmount());
+        assertBits(expected.getRate(), actual.getRate());
+        assertBits(expected.getOpeningRate(), actual.getOpeningRate());
+        assertBits(expected.getOpeningFeePayment(), actual.getOpeningFeePayment());
+        assertBits(expected.getMonthlyRate(), actual.getMonthlyRate());
+        assertBits(expected.getAnnuityExample(), actual.getAnnuityExample());
+        assertEquals("Should be equal", expected.getDuration(), actual.getDuration());
+        assertDate(expected.getStartDate(), actual.getStartDate());
+        assertEquals("Should be equal", expected.getRepaymentDay(), actual.getRepaymentDay());
+        assertBits(expected.getDownPayment(), actual.getDownPayment());
+        assertBits(expected.getInstallment(), actual.getInstallment());
+        assertBits(expected.getTotalPrice(), actual.getTotalPrice());
+        assertEquals("Should be equal", expected.getTypefirstduedatecal(), actual.getTypefirstduedatecal());
+        assertEquals("Should be equal", expected.getEndGracePeriod(), actual.getEndGracePeriod());
+    }
+
+    /**
+     * Test method for payments of the plan and the total in several time zones.
+     */
+    @Test
+    public void testPayments() {
+        List<Payment> payments = createPayments();
+        Payment payment = payments.get(1);
+        payment.setInsurancePayment(new BigDecimal("12.345"));
+        payments.get(2).setInsurancePayment(null);
+        payments.get(3).setInsurancePayment(new BigDecimal("-123456789012345678901234567890.5"));
+        payments.get(4).setInsurancePayment(new BigDecimal("0.00"));
+        payments.get(5).setDate(null);
+        for (ZoneId zone : ZONES) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            CompactEncoder encoder = new CompactEncoder(buffer, zone);
+            encoder.writePayments(payments);
+            encoder.writePayment(payment);
+            buffer.flip();
+            CompactDecoder decoder = new CompactDecoder(buffer, zone);
+            List<Payment> decoded = decoder.readPayments();
+            assertEquals("Should be equal", payments.size(), decoded.size());
+            for (int index = 0; index < payments.size(); index += 1) {
+                assertPayment(payments.get(index), decoded.get(index));
+            }
+            assertPayment(payment, decoder.readPayment());
+            assertEquals("Should be equal", 0, buffer.remaining());
+        }
+    }
+
+    /**
+     * Test method for values which are not whole cents and for dates with time.
+     */
+    @Test
+    public void testSpecialValues() {
+        double[] values = {-.00, .00, .1 + .2, 1e300, -1e-300, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.MIN_VALUE, 92233720368547758.07, -12345.67, 25.123456789012345,
+            Long.MIN_VALUE / 100.00};
+        long[] dates = {0L, -1L, LoanFixtures.START_DATE + 1, LoanFixtures.START_DATE + 12345678L, 253402300799999L,
+            -62135596800000L};
+        for (ZoneId zone : ZONES) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+            CompactEncoder encoder = new CompactEncoder(buffer, zone);
+            for (int index = 0; index < values.length; index += 1) {
+                Payment payment = new Payment();
+                payment.setNetValue(values[index]);
+                payment.setDays(Long.MIN_VALUE + index);
+                payment.setDuration(Long.MAX_VALUE - index);
+                payment.setDate(new Date(dates[index % dates.length]));
+                encoder.writePayment(payment);
+            }
+            buffer.flip();
+            CompactDecoder decoder = new CompactDecoder(buffer, zone);
+            for (int index = 0; index < values.length; index += 1) {
+                Payment payment = decoder.readPayment();
+                assertBits(values[index], payment.getNetValue());
+                assertEquals("Should be equal", Long.MIN_VALUE + index, payment.getDays());
+                assertEquals("Should be equal", Long.MAX_VALUE - index, payment.getDuration());
+                assertEquals("Should be equal", dates[index % dates.length], payment.getDate().getTime());
+            }
+        }
+    }
+
+    /**
+     * Test method for the default zone, records do not depend on the default time zone.
+     */
+    @Test
+    public void testDefaultZone() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        List<Payment> payments = createPayments();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Europe/Kiev"));
+            CompactEncoder encoder = new CompactEncoder(buffer);
+            assertEquals("Should be equal", ZoneOffset.UTC, encoder.getZone());
+            encoder.writePayments(payments);
+            buffer.flip();
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
+            List<Payment> decoded = new CompactDecoder(buffer).readPayments();
+            assertEquals("Should be equal", payments.size(), decoded.size());
+            for (int index = 0; index < payments.size(); index += 1) {
+                assertPayment(payments.get(index), decoded.get(index));
+            }
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    /**
+     * Test method for input parameters and payment dates.
+     */
+    @Test
+    public void testParametersAndPaymentDates() {
+        CalculationInputParameters parameters = createParameters();
+        CalculationInputParameters empty = new CalculationInputParameters();
+        empty.setStartDate(null);
+        CalculationInputParameters typed = createParameters();
+        typed.setTypefirstduedatecal("тип");
+        typed.setAnnuityExample(1.0 / 3);
+        List<PaymentDate> paymentDates = new MonthlyCalendarFiller().createDateList(parameters);
+        paymentDates.add(new PaymentDate());
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        CompactEncoder encoder = new CompactEncoder(buffer);
+        encoder.writeParameters(parameters);
+        encoder.writeParameters(empty);
+        encoder.writeParameters(typed);
+        encoder.writePaymentDates(paymentDates);
+        encoder.writePaymentDate(paymentDates.get(1));
+        buffer.flip();
+        CompactDecoder decoder = new CompactDecoder(buffer);
+        assertParameters(parameters, decoder.readParameters());
+        assertParameters(empty, decoder.readParameters());
+        assertParameters(typed, decoder.readParameters());
+        List<PaymentDate> decoded = decoder.readPaymentDates();
+        decoded.add(decoder.readPaymentDate());
+        paymentDates.add(paymentDates.get(1));
+        assertEquals("Should be equal", paymentDates.size(), decoded.size());
+        for (int index = 0; index < paymentDates.size(); index += 1) {
+            assertDate(paymentDates.get(index).getDate(), decoded.get(index).getDate());
+            assertEquals("Should be equal", paymentDates.get(index).getDaysBefore(),
+                    decoded.get(index).getDaysBefore());
+            assertEquals("Should be equal", paymentDates.get(index).getDaysPerMonth(),
+                    decoded.get(index).getDaysPerMonth());
+        }
+    }
+
+    /**
+     * Test method for records which do not fit into the buffer or come in parts.
+     */
+    @Test
+    public void testStreaming() {
+        List<Payment> payments = createPayments();
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        CompactEncoder encoder = new CompactEncoder(buffer);
+        ByteBuffer stream = ByteBuffer.allocate(1 << 16);
+        for (Payment payment : payments) {
+            try {
+                encoder.writePayment(payment);
+            } catch (BufferOverflowException ex) {
+                // the buffer is drained and the record is written again
+                buffer.flip();
+                stream.put(buffer);
+                buffer.clear();
+                encoder.writePayment(payment);
+            }
+        }
+        buffer.flip();
+        stream.put(buffer);
+        stream.flip();
+        buffer.clear();
+        try {
+            encoder.writePayments(payments);
+            fail("BufferOverflowException expected");
+        } catch (BufferOverflowException ex) {
+            assertEquals("Should be equal", 0, buffer.position());
+        }
+
+        // bytes come one by one, the incomplete record is read again
+        ByteBuffer input = ByteBuffer.allocate(stream.remaining());
+        input.flip();
+        CompactDecoder decoder = new CompactDecoder(input);
+        int index = 0;
+        while (index < payments.size()) {
+            try {
+                assertPayment(payments.get(index), decoder.readPayment());
+                index += 1;
+            } catch (BufferUnderflowException ex) {
+                input.compact();
+                input.put(stream.get());
+                input.flip();
+            }
+        }
+        assertEquals("Should be equal", 0, stream.remaining());
+    }
+
+    /**
+     * Test method for wrong records.
+     */
+    @Test
+    public void testWrongRecords() {
+        try {
+            new CompactDecoder(ByteBuffer.wrap(new byte[] {8})).readPayment();
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Should be equal", "unknown flags: 8", ex.getMessage());
+        }
+        byte[] bytes = new byte[12];
+        Arrays.fill(bytes, (byte) 0x80);
+        try {
+            new CompactDecoder(ByteBuffer.wrap(bytes)).readPayments();
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Should be equal", "varint is longer than 10 bytes", ex.getMessage());
+        }
+        try {
+            new CompactDecoder(ByteBuffer.wrap(new byte[] {0, 3})).readPayment();
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Should be equal", "wrong amount tag: 3", ex.getMessage());
+        }
+    }
+
+    /**
+     * Test method for the size against Java serialization.
+     */
+    @Test
+    public void testSize() throws IOException {
+        List<Payment> payments = createPayments();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        new CompactEncoder(buffer).writePayments(payments);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new ArrayList<Payment>(payments));
+        }
+        assertTrue("Size - " + buffer.position() + " of " + bytes.size(), buffer.position() * 3 < bytes.size());
+    }
+}
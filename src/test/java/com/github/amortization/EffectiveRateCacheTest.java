@@ -0,0 +1,91 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class EffectiveRateCacheTest {
+    /**
+     * Test method for getRate() and put().
+     */
+    @Test
+    public void testGetRate() {
+        EffectiveRateCache cache = new EffectiveRateCache(2);
+        assertTrue("Should be NaN", Double.isNaN(cache.getRate(LoanFixtures.createLoan(10000.00, 18.00, 24))));
+        cache.put(LoanFixtures.createLoan(10000.00, 18.00, 24), .25, 6);
+        assertEquals("Should be equal", .25, cache.getRate(LoanFixtures.createLoan(20000.00, 18.00, 24)), 0D);
+        CalculationInputParameters grace = LoanFixtures.createLoan(10000.00, 18.00, 24);
+        grace.setEndGracePeriod(Long.valueOf(3));
+        assertTrue("Should be NaN", Double.isNaN(cache.getRate(grace)));
+        cache.put(LoanFixtures.createLoan(10000.00, 18.00, 24), .26, 3);
+        assertEquals("Should be equal", .26, cache.getRate(LoanFixtures.createLoan(10000.00, 18.00, 24)), 0D);
+        assertEquals("Should be equal", 2, cache.getHitCount());
+        assertEquals("Should be equal", 2, cache.getMissCount());
+        assertEquals("Should be equal", 2, cache.getSolveCount());
+        assertEquals("Should be equal", 9, cache.getIterationCount());
+
+        cache.put(grace, .27, 4);
+        cache.put(LoanFixtures.createLoan(10000.00, 12.00, 24), .20, 4);
+        assertEquals("Should be equal", 2, cache.size());
+        assertEquals("Should be equal", 1, cache.getEvictionCount());
+        assertTrue("Should be evicted", Double.isNaN(cache.getRate(LoanFixtures.createLoan(10000.00, 18.00, 24))));
+    }
+
+    /**
+     * Test method for AmortizationEngine with the cache against the calculation from the nominal rate.
+     */
+    @Test
+    public void testEngine() {
+        Random random = new Random(5);
+        List<CalculationInputParameters> loans = new ArrayList<CalculationInputParameters>();
+        for (int loan = 0; loan < 200; loan += 1) {
+            loans.add(LoanFixtures.createLoan(1000.00 + random.nextInt(7900000) / 100.00, 10.00 + random.nextInt(3) * 5,
+                    12 * (1 + random.nextInt(3))));
+        }
+        EffectiveRateCache cache = new EffectiveRateCache();
+        AmortizationEngine engine = new AmortizationEngine(true, null, cache);
+        long coldIterations = 0;
+        for (CalculationInputParameters parameters : loans) {
+            AmortizationCalculation calculation = new AmortizationCalculation(
+                    new MonthlyCalendarFiller().createDateList(parameters), parameters);
+            calculation.calc();
+            coldIterations += calculation.getEffectiveRateIterations();
+            CalculationResult result = engine.calculate(parameters);
+            assertEquals("Should be equal", calculation.getTotal().getInterestRate(),
+                    result.getSummary().getInterestRate(), 1e-10);
+            assertEquals("Should be equal", calculation.getTotal().getTotalPayment(),
+                    result.getSummary().getTotalPayment(), 0D);
+        }
+        assertEquals("Should be equal", 9, cache.getMissCount());
+        assertEquals("Should be equal", loans.size() - 9, cache.getHitCount());
+        assertEquals("Should be equal", loans.size(), cache.getSolveCount());
+        assertTrue("Iterations - " + cache.getIterationCount() + " of " + coldIterations,
+                cache.getIterationCount() < coldIterations);
+    }
+}
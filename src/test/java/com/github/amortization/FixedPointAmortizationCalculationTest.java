@@ -0,0 +1,68 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class FixedPointAmortizationCalculationTest extends AbstractTarificationTestCase {
+
+    /**
+     * Test method for calc() against the double calculation.
+     */
+    @Test
+    public void testCalc() {
+        List<CalculationInputParameters> loans = createListFromData("testCalc", CalculationInputParameters.class);
+        for (CalculationInputParameters parameters : loans) {
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(parameters);
+            FixedPointAmortizationCalculation fixedPoint = new FixedPointAmortizationCalculation(dates, parameters);
+            assertTrue("Should not be calculated", fixedPoint.getPayments().isEmpty());
+            fixedPoint.calc();
+            AmortizationCalculation calculation = new AmortizationCalculation(dates, parameters);
+            calculation.calc();
+
+            PaymentSchedule schedule = fixedPoint.getSchedule();
+            PaymentSchedule expected = calculation.getSchedule();
+            assertEquals("Should be equal", expected.size(), schedule.size());
+            long capital = 0;
+            for (int index = 1; index < schedule.size(); index += 1) {
+                capital += fixedPoint.getCapitalPaymentCents(index);
+                assertEquals("Total should be equal capital + interest + monthly",
+                        fixedPoint.getTotalPaymentCents(index), fixedPoint.getCapitalPaymentCents(index)
+                        + fixedPoint.getInterestPaymentCents(index) + fixedPoint.getMonthlyFeeCents(index));
+                assertEquals("Should be equal", expected.getTotalPayment(index), schedule.getTotalPayment(index),
+                        0.015);
+                assertEquals("Should be equal", expected.getInterestPayment(index),
+                        schedule.getInterestPayment(index), 0.015);
+            }
+            assertEquals("Capital should be equal amount", Math.round(parameters.getAmount() * 100), capital);
+            assertEquals("Should be equal", calculation.getTotal().getInterestRate(),
+                    fixedPoint.getTotal().getInterestRate(), 1e-6);
+            assertEquals("Should be equal", calculation.getTotal().getTotalPayment(),
+                    fixedPoint.getTotal().getTotalPayment(), 0.015);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class GoalSeekTest {
+    private static final int COUNT = 300;
+
+    private static CalculationInputParameters createParameters(Random random) {
+        CalculationInputParameters parameters = LoanFixtures.createRandomLoan(random, 6, 60);
+        if (random.nextInt(4) == 0) {
+            parameters.setEndGracePeriod(Long.valueOf(1 + random.nextInt(5)));
+        }
+        return parameters;
+    }
+
+    private static double installment(CalculationInputParameters parameters, boolean roundValues) {
+        AmortizationCalculation calculation = new AmortizationCalculation(Collections.<PaymentDate>emptyList(),
+                parameters);
+        calculation.setRoundValues(roundValues);
+        return calculation.getMonthlyInstallment();
+    }
+
+    /**
+     * Test method for findAmount().
+     */
+    @Test
+    public void testFindAmount() {
+        Random random = new Random(1);
+        for (int index = 0; index < COUNT; index += 1) {
+            boolean roundValues = random.nextBoolean();
+            AmortizationEngine engine = new AmortizationEngine(roundValues, null);
+            CalculationInputParameters parameters = createParameters(random);
+            double target = 100.00 + random.nextInt(300000) / 100.00;
+            double amount = engine.findAmount(parameters, target);
+            assertEquals("Should be whole cents", Math.round(amount * 100.00) / 100.00, amount, 0D);
+            parameters.setAmount(amount);
+            assertTrue(installment(parameters, roundValues) <= target);
+            parameters.setAmount(amount + .01);
+            assertTrue(installment(parameters, roundValues) > target);
+        }
+    }
+
+    /**
+     * Test method for findDuration().
+     */
+    @Test
+    public void testFindDuration() {
+        Random random = new Random(2);
+        for (int index = 0; index < COUNT; index += 1) {
+            boolean roundValues = random.nextBoolean();
+            AmortizationEngine engine = new AmortizationEngine(roundValues, null);
+            CalculationInputParameters parameters = createParameters(random);
+            double target = installment(parameters, roundValues) + random.nextInt(5000) / 100.00;
+            int maxDuration = parameters.getDuration();
+            int duration = engine.findDuration(parameters, target);
+            assertTrue(duration <= maxDuration);
+            parameters.setDuration(duration);
+            assertTrue(installment(parameters, roundValues) <= target);
+            long minDuration = parameters.getEndGracePeriod() == null ? 1 : parameters.getEndGracePeriod() + 1;
+            if (duration > minDuration) {
+                parameters.setDuration(duration - 1);
+                assertTrue(installment(parameters, roundValues) > target);
+            }
+        }
+    }
+
+    /**
+     * Test method for findRate().
+     */
+    @Test
+    public void testFindRate() {
+        Random random = new Random(3);
+        for (int index = 0; index < COUNT; index += 1) {
+            boolean roundValues = random.nextBoolean();
+            AmortizationEngine engine = new AmortizationEngine(roundValues, null);
+            CalculationInputParameters parameters = createParameters(random);
+            double target = installment(parameters, roundValues) + random.nextInt(10000) / 100.00;
+            double rate = engine.findRate(parameters, target);
+            parameters.setRate(rate);
+            assertTrue(installment(parameters, roundValues) <= target);
+            parameters.setRate(rate * (1 + 1e-9));
+            assertTrue(installment(parameters, roundValues) > target);
+        }
+    }
+
+    /**
+     * Test method for findRateForEffectiveRate().
+     */
+    @Test
+    public void testFindRateForEffectiveRate() {
+        Random random = new Random(4);
+        for (int index = 0; index < COUNT / 3; index += 1) {
+            boolean roundValues = random.nextBoolean();
+            AmortizationEngine engine = new AmortizationEngine(roundValues, null);
+            CalculationInputParameters parameters = createParameters(random);
+            double target = engine.calculate(parameters).getSummary().getInterestRate();
+            parameters.setRate(1.00);
+            double rate = engine.findRateForEffectiveRate(parameters, target);
+            parameters.setRate(rate);
+            CalculationResult result = engine.calculate(parameters);
+            assertTrue(result.isSuccessful());
+            assertEquals("Should be equal", target, result.getSummary().getInterestRate(), 1e-6);
+        }
+    }
+
+    /**
+     * Test method for targets which can not be reached.
+     */
+    @Test
+    public void testUnreachable() {
+        AmortizationEngine engine = new AmortizationEngine();
+        CalculationInputParameters parameters = LoanFixtures.createLoan(10000.00, 12.00, 2.00, 1.00, 24);
+        assertUnreachable(() -> engine.findDuration(parameters, 150.00));
+        assertUnreachable(() -> engine.findRate(parameters, 300.00));
+        assertUnreachable(() -> engine.findAmount(parameters, -1.00));
+        assertUnreachable(() -> engine.findRateForEffectiveRate(parameters, 1.00));
+        assertEquals("Should be equal", 12.00, parameters.getRate(), 0D);
+        assertEquals("Should be equal", 24, parameters.getDuration());
+        assertEquals("Should be equal", 10000.00, parameters.getAmount(), 0D);
+    }
+
+    private static void assertUnreachable(Runnable goalSeek) {
+        try {
+            goalSeek.run();
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage() != null);
+        }
+    }
+
+    /**
+     * Test method for the amount with the same installment as calculated plan.
+     */
+    @Test
+    public void testFindAmountOfPlan() {
+        CalculationInputParameters parameters = LoanFixtures.createLoan(25000.00, 18.00, 1.50, .50, 36);
+        List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(parameters);
+        AmortizationCalculation calculation = new AmortizationCalculation(dates, parameters);
+        calculation.calc();
+        double amount = new AmortizationEngine().findAmount(parameters, calculation.getMonthlyInstallment());
+        assertTrue(amount >= 25000.00);
+        assertTrue(amount < 25010.00);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class LOGTest {
+    private final Logger logger = Logger.getLogger(LOGTest.class.getName());
+
+    @After
+    public void tearDown() {
+        logger.setLevel(null);
+    }
+
+    /**
+     * Test method for debug(Object, Supplier).
+     */
+    @Test
+    public void testDebugSupplier() {
+        final AtomicInteger calls = new AtomicInteger();
+        logger.setLevel(Level.INFO);
+        LOG.debug(this, () -> "message " + calls.incrementAndGet());
+        assertFalse(LOG.isDebugEnabled(LOGTest.class));
+        assertEquals("Should not be created", 0, calls.get());
+        logger.setLevel(Level.DEBUG);
+        LOG.debug(LOGTest.class, () -> "message " + calls.incrementAndGet());
+        assertTrue(LOG.isDebugEnabled(LOGTest.class.getName()));
+        assertEquals("Should be created", 1, calls.get());
+    }
+
+    /**
+     * Test method for debug(Object, String, Object).
+     */
+    @Test
+    public void testDebugFormat() {
+        final AtomicInteger calls = new AtomicInteger();
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                return "argument " + calls.incrementAndGet();
+            }
+        };
+        logger.setLevel(Level.INFO);
+        LOG.debug(this, "message {}", argument);
+        assertEquals("Should not be formatted", 0, calls.get());
+        logger.setLevel(Level.DEBUG);
+        LOG.debug(this, "message {}", argument);
+        assertEquals("Should be formatted", 1, calls.get());
+    }
+}
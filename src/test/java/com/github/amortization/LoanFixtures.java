@@ -0,0 +1,75 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import java.util.Date;
+import java.util.Random;
+
+/**.
+ * Loans shared by the tests which do not read their data from an xml file.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+final class LoanFixtures {
+    /** 06.01.2009 10:00 UTC. */
+    static final long START_DATE = 1231236000000L;
+    static final long ONE_DAY = 86400000L;
+
+    private LoanFixtures() {
+    }
+
+    /**
+     * Creates the loan starting at START_DATE with the repayment day 15.
+     * @param amount - the amount
+     * @param rate - the rate
+     * @param openingRate - the opening rate
+     * @param monthlyRate - the monthly rate
+     * @param duration - the duration
+     * @return the input parameters
+     */
+    static CalculationInputParameters createLoan(double amount, double rate, double openingRate, double monthlyRate,
+            int duration) {
+        return new CalculationInputParameters(amount, rate, openingRate, monthlyRate, duration, new Date(START_DATE),
+                15, .00, .00);
+    }
+
+    /**
+     * Creates the loan starting at START_DATE with the repayment day 15, opening rate 2 and monthly rate 1.5.
+     * @param amount - the amount
+     * @param rate - the rate
+     * @param duration - the duration
+     * @return the input parameters
+     */
+    static CalculationInputParameters createLoan(double amount, double rate, int duration) {
+        return createLoan(amount, rate, 2.00, 1.50, duration);
+    }
+
+    /**
+     * Creates the random loan starting within a year after START_DATE.
+     * @param random - the random generator
+     * @param minDuration - the minimal duration
+     * @param maxDuration - the maximal duration
+     * @return the input parameters
+     */
+    static CalculationInputParameters createRandomLoan(Random random, int minDuration, int maxDuration) {
+        return new CalculationInputParameters(1000.00 + random.nextInt(7900000) / 100.00,
+                1.00 + random.nextInt(3000) / 100.00, random.nextInt(300) / 100.00, random.nextInt(150) / 100.00,
+                minDuration + random.nextInt(maxDuration - minDuration + 1),
+                new Date(START_DATE + random.nextInt(365) * ONE_DAY), 1 + random.nextInt(28), .00, .00);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+@RunWith(Parameterized.class)
+public class MonthlyCalendarFillerTest {
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000L;
+    private static final int[] REPAYMENT_DAYS = {1, 5, 15, 28, 29, 30, 31};
+
+    private final TimeZone zone;
+    private final boolean sqlDate;
+    private TimeZone defaultZone;
+
+    public MonthlyCalendarFillerTest(String zoneId, boolean sqlDate) {
+        this.zone = TimeZone.getTimeZone(zoneId);
+        this.sqlDate = sqlDate;
+    }
+
+    @Parameters(name = "{0}, java.sql.Date: {1}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][] {{"UTC", false}, {"UTC", true}, {"Europe/Kiev", false},
+            {"Europe/Kiev", true}});
+    }
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(zone);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    /**
+     * Calendar of the filler before epoch days, with Calendar and java.util.Date. The only change is that days
+     * between dates are rounded and not truncated, the old code counted one day too few across the spring change
+     * of daylight saving time (in UTC both are the same).
+     */
+    private static List<PaymentDate> createCalendarDateList(Date start, int day, int duration) {
+        List<PaymentDate> dates = new ArrayList<PaymentDate>();
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(start);
+        correctDate(calendar, calendar.get(Calendar.DATE));
+        dates.add(new PaymentDate(calendar.getTime(), 0));
+        Date previousDate = start;
+        calendar.setTime(start);
+        correctDate(calendar, day);
+        boolean correctDate = true;
+        for (int index = 0; index < duration; index += 1) {
+            calendar.add(Calendar.MONTH, 1);
+            Date currentDate = correctDate(calendar, day);
+            if (correctDate) {
+                if (getDaysBetween(start, calendar.getTime()) + 1 < MonthlyCalendarFiller.MIN_DAYS_FROM_START) {
+                    calendar.add(Calendar.MONTH, 1);
+                    currentDate = correctDate(calendar, day);
+                }
+                correctDate = false;
+            }
+            PaymentDate paymentDate = new PaymentDate();
+            paymentDate.setDaysPerMonth(calendar.getActualMaximum(Calendar.DATE));
+            paymentDate.setDaysBefore(getDaysBetween(previousDate, currentDate));
+            paymentDate.setDate(currentDate);
+            dates.add(paymentDate);
+            previousDate = currentDate;
+        }
+        return dates;
+    }
+
+    private static Date correctDate(Calendar calendar, int requestedDay) {
+        int maxDay = calendar.getActualMaximum(Calendar.DATE);
+        calendar.set(Calendar.DATE, requestedDay <= maxDay ? requestedDay : maxDay);
+        return calendar.getTime();
+    }
+
+    private static long getDaysBetween(Date beginDay, Date endDay) {
+        return Math.round((endDay.getTime() - beginDay.getTime()) / (double) ONE_DAY);
+    }
+
+    /**
+     * Test method for createDateList() against the calendar made with java.util.Calendar, for start dates at
+     * midnight and in the day over two years with both changes of daylight saving time.
+     */
+    @Test
+    public void testCreateDateList() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2011, Calendar.JANUARY, 1);
+        for (int startDay = 0; startDay < 730; startDay += 3) {
+            for (int hour : new int[] {0, 10}) {
+                Calendar startCalendar = (Calendar) calendar.clone();
+                startCalendar.add(Calendar.DATE, startDay);
+                startCalendar.set(Calendar.HOUR_OF_DAY, hour);
+                Date start = sqlDate ? new java.sql.Date(startCalendar.getTimeInMillis()) : startCalendar.getTime();
+                for (int day : REPAYMENT_DAYS) {
+                    CalculationInputParameters parameters = new CalculationInputParameters(10000.00, 18.00, .00,
+                            .00, 14, start, day, .00, .00);
+                    List<PaymentDate> expected = createCalendarDateList(start, day, 14);
+                    List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(parameters);
+                    assertEquals("Should be equal", expected.size(), dates.size());
+                    for (int index = 0; index < expected.size(); index += 1) {
+                        String message = start + ", day " + day + ", payment " + index;
+                        assertEquals(message, expected.get(index).getDate().getTime(),
+                                dates.get(index).getDate().getTime());
+                        assertEquals(message, expected.get(index).getDaysBefore(), dates.get(index).getDaysBefore());
+                        assertEquals(message, expected.get(index).getDaysPerMonth(),
+                                dates.get(index).getDaysPerMonth());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class NpvKernelTest {
+
+    private static double[] createCashFlows(Random random, int size) {
+        double[] cashFlows = new double[size];
+        cashFlows[0] = -100000.00;
+        for (int index = 1; index < size; index += 1) {
+            cashFlows[index] = 120000.00 / (size - 1) + random.nextInt(100000) / 100.00;
+        }
+        return cashFlows;
+    }
+
+    /**
+     * Test method for evaluate() against Math.pow based net present value.
+     */
+    @Test
+    public void testEvaluate() {
+        Random random = new Random(7);
+        double[] result = new double[2];
+        for (int size : new int[] {2, 13, 61, 361}) {
+            double[] cashFlows = createCashFlows(random, size);
+            double rate = .35;
+            double expected = .00;
+            for (int index = 0; index < size; index += 1) {
+                expected += cashFlows[index] / Math.pow(1 + rate / 12, index);
+            }
+            NpvKernel.evaluate(cashFlows, size, rate, result);
+            assertEquals("Should be equal", expected, result[NpvKernel.VALUE], 1e-8);
+            assertEquals("Should be equal", expected, NpvKernel.netPresentValue(cashFlows, size, rate), 1e-8);
+            double step = 1e-6;
+            double numeric = (NpvKernel.netPresentValue(cashFlows, size, rate + step)
+                    - NpvKernel.netPresentValue(cashFlows, size, rate - step)) / (2 * step);
+            assertEquals("Should be equal", numeric, result[NpvKernel.DERIVATIVE],
+                    Math.abs(numeric) * 1e-6);
+        }
+    }
+
+    /**
+     * Test method for EffectiveRateSolver.solve().
+     */
+    @Test
+    public void testSolve() {
+        Random random = new Random(11);
+        EffectiveRateSolver solver = new EffectiveRateSolver();
+        for (int size : new int[] {2, 13, 61, 361}) {
+            double[] cashFlows = createCashFlows(random, size);
+            double rate = solver.solve(cashFlows, size, .10);
+            assertTrue("Should converge", solver.isConverged());
+            assertTrue("Iterations - " + solver.getIterations(), solver.getIterations() < 20);
+            double[] netValues = new double[size];
+            NpvKernel.netValues(cashFlows, size, rate, netValues);
+            double sum = .00;
+            for (double netValue : netValues) {
+                sum += netValue;
+            }
+            assertEquals("Net values should be balanced", 0D, sum, 1e-6);
+        }
+    }
+
+    /**
+     * Test method for EffectiveRateSolver.solve() from a close guess and with right and wrong bracket hints.
+     */
+    @Test
+    public void testSolveWarmStart() {
+        Random random = new Random(17);
+        EffectiveRateSolver solver = new EffectiveRateSolver();
+        for (int size : new int[] {2, 13, 61, 361}) {
+            double[] cashFlows = createCashFlows(random, size);
+            double rate = solver.solve(cashFlows, size, .10);
+            int coldIterations = solver.getIterations();
+            for (double guess : new double[] {rate * .99, rate * 1.01}) {
+                assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess), 1e-12);
+                assertTrue("Iterations - " + solver.getIterations(), solver.getIterations() <= coldIterations);
+                assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess, guess - .01, guess + .01),
+                        1e-12);
+                assertTrue("Should converge", solver.isConverged());
+                assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess, rate + .01, rate + .02),
+                        1e-12);
+                assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess, rate - .02, rate - .01),
+                        1e-12);
+                assertTrue("Should converge", solver.isConverged());
+            }
+        }
+    }
+
+    /**
+     * Test method for EffectiveRateSolver.solve() from many guesses, the rate must not depend on the guess.
+     */
+    @Test
+    public void testSolveFromGuesses() {
+        Random random = new Random(19);
+        EffectiveRateSolver solver = new EffectiveRateSolver();
+        for (int size : new int[] {2, 13, 61, 361}) {
+            for (int loan = 0; loan < 20; loan += 1) {
+                double[] cashFlows = createCashFlows(random, size);
+                double rate = solver.solve(cashFlows, size, .10);
+                for (double guess : new double[] {.00, .01, rate * .9, rate * .999999, rate * (1 + 1e-12),
+                    rate * 1.000001, rate * 1.1, rate * 2, 3.00}) {
+                    assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess), 0D);
+                    assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess, guess - .01,
+                            guess + .01), 0D);
+                    assertEquals("Should be equal", rate, solver.solve(cashFlows, size, guess, guess - 1e-9,
+                            guess + 1e-9), 0D);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test method for CashFlowRuns.evaluate() and solve() with runs against the array of cash flows.
+     */
+    @Test
+    public void testCashFlowRuns() {
+        Random random = new Random(13);
+        double[] result = new double[2];
+        double[] expected = new double[2];
+        EffectiveRateSolver solver = new EffectiveRateSolver();
+        for (int size : new int[] {2, 13, 61, 361}) {
+            double[] cashFlows = new double[size];
+            cashFlows[0] = -100000.00;
+            for (int index = 1; index < size; index += 1) {
+                cashFlows[index] = index < size / 3 ? 1000.00 : 130000.00 / (size - 1) + random.nextInt(3);
+            }
+            CashFlowRuns runs = new CashFlowRuns(cashFlows, size);
+            assertTrue("Runs - " + runs.getCount(), runs.getCount() <= size);
+            for (int end = 0; end <= size; end += 1 + end / 4) {
+                for (double rate : new double[] {.00, .001, .35, 2.00}) {
+                    NpvKernel.evaluate(cashFlows, end, rate, expected);
+                    runs.evaluate(end, rate, result);
+                    assertEquals("Should be equal", expected[NpvKernel.VALUE], result[NpvKernel.VALUE],
+                            Math.abs(expected[NpvKernel.VALUE]) * 1e-12 + 1e-8);
+                    assertEquals("Should be equal", expected[NpvKernel.DERIVATIVE], result[NpvKernel.DERIVATIVE],
+                            Math.abs(expected[NpvKernel.DERIVATIVE]) * 1e-12 + 1e-8);
+                }
+            }
+            double rate = solver.solve(cashFlows, size, .10);
+            for (int from = 1; from < size; from += 1 + from / 4) {
+                assertEquals("Should be equal", rate, solver.solve(runs, cashFlows, from, size, .10), 1e-12);
+                assertTrue("Should converge", solver.isConverged());
+            }
+        }
+    }
+
+    /**
+     * Test method for the Vector API kernel (if the JVM has it) against the scalar kernel.
+     */
+    @Test
+    public void testVectorKernel() {
+        Random random = new Random(17);
+        double[] result = new double[2];
+        double[] expected = new double[2];
+        double[] rates = new double[21];
+        for (int index = 0; index < rates.length; index += 1) {
+            rates[index] = index * .05;
+        }
+        double[] values = new double[rates.length];
+        double[] derivatives = new double[rates.length];
+        for (int size : new int[] {2, 13, 16, 17, 61, 100, 361}) {
+            double[] cashFlows = createCashFlows(random, size);
+            for (int from = 0; from < size; from += 1 + from / 2) {
+                for (double rate : new double[] {.00, .07, .35, 2.00}) {
+                    NpvKernel.evaluateScalar(cashFlows, from, size, rate, expected);
+                    NpvKernel.evaluate(cashFlows, from, size, rate, result);
+                    assertEquals("Should be equal", expected[NpvKernel.VALUE], result[NpvKernel.VALUE],
+                            Math.abs(expected[NpvKernel.VALUE]) * 1e-12 + 1e-8);
+                    assertEquals("Should be equal", expected[NpvKernel.DERIVATIVE], result[NpvKernel.DERIVATIVE],
+                            Math.abs(expected[NpvKernel.DERIVATIVE]) * 1e-12 + 1e-8);
+                }
+            }
+            for (double rate : new double[] {.00, .07, .35, 2.00}) {
+                double value = NpvKernel.netPresentValueScalar(cashFlows, size, rate);
+                assertEquals("Should be equal", value, NpvKernel.netPresentValue(cashFlows, size, rate),
+                        Math.abs(value) * 1e-12 + 1e-8);
+            }
+            for (int count = 0; count <= rates.length; count += 1) {
+                NpvKernel.evaluate(cashFlows, size, rates, count, values, derivatives);
+                for (int index = 0; index < count; index += 1) {
+                    NpvKernel.evaluateScalar(cashFlows, 0, size, rates[index], expected);
+                    assertEquals("Should be equal", expected[NpvKernel.VALUE], values[index],
+                            Math.abs(expected[NpvKernel.VALUE]) * 1e-12 + 1e-8);
+                    assertEquals("Should be equal", expected[NpvKernel.DERIVATIVE], derivatives[index],
+                            Math.abs(expected[NpvKernel.DERIVATIVE]) * 1e-12 + 1e-8);
+                }
+            }
+        }
+    }
+}
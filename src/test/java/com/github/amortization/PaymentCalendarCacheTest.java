@@ -0,0 +1,133 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class PaymentCalendarCacheTest {
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    private static CalculationInputParameters createParameters(long startDate, int repaymentDay, int duration) {
+        CalculationInputParameters parameters = LoanFixtures.createLoan(100000.00, 18.00, duration);
+        parameters.setStartDate(new Date(startDate));
+        parameters.setRepaymentDay(repaymentDay);
+        return parameters;
+    }
+
+    /**
+     * Test method for getDateList().
+     */
+    @Test
+    public void testGetDateList() {
+        PaymentCalendarCache cache = new PaymentCalendarCache(2);
+        long startOfDay = LocalDate.of(2009, 1, 6).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<PaymentDate> dates = cache.getDateList(createParameters(startOfDay + ONE_HOUR, 15, 24));
+        assertSame("Should be shared", dates, cache.getDateList(createParameters(startOfDay + ONE_HOUR, 15, 24)));
+        assertNotSame("Should not be shared", dates, cache.getDateList(createParameters(startOfDay, 15, 24)));
+        assertEquals("Should be equal", 1, cache.getHitCount());
+        assertEquals("Should be equal", 2, cache.getMissCount());
+    }
+
+    /**
+     * Test method for getDateList() with the start date which is not at the start of the day.
+     */
+    @Test
+    public void testTimeOfDay() {
+        PaymentCalendarCache cache = new PaymentCalendarCache();
+        long startOfDay = LocalDate.of(2009, 1, 6).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        CalculationInputParameters parameters = createParameters(startOfDay + 10 * ONE_HOUR + 1234, 15, 24);
+        List<PaymentDate> expected = new MonthlyCalendarFiller().createDateList(parameters);
+        List<PaymentDate> dates = cache.getDateList(parameters);
+        assertEquals("Should be equal", expected.size(), dates.size());
+        for (int index = 0; index < expected.size(); index += 1) {
+            assertEquals("Should be equal", expected.get(index).getDate(), dates.get(index).getDate());
+            assertEquals("Should be equal", expected.get(index).getDaysBefore(), dates.get(index).getDaysBefore());
+            assertEquals("Should be equal", expected.get(index).getDaysPerMonth(),
+                    dates.get(index).getDaysPerMonth());
+        }
+
+        CalculationResult result = new AmortizationEngine().calculate(parameters);
+        CalculationResult cachedResult = new AmortizationEngine(true, cache).calculate(parameters);
+        assertEquals("Should be equal", result.getSummary().getDate(), cachedResult.getSummary().getDate());
+        for (int index = 0; index < result.getSchedule().size(); index += 1) {
+            assertEquals("Should be equal", result.getSchedule().getDate(index),
+                    cachedResult.getSchedule().getDate(index));
+            assertEquals("Should be equal", result.getSchedule().getTotalPayment(index),
+                    cachedResult.getSchedule().getTotalPayment(index), 0D);
+        }
+        assertEquals("Should be equal", result.getSummary().getInterestRate(),
+                cachedResult.getSummary().getInterestRate(), 0D);
+    }
+
+    /**
+     * Test method for eviction of the least recently used calendar.
+     */
+    @Test
+    public void testEviction() {
+        PaymentCalendarCache cache = new PaymentCalendarCache(2);
+        List<PaymentDate> first = cache.getDateList(createParameters(LoanFixtures.START_DATE, 15, 12));
+        cache.getDateList(createParameters(LoanFixtures.START_DATE, 15, 24));
+        cache.getDateList(createParameters(LoanFixtures.START_DATE, 15, 12));
+        cache.getDateList(createParameters(LoanFixtures.START_DATE, 5, 12));
+        assertEquals("Should be equal", 2, cache.size());
+        assertEquals("Should be equal", 1, cache.getEvictionCount());
+        assertSame("Should be kept", first, cache.getDateList(createParameters(LoanFixtures.START_DATE, 15, 12)));
+        // evicted calendar is created again
+        cache.getDateList(createParameters(LoanFixtures.START_DATE, 15, 24));
+        assertEquals("Should be equal", 2, cache.getEvictionCount());
+        assertEquals("Should be equal", 4, cache.getMissCount());
+    }
+
+    /**
+     * Test method for changes of the shared calendar.
+     */
+    @Test
+    public void testFrozen() {
+        PaymentCalendarCache cache = new PaymentCalendarCache();
+        List<PaymentDate> dates = cache.getDateList(createParameters(LoanFixtures.START_DATE, 15, 12));
+        try {
+            dates.remove(0);
+            fail("Should not be changed");
+        } catch (UnsupportedOperationException ex) {
+            assertEquals("Should be equal", 13, dates.size());
+        }
+        try {
+            dates.get(1).setDaysBefore(0);
+            fail("Should not be changed");
+        } catch (UnsupportedOperationException ex) {
+            assertEquals("Should be equal", 13, dates.size());
+        }
+        long time = dates.get(1).getDate().getTime();
+        dates.get(1).getDate().setTime(0);
+        assertEquals("Should be equal", time, dates.get(1).getDate().getTime());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class PortfolioCalculationTest extends AbstractTarificationTestCase {
+    private PortfolioCalculation portfolioCalculation;
+
+    @Before
+    public void setUp() {
+        portfolioCalculation = new PortfolioCalculation(4);
+    }
+
+    @After
+    public void tearDown() {
+        portfolioCalculation.shutdown();
+    }
+
+    /**
+     * Test method for calculate(Collection).
+     */
+    @Test
+    public void testCalculate() {
+        List<CalculationInputParameters> loans = createListFromData("testCalculate",
+                CalculationInputParameters.class);
+        List<CalculationResult> results = portfolioCalculation.calculate(loans);
+        assertEquals("Should be equal", loans.size(), results.size());
+        for (int index = 0; index < loans.size(); index += 1) {
+            CalculationResult result = results.get(index);
+            CalculationInputParameters copy = result.getParameters();
+            assertNotSame("Should be copied", loans.get(index), copy);
+            assertEquals("Should be ordered", loans.get(index).getAmount(), copy.getAmount(), 0D);
+            assertEquals("Should be ordered", loans.get(index).getStartDate(), copy.getStartDate());
+            assertEquals("Should be ordered", loans.get(index).getEndGracePeriod(), copy.getEndGracePeriod());
+            if (index == 1) {
+                assertFalse("Grace period is too big", result.isSuccessful());
+                assertTrue(result.getError() instanceof IllegalArgumentException);
+                continue;
+            }
+            assertTrue(result.isSuccessful());
+            CalculationInputParameters parameters = loans.get(index);
+            AmortizationCalculation calculation = new AmortizationCalculation(
+                    new MonthlyCalendarFiller().createDateList(parameters), parameters);
+            calculation.calc();
+            assertEquals("Should be equal", calculation.getPayments().size(), result.getPayments().size());
+            assertEquals("Should be equal", calculation.getTotal().getInterestRate(),
+                    result.getSummary().getInterestRate(), 0D);
+            assertEquals("Should be equal", calculation.getTotal().getTotalPayment(),
+                    result.getSummary().getTotalPayment(), 0D);
+        }
+    }
+
+    /**
+     * Test method for calculate(Stream, Consumer) with unordered delivery.
+     */
+    @Test
+    public void testCalculateUnordered() {
+        List<CalculationInputParameters> loans = new ArrayList<CalculationInputParameters>();
+        for (int index = 0; index < 50; index += 1) {
+            loans.addAll(createListFromData("testCalculate", CalculationInputParameters.class));
+        }
+        final List<CalculationResult> results = Collections.synchronizedList(new ArrayList<CalculationResult>());
+        portfolioCalculation.setOrdered(false);
+        portfolioCalculation.calculate(loans.stream(), results::add);
+        assertEquals("Should be equal", loans.size(), results.size());
+        int failed = 0;
+        for (CalculationResult result : results) {
+            failed += result.isSuccessful() ? 0 : 1;
+        }
+        assertEquals("Should be equal", 50, failed);
+    }
+}
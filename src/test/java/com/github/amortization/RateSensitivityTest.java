@@ -0,0 +1,133 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class RateSensitivityTest {
+
+    private static void assertSensitivity(CalculationInputParameters parameters, double[] rates,
+            boolean roundValues) {
+        AmortizationEngine engine = new AmortizationEngine(roundValues, null);
+        RateSensitivity sensitivity = engine.calculateRates(parameters, rates, true);
+        assertEquals("Should be equal", rates.length, sensitivity.size());
+        List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(parameters);
+        for (int lane = 0; lane < rates.length; lane += 1) {
+            CalculationInputParameters laneParameters = GoalSeek.copy(parameters);
+            laneParameters.setRate(rates[lane]);
+            AmortizationCalculation calculation = new AmortizationCalculation(dates, laneParameters);
+            calculation.setRoundValues(roundValues);
+            calculation.calc();
+            Payment total = calculation.getTotal();
+            assertEquals("Should be equal", total.getAnnuitySum(), sensitivity.getAnnuitySum(lane), 0D);
+            assertEquals("Should be equal", total.getTotalInstalmentPayment(),
+                    sensitivity.getMonthlyInstallment(lane), 0D);
+            assertEquals("Should be equal", total.getTotalPayment(), sensitivity.getTotalPayment(lane), 0D);
+            assertEquals("Should be equal", total.getCapitalPayment(), sensitivity.getCapitalPayment(lane), 0D);
+            assertEquals("Should be equal", total.getInterestPayment(), sensitivity.getInterestPayment(lane), 0D);
+            assertEquals("Should be equal", total.getMonthlyFee(), sensitivity.getMonthlyFee(lane), 0D);
+            assertEquals("Should be equal", total.getTotalInterestPayment(),
+                    sensitivity.getTotalInterestPayment(lane), 0D);
+            assertEquals("Should be equal", total.getInterestRate(), sensitivity.getInterestRate(lane), 1e-9);
+            CalculationSummary summary = sensitivity.getSummary(lane);
+            assertEquals("Should be equal", total.getDate().getTime(), summary.getDate().getTime());
+            assertEquals("Should be equal", total.getOpeningFee(), summary.getOpeningFee(), 0D);
+            assertEquals("Should be equal", total.getNominalRate(), summary.getNominalRate(), 0D);
+            PaymentSchedule expected = calculation.getSchedule();
+            PaymentSchedule schedule = sensitivity.getSchedule(lane);
+            assertEquals("Should be equal", expected.size(), schedule.size());
+            assertEquals("Should be equal", expected.getNominalRate(), schedule.getNominalRate(), 0D);
+            assertEquals("Should be equal", expected.getTotalInstalmentPayment(),
+                    schedule.getTotalInstalmentPayment(), 0D);
+            for (int index = 0; index < expected.size(); index += 1) {
+                assertEquals("Should be equal", expected.getDate(index), schedule.getDate(index));
+                assertEquals("Should be equal", expected.getDays(index), schedule.getDays(index));
+                assertEquals("Should be equal", expected.getDaysPerMonth(index), schedule.getDaysPerMonth(index));
+                assertEquals("Should be equal", expected.getDebetIn(index), schedule.getDebetIn(index), 0D);
+                assertEquals("Should be equal", expected.getCapitalPayment(index),
+                        schedule.getCapitalPayment(index), 0D);
+                assertEquals("Should be equal", expected.getInterestPayment(index),
+                        schedule.getInterestPayment(index), 0D);
+                assertEquals("Should be equal", expected.getTotalInterestPayment(index),
+                        schedule.getTotalInterestPayment(index), 0D);
+                assertEquals("Should be equal", expected.getMonthlyFee(index), schedule.getMonthlyFee(index), 0D);
+                assertEquals("Should be equal", expected.getTotalPayment(index), schedule.getTotalPayment(index), 0D);
+                assertEquals("Should be equal", expected.getNetValue(index), schedule.getNetValue(index), 1e-6);
+            }
+        }
+    }
+
+    private static double[] createRates(int count) {
+        double[] rates = new double[count];
+        for (int index = 0; index < count; index += 1) {
+            rates[index] = 1.00 + index * .25;
+        }
+        return rates;
+    }
+
+    /**
+     * Test method for calc() against AmortizationCalculation.
+     */
+    @Test
+    public void testCalc() {
+        Random random = new Random(1);
+        for (int loan = 0; loan < 40; loan += 1) {
+            CalculationInputParameters parameters = LoanFixtures.createRandomLoan(random, 1, 60);
+            if (loan % 3 == 0) {
+                parameters.setEndGracePeriod(Long.valueOf(1 + random.nextInt(parameters.getDuration())));
+            }
+            assertSensitivity(parameters, createRates(50), random.nextBoolean());
+        }
+    }
+
+    /**
+     * Test method for totals without schedules and for wrong input.
+     */
+    @Test
+    public void testWithoutSchedules() {
+        CalculationInputParameters parameters = LoanFixtures.createLoan(10000.00, 12.00, 2.00, 1.00, 24);
+        RateSensitivity sensitivity = new AmortizationEngine().calculateRates(parameters, createRates(3), false);
+        assertNull(sensitivity.getSchedule(0));
+        assertEquals("Should be equal", 1.50, sensitivity.getRate(2), 0D);
+        try {
+            new RateSensitivity(new MonthlyCalendarFiller().createDateList(parameters), parameters,
+                    new double[] {12.00, .00});
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Should be equal", "rate should be positive: 0.0", ex.getMessage());
+        }
+        parameters.setEndGracePeriod(Long.valueOf(25));
+        try {
+            new AmortizationEngine().calculateRates(parameters, createRates(3), false);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Should be equal", "check grace period value, may be is too big: 25", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * $Id$
+ *
+ * Copyright 2012 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class RoundingTest {
+    private static final int COUNT = 100000;
+
+    private static void assertHalfUp(double value, int scale) {
+        double expected = BigDecimal.valueOf(value).setScale(scale, BigDecimal.ROUND_HALF_UP).doubleValue();
+        // Double.equals() also distinguishes 0.0 and -0.0
+        assertEquals("Should be equal for " + value + " scale " + scale, Double.valueOf(expected),
+                Double.valueOf(Rounding.halfUp(value, scale)));
+    }
+
+    /**
+     * Test method for halfUp() on random values of different magnitude.
+     */
+    @Test
+    public void testHalfUpRandom() {
+        Random random = new Random(1);
+        for (int index = 0; index < COUNT; index += 1) {
+            double value = random.nextDouble() * Math.pow(10, random.nextInt(14) - 3);
+            assertHalfUp(random.nextBoolean() ? value : -value, random.nextInt(5));
+        }
+    }
+
+    /**
+     * Test method for halfUp() on values calculated like interests and installments.
+     */
+    @Test
+    public void testHalfUpCalculated() {
+        Random random = new Random(2);
+        for (int index = 0; index < COUNT; index += 1) {
+            double sum = random.nextInt(100000000) / 100.00;
+            double rate = random.nextInt(10000) / 100.00;
+            assertHalfUp(sum * rate * 30 / (100.00 * 360), 2);
+            assertHalfUp(sum - random.nextInt(100000) / 100.00, 2);
+            assertHalfUp(rate / 100.00 * sum, 2);
+        }
+    }
+
+    /**
+     * Test method for halfUp() on values which are exactly between two results in decimal form.
+     */
+    @Test
+    public void testHalfUpTie() {
+        Random random = new Random(3);
+        for (int index = 0; index < COUNT; index += 1) {
+            int scale = random.nextInt(5);
+            long units = (long) (random.nextDouble() * Math.pow(10, random.nextInt(12)));
+            double value = BigDecimal.valueOf(units * 10 + 5, scale + 1).doubleValue();
+            assertHalfUp(value, scale);
+            assertHalfUp(-value, scale);
+            assertHalfUp(Math.nextUp(value), scale);
+            assertHalfUp(Math.nextDown(value), scale);
+        }
+        assertHalfUp(1.005, 2);
+        assertHalfUp(2.675, 2);
+        assertHalfUp(1.115, 2);
+        assertHalfUp(0.125, 2);
+        assertHalfUp(-0.001, 2);
+        assertHalfUp(0.0, 2);
+        assertHalfUp(-0.0, 2);
+        assertHalfUp(1e15 + 0.5, 2);
+    }
+}
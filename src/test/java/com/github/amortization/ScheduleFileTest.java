@@ -0,0 +1,200 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class ScheduleFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<CalculationResult> calculate() {
+        AmortizationEngine engine = new AmortizationEngine();
+        List<CalculationResult> results = new ArrayList<CalculationResult>();
+        for (int duration = 1; duration <= 60; duration += 1) {
+            CalculationInputParameters parameters = LoanFixtures.createLoan(1000.00 * duration, 12.00 + duration,
+                    1.00, .50, duration);
+            parameters.setStartDate(new Date(LoanFixtures.START_DATE + duration * LoanFixtures.ONE_DAY));
+            parameters.setRepaymentDay(duration % 28 + 1);
+            if (duration % 3 == 0) {
+                parameters.setEndGracePeriod(Long.valueOf(duration / 3));
+            }
+            results.add(engine.calculate(parameters));
+        }
+        return results;
+    }
+
+    private Path write(List<CalculationResult> results) throws IOException {
+        Path path = folder.newFile("schedules.bin").toPath();
+        try (ScheduleFileWriter writer = new ScheduleFileWriter(path)) {
+            for (int index = 0; index < results.size(); index += 1) {
+                assertTrue(writer.write(index + 100, results.get(index)));
+            }
+            assertFalse(writer.write(0, new CalculationResult(new CalculationInputParameters(),
+                    new IllegalArgumentException())));
+            assertEquals("Should be equal", results.size(), writer.getCount());
+        }
+        return path;
+    }
+
+    private static void assertSchedule(CalculationResult result, ScheduleFileReader reader) {
+        CalculationInputParameters parameters = result.getParameters();
+        assertEquals("Should be equal", parameters.getAmount(), reader.getAmount(), 0D);
+        assertEquals("Should be equal", parameters.getRate(), reader.getRate(), 0D);
+        assertEquals("Should be equal", parameters.getDuration(), reader.getDuration());
+        assertEquals("Should be equal", parameters.getRepaymentDay(), reader.getRepaymentDay());
+        assertEquals("Should be equal", parameters.getStartDate().getTime(), reader.getStartDate());
+        assertEquals("Should be equal", parameters.getEndGracePeriod(), reader.getEndGracePeriod());
+        CalculationInputParameters readParameters = reader.getParameters();
+        assertEquals("Should be equal", parameters.getStartDate(), readParameters.getStartDate());
+        assertEquals("Should be equal", parameters.getMonthlyRate(), readParameters.getMonthlyRate(), 0D);
+        assertEquals("Should be equal", parameters.getOpeningRate(), readParameters.getOpeningRate(), 0D);
+        CalculationSummary summary = result.getSummary();
+        CalculationSummary readSummary = reader.getSummary();
+        assertEquals("Should be equal", summary.getDate(), readSummary.getDate());
+        assertEquals("Should be equal", summary.getInterestRate(), readSummary.getInterestRate(), 0D);
+        assertEquals("Should be equal", summary.getTotalPayment(), readSummary.getTotalPayment(), 0D);
+        assertEquals("Should be equal", summary.getTotalInterestPayment(), readSummary.getTotalInterestPayment(), 0D);
+        assertEquals("Should be equal", summary.getMonthlyFee(), readSummary.getMonthlyFee(), 0D);
+        assertEquals("Should be equal", summary.getAnnuitySum(), readSummary.getAnnuitySum(), 0D);
+        PaymentSchedule schedule = result.getSchedule();
+        assertEquals("Should be equal", schedule.size(), reader.size());
+        for (int index = 0; index < schedule.size(); index += 1) {
+            ScheduleFileReader.Row row = reader.getRow(index);
+            assertSame("Should be same", row, reader.getRow(index));
+            assertEquals("Should be equal", schedule.getDate(index), row.getDate());
+            assertEquals("Should be equal", schedule.getDays(index), row.getDays());
+            assertEquals("Should be equal", schedule.getDaysPerMonth(index), row.getDaysPerMonth());
+            assertEquals("Should be equal", schedule.getDebetIn(index), row.getDebetIn(), 0D);
+            assertEquals("Should be equal", schedule.getDebetOut(index), row.getDebetOut(), 0D);
+            assertEquals("Should be equal", schedule.getCapitalPayment(index), row.getCapitalPayment(), 0D);
+            assertEquals("Should be equal", schedule.getInterestPayment(index), row.getInterestPayment(), 0D);
+            assertEquals("Should be equal", schedule.getTotalInterestPayment(index),
+                    row.getTotalInterestPayment(), 0D);
+            assertEquals("Should be equal", schedule.getMonthlyFee(index), row.getMonthlyFee(), 0D);
+            assertEquals("Should be equal", schedule.getTotalPayment(index), row.getTotalPayment(), 0D);
+            assertEquals("Should be equal", schedule.getNetValue(index), row.getNetValue(), 0D);
+        }
+    }
+
+    private static void assertFile(List<CalculationResult> results, ScheduleFileReader reader) throws IOException {
+        for (int index = 0; index < results.size(); index += 1) {
+            assertTrue(reader.next());
+            assertEquals("Should be equal", index + 100, reader.getLoanId());
+            assertSchedule(results.get(index), reader);
+        }
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+
+    /**
+     * Test method for writing and reading of schedules.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        List<CalculationResult> results = calculate();
+        Path path = write(results);
+        long rows = 0;
+        for (CalculationResult result : results) {
+            rows += result.getSchedule().size();
+        }
+        assertEquals("Should be equal", ScheduleFile.FILE_HEADER_SIZE + results.size() * ScheduleFile.HEADER_SIZE
+                + rows * ScheduleFile.ROW_SIZE, Files.size(path));
+        try (ScheduleFileReader reader = new ScheduleFileReader(path)) {
+            assertFile(results, reader);
+        }
+    }
+
+    /**
+     * Test method for reading of the file mapped in windows smaller than one schedule.
+     */
+    @Test
+    public void testSmallWindow() throws IOException {
+        List<CalculationResult> results = calculate();
+        Path path = write(results);
+        try (ScheduleFileReader reader = new ScheduleFileReader(path, 1000)) {
+            assertFile(results, reader);
+        }
+    }
+
+    /**
+     * Test method for the file which is not a schedule file or is truncated.
+     */
+    @Test
+    public void testWrongFile() throws IOException {
+        Path path = folder.newFile("wrong.bin").toPath();
+        Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        try {
+            new ScheduleFileReader(path);
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().startsWith("Not a schedule file"));
+        }
+        List<CalculationResult> results = calculate();
+        byte[] bytes = Files.readAllBytes(write(results));
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        try (ScheduleFileReader reader = new ScheduleFileReader(path)) {
+            for (int index = 0; index < results.size() - 1; index += 1) {
+                assertTrue(reader.next());
+            }
+            reader.next();
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("truncated"));
+        }
+    }
+
+    /**
+     * Test method for the empty file.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        Path path = folder.newFile("empty.bin").toPath();
+        new ScheduleFileWriter(path).close();
+        try (ScheduleFileReader reader = new ScheduleFileReader(path)) {
+            assertFalse(reader.next());
+            try {
+                reader.getLoanId();
+                fail("IllegalStateException expected");
+            } catch (IllegalStateException ex) {
+                assertTrue(ex.getMessage().startsWith("No current schedule"));
+            }
+        }
+    }
+}
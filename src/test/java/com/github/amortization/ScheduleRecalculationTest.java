@@ -0,0 +1,242 @@
+/*
+ * $Id$
+ *
+ * Copyright 2013 Valentyn Kolesnikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.amortization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**.
+ * @author Valentyn Kolesnikov
+ * @version $Revision$ $Date$
+ */
+public class ScheduleRecalculationTest {
+    private static void assertRows(PaymentSchedule expected, PaymentSchedule schedule, int from, int to) {
+        for (int index = from; index < to; index += 1) {
+            assertEquals("Should be equal", expected.getDate(index), schedule.getDate(index));
+            assertEquals("Should be equal", expected.getDays(index), schedule.getDays(index));
+            assertEquals("Should be equal", expected.getDaysPerMonth(index), schedule.getDaysPerMonth(index));
+            assertEquals("Should be equal", expected.getDebetIn(index), schedule.getDebetIn(index), 0D);
+            assertEquals("Should be equal", expected.getCapitalPayment(index), schedule.getCapitalPayment(index), 0D);
+            assertEquals("Should be equal", expected.getInterestPayment(index),
+                    schedule.getInterestPayment(index), 0D);
+            assertEquals("Should be equal", expected.getTotalInterestPayment(index),
+                    schedule.getTotalInterestPayment(index), 0D);
+            assertEquals("Should be equal", expected.getMonthlyFee(index), schedule.getMonthlyFee(index), 0D);
+            assertEquals("Should be equal", expected.getTotalPayment(index), schedule.getTotalPayment(index), 0D);
+        }
+    }
+
+    private static void assertRepaid(CalculationResult result) {
+        assertTrue(String.valueOf(result.getError()), result.isSuccessful());
+        PaymentSchedule schedule = result.getSchedule();
+        double capital = .00;
+        for (int index = 1; index < schedule.size(); index += 1) {
+            capital += schedule.getCapitalPayment(index);
+        }
+        assertEquals("Should be equal", result.getParameters().getAmount(), capital, 1e-6);
+        assertEquals("Should be equal", schedule.size() - 1, result.getSummary().getDuration());
+        double[] netValues = new double[schedule.size()];
+        double sum = .00;
+        NpvKernel.netValues(schedule.getTotalPaymentColumn(), schedule.size(),
+                result.getSummary().getInterestRate() / 100.00, netValues);
+        for (int index = 0; index < schedule.size(); index += 1) {
+            assertEquals("Should be equal", netValues[index], schedule.getNetValue(index),
+                    Math.abs(netValues[index]) * 1e-12);
+            sum += netValues[index];
+        }
+        assertEquals("Net values should be balanced", 0D, sum, 1e-6);
+    }
+
+    /**
+     * Test method for recalc() without changed terms, the plan should be the same.
+     */
+    @Test
+    public void testNoChange() {
+        Random random = new Random(1);
+        for (int loan = 0; loan < 100; loan += 1) {
+            CalculationInputParameters parameters = LoanFixtures.createRandomLoan(random, 2, 121);
+            if (loan % 3 == 0) {
+                parameters.setEndGracePeriod(Long.valueOf(1 + random.nextInt(parameters.getDuration())));
+            }
+            AmortizationEngine engine = new AmortizationEngine(random.nextBoolean(), null);
+            CalculationResult base = engine.calculate(parameters);
+            int period = 1 + random.nextInt(parameters.getDuration());
+            CalculationResult result = engine.recalculate(base, new ScheduleChange(period));
+            assertTrue(String.valueOf(result.getError()), result.isSuccessful());
+            assertEquals("Should be equal", base.getSchedule().size(), result.getSchedule().size());
+            assertRows(base.getSchedule(), result.getSchedule(), 0, base.getSchedule().size());
+            CalculationSummary expected = base.getSummary();
+            CalculationSummary total = result.getSummary();
+            assertEquals("Should be equal", expected.getTotalPayment(), total.getTotalPayment(), 0D);
+            assertEquals("Should be equal", expected.getCapitalPayment(), total.getCapitalPayment(), 0D);
+            assertEquals("Should be equal", expected.getInterestPayment(), total.getInterestPayment(), 0D);
+            assertEquals("Should be equal", expected.getTotalInterestPayment(), total.getTotalInterestPayment(), 0D);
+            assertEquals("Should be equal", expected.getMonthlyFee(), total.getMonthlyFee(), 0D);
+            assertEquals("Should be equal", expected.getOpeningFee(), total.getOpeningFee(), 0D);
+            assertEquals("Should be equal", expected.getAnnuitySum(), total.getAnnuitySum(), 0D);
+            assertEquals("Should be equal", expected.getTotalInstalmentPayment(),
+                    total.getTotalInstalmentPayment(), 0D);
+            assertEquals("Should be equal", expected.getDate(), total.getDate());
+            assertEquals("Should be equal", expected.getInterestRate(), total.getInterestRate(), 1e-9);
+            for (int index = 0; index < base.getSchedule().size(); index += 1) {
+                assertEquals("Should be equal", base.getSchedule().getNetValue(index),
+                        result.getSchedule().getNetValue(index), 1e-6);
+            }
+        }
+    }
+
+    /**
+     * Test method for recalc() with new rate against the plan of the rest of the loan.
+     */
+    @Test
+    public void testRateChange() {
+        Random random = new Random(2);
+        for (int loan = 0; loan < 100; loan += 1) {
+            CalculationInputParameters parameters = LoanFixtures.createRandomLoan(random, 2, 121);
+            parameters.setMonthlyRate(.00);
+            parameters.setDuration(3 + random.nextInt(120));
+            boolean roundValues = random.nextBoolean();
+            AmortizationEngine engine = new AmortizationEngine(roundValues, null);
+            CalculationResult base = engine.calculate(parameters);
+            int period = 2 + random.nextInt(parameters.getDuration() - 2);
+            ScheduleChange change = new ScheduleChange(period);
+            change.setRate(1.00 + random.nextInt(3000) / 100.00);
+            CalculationResult result = engine.recalculate(base, change);
+            assertRepaid(result);
+            PaymentSchedule schedule = result.getSchedule();
+            assertRows(base.getSchedule(), schedule, 0, period);
+            assertEquals("Should be equal", change.getRate(), result.getParameters().getRate(), 0D);
+            // the rest of the plan is the plan of the debt left
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(parameters);
+            CalculationInputParameters rest = GoalSeek.copy(parameters);
+            rest.setAmount(schedule.getDebetIn(period));
+            rest.setRate(change.getRate());
+            rest.setDuration(parameters.getDuration() - period + 1);
+            AmortizationCalculation calculation = new AmortizationCalculation(dates.subList(period - 1, dates.size()),
+                    rest, roundValues, true);
+            calculation.calc();
+            PaymentSchedule expected = calculation.getSchedule();
+            for (int index = 1; index < expected.size(); index += 1) {
+                assertEquals("Should be equal", expected.getDebetIn(index),
+                        schedule.getDebetIn(period + index - 1), 1e-9);
+                assertEquals("Should be equal", expected.getInterestPayment(index),
+                        schedule.getInterestPayment(period + index - 1), 1e-9);
+                assertEquals("Should be equal", expected.getTotalPayment(index),
+                        schedule.getTotalPayment(period + index - 1), 1e-9);
+            }
+            EffectiveRateSolver solver = new EffectiveRateSolver();
+            assertEquals("Should be equal", solver.solve(schedule.getTotalPaymentColumn(), schedule.size(), .10),
+                    result.getSummary().getInterestRate() / 100.00, 1e-12);
+        }
+    }
+
+    /**
+     * Test method for recalc() with extra capital payment, new installment and extra months.
+     */
+    @Test
+    public void testPrepaymentAndInstallment() {
+        Random random = new Random(3);
+        for (int loan = 0; loan < 100; loan += 1) {
+            CalculationInputParameters parameters = LoanFixtures.createRandomLoan(random, 2, 121);
+            parameters.setDuration(12 + random.nextInt(100));
+            AmortizationEngine engine = new AmortizationEngine();
+            CalculationResult base = engine.calculate(parameters);
+            int period = 1 + random.nextInt(parameters.getDuration() - 2);
+            double debt = period == 1 ? parameters.getAmount() : base.getSchedule().getDebetOut(period - 1);
+
+            ScheduleChange prepayment = new ScheduleChange(period);
+            prepayment.setExtraCapital(Math.floor(debt * random.nextDouble() / 2));
+            CalculationResult result = engine.recalculate(base, prepayment);
+            assertRepaid(result);
+            assertEquals("Should be equal", base.getSchedule().size(), result.getSchedule().size());
+            assertRows(base.getSchedule(), result.getSchedule(), 0, period);
+            assertTrue("Installment should be smaller",
+                    result.getSummary().getTotalInstalmentPayment() <= base.getSummary().getTotalInstalmentPayment());
+            assertTrue("Last installment should be close to others", result.getSchedule().getTotalPayment(
+                    result.getSchedule().size() - 1) <= result.getSummary().getTotalInstalmentPayment() + 1.00);
+
+            ScheduleChange installment = new ScheduleChange(period);
+            installment.setMonthlyInstallment(base.getSummary().getTotalInstalmentPayment() * 2);
+            result = engine.recalculate(base, installment);
+            assertRepaid(result);
+            PaymentSchedule schedule = result.getSchedule();
+            assertTrue("Plan should be shorter", schedule.size() <= base.getSchedule().size());
+            for (int index = period; index + 1 < schedule.size(); index += 1) {
+                assertEquals("Should be equal", installment.getMonthlyInstallment(),
+                        schedule.getTotalPayment(index), 0D);
+            }
+            assertTrue("Last installment should not be larger",
+                    schedule.getTotalPayment(schedule.size() - 1) <= installment.getMonthlyInstallment());
+
+            ScheduleChange extension = new ScheduleChange(period);
+            extension.setExtraMonths(1 + random.nextInt(24));
+            result = engine.recalculate(base, extension);
+            assertRepaid(result);
+            schedule = result.getSchedule();
+            assertEquals("Should be equal", base.getSchedule().size() + extension.getExtraMonths(), schedule.size());
+            assertTrue("Installment should be smaller",
+                    result.getSummary().getTotalInstalmentPayment() <= base.getSummary().getTotalInstalmentPayment());
+            List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(result.getParameters());
+            for (int index = 0; index < schedule.size(); index += 1) {
+                assertEquals("Should be equal", dates.get(index).getDate().getTime(), schedule.getDate(index));
+            }
+        }
+    }
+
+    /**
+     * Test method for several changes of one plan and for wrong changes.
+     */
+    @Test
+    public void testRecalc() {
+        CalculationInputParameters parameters = LoanFixtures.createLoan(10000.00, 12.00, 2.00, 1.00, 60);
+        List<PaymentDate> dates = new MonthlyCalendarFiller().createDateList(parameters);
+        CalculationResult base = new AmortizationEngine().calculate(dates, parameters);
+        ScheduleRecalculation recalculation = new ScheduleRecalculation(base, true);
+        for (int period = 1; period < 60; period += 1) {
+            ScheduleChange change = new ScheduleChange(period);
+            change.setRate(9.00);
+            change.setExtraCapital(100.00);
+            CalculationResult result = recalculation.recalc(dates, change);
+            assertRepaid(result);
+            assertTrue("Iterations - " + recalculation.getIterations(), recalculation.getIterations() < 10);
+        }
+        CalculationResult result = new AmortizationEngine().recalculate(base, new ScheduleChange(61));
+        assertFalse(result.isSuccessful());
+        assertEquals("Should be equal", "period should be from 1 to 60: 61", result.getError().getMessage());
+        ScheduleChange change = new ScheduleChange(60);
+        change.setExtraCapital(10.00);
+        result = new AmortizationEngine().recalculate(base, change);
+        assertEquals("Should be equal", "extra capital should be less than the debt and paid before the last"
+                + " installment: 10.0", result.getError().getMessage());
+        change = new ScheduleChange(10);
+        change.setMonthlyInstallment(100.00);
+        result = new AmortizationEngine().recalculate(base, change);
+        assertEquals("Should be equal", "installment does not cover the monthly fee: 100.0",
+                result.getError().getMessage());
+        change.setMonthlyInstallment(150.00);
+        result = new AmortizationEngine().recalculate(base, change);
+        assertEquals("Should be equal", "installment does not cover interests: 150.0",
+                result.getError().getMessage());
+    }
+}